@@ -3,9 +3,12 @@ package workbook;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 
 import org.apache.commons.io.FileUtils;
 import org.eclipse.swt.SWT;
@@ -26,7 +29,6 @@ import org.jdom2.input.SAXBuilder;
 import org.jdom2.output.Format;
 import org.jdom2.output.XMLOutputter;
 
-import com.google.common.base.Supplier;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 
@@ -57,7 +59,10 @@ import workbook.view.TabbedViewLayout.FolderPosition;
  * Main view for the workbook that contains all the controls of this program.
  */
 public class MainView {
+	private static final String DEFAULT_ENGINE = "Groovy";
+	
 	private final CommandList commandList = new CommandList();
+	private final List<String> engineNames = new ArrayList<>();
 	
 	private final Shell shell;
 	private final MainController mainController;
@@ -70,9 +75,25 @@ public class MainView {
 	
 	private String currentFileLocation = null;
 	
-	public MainView(Shell shell, MainController mainController, EventBus eventBus) {
+	/**
+	 * Creates the main view, starting with the engine for scriptType, or the default engine if it is null or not registered.
+	 */
+	public MainView(Shell shell, MainController mainController, EventBus eventBus, String scriptType) {
 		this.shell = shell;
 		this.eventBus = eventBus;
+		this.mainController = mainController;
+		
+		// Engines are created when first used, but start creating the initial engine while the rest of the view is created.
+		// Extra engines for parallel evaluation aren't created for JShell and JRuby, as they are slow to start.
+		registerEngine("Java", JShellEngine::new, false);
+		registerEngine("Javascript", JavascriptEngine::new, true);
+		registerEngine("Ruby", RubyEngine::new, false);
+		registerEngine("Groovy", GroovyEngine::new, true);
+		
+		String initialEngine = getEngineName(scriptType);
+		if(Boolean.parseBoolean(System.getProperty("workbook.prewarm", "true"))) {
+			mainController.prewarmEngine(initialEngine);
+		}
 		
 		shell.setText("Untitled - Workbook");
 		shell.setLayout(new GridLayoutBuilder().numColumns(1).makeColumnsEqualWidth(false).marginHeight(0).marginWidth(0).verticalSpacing(0).build());
@@ -86,17 +107,11 @@ public class MainView {
 		tabsComposite.setLayout(new FillLayout());
 		tabsComposite.setLayoutData(new GridData(GridData.FILL_HORIZONTAL | GridData.FILL_VERTICAL));
 		
-		this.mainController = mainController;
 		tabbedViewLayout = new TabbedViewLayout(tabsComposite);
 		
 		this.viewFactory = new TabbedViewFactory(tabbedViewLayout);
 		
-		registerEngine("Java", JShellEngine::new);
-		registerEngine("Javascript", JavascriptEngine::new);
-		registerEngine("Ruby", RubyEngine::new);
-		registerEngine("Groovy", GroovyEngine::new);
-		
-		mainController.setEngine("Groovy");
+		mainController.setEngine(initialEngine);
 		
 		createMenuBar(shell);
 		
@@ -145,9 +160,28 @@ public class MainView {
 		});
 	}
 	
-	private void registerEngine(String name, Supplier<Engine> engineSupplier) {
+	/**
+	 * Returns the name of the registered engine matching scriptType, or the default engine if there isn't one.
+	 */
+	private String getEngineName(String scriptType) {
+		if(scriptType == null) {
+			return DEFAULT_ENGINE;
+		}
+		
+		for(String name:engineNames) {
+			if(name.equalsIgnoreCase(scriptType)) {
+				return name;
+			}
+		}
+		
+		System.err.println("Unknown language: " + scriptType);
+		return DEFAULT_ENGINE;
+	}
+	
+	private void registerEngine(String name, Supplier<Engine> engineSupplier, boolean parallel) {
 		try {
-			mainController.registerEngine(name, engineSupplier.get());
+			mainController.registerEngine(name, engineSupplier, parallel);
+			engineNames.add(name);
 		} catch(Throwable t) {
 			t.printStackTrace();
 		}
@@ -202,6 +236,11 @@ public class MainView {
 			.addItem("Clear Global Variables").addSelectionListener(() -> mainController.clearGlobals())
 			.addItem("Interrupt").addSelectionListener(() -> mainController.interrupt())
 			.addSeparator()
+			.addSubmenu("Time Limit", submenu -> addTimeLimitItems(submenu, mainController.getTimeoutMillis(),
+				millis -> mainController.setTimeLimits(millis, mainController.getCpuTimeoutMillis())))
+			.addSubmenu("CPU Time Limit", submenu -> addTimeLimitItems(submenu, mainController.getCpuTimeoutMillis(),
+				millis -> mainController.setTimeLimits(mainController.getTimeoutMillis(), millis)))
+			.addSeparator()
 			.addSubmenu("Engine", submenu -> submenu
 				.addRadioItem("Java", equalsIgnoreCase(mainController.getEngine(), "Java")).addSelectionListener(() -> mainController.setEngine("Java"))
 				.addRadioItem("Javascript", equalsIgnoreCase(mainController.getEngine(), "Javascript")).addSelectionListener(() -> mainController.setEngine("Javascript"))
@@ -212,6 +251,18 @@ public class MainView {
 		menuBuilder.build();
 	}
 	
+	/**
+	 * Adds radio items to choose a time limit for each evaluation, calling setLimit with the chosen limit in milliseconds.
+	 */
+	private static void addTimeLimitItems(MenuBuilder submenu, long currentMillis, LongConsumer setLimit) {
+		long[] limits = { 0, 10000, 60000, 600000 };
+		String[] names = { "None", "10 Seconds", "1 Minute", "10 Minutes" };
+		for(int i = 0; i < limits.length; i++) {
+			long millis = limits[i];
+			submenu.addRadioItem(names[i], currentMillis == millis).addSelectionListener(() -> setLimit.accept(millis));
+		}
+	}
+	
 	private static boolean equalsIgnoreCase(String a, String b) {
 		return a == b || (a != null && b != null && a.equalsIgnoreCase(b));
 	}
@@ -28,6 +28,7 @@ import workbook.editor.ui.TreeTabbedEditor;
 import workbook.event.MinorRefreshEvent;
 import workbook.model.Model;
 import workbook.script.ScriptFuture;
+import workbook.util.StartupTimer;
 import workbook.view.BrowserTabbedView;
 import workbook.view.ConsoleTabbedView;
 import workbook.view.DependencyTabbedView;
@@ -55,21 +56,32 @@ public class Workbook {
 	private final Display display;
 	private final Shell shell;
 	
+	private final StartupTimer startupTimer = new StartupTimer();
+	private boolean showStartupTimes = false;
+	
 	public Workbook() {
+		this(null);
+	}
+	
+	/**
+	 * Creates a workbook that starts with the engine for scriptType, or the default engine if it is null.
+	 */
+	public Workbook(String scriptType) {
 		System.setProperty("line.separator", "\n");
 		
 		eventBus = new EventBus();
 		model = new Model();
-		mainController = new MainController(eventBus, model);
+		mainController = startupTimer.time("Create main controller", () -> new MainController(eventBus, model));
+		mainController.getScriptController().setStartupTimer(startupTimer);
 		
-		display = new Display();
+		display = startupTimer.time("Create display", () -> new Display());
 		shell = new Shell(display);
 		
-		mainView = new MainView(shell, mainController, eventBus);
+		mainView = startupTimer.time("Create main view", () -> new MainView(shell, mainController, eventBus, scriptType));
 		
-		registerViews();
+		startupTimer.time("Register views", this::registerViews);
 		
-		addDefaultViews();
+		startupTimer.time("Add default views", this::addDefaultViews);
 		
 		Map<String, Object> system = new HashMap<>();
 		system.put("mainView", mainView);
@@ -197,7 +209,18 @@ public class Workbook {
 
 	public void waitForExit() {
 		shell.setSize(800, 600);
-		shell.open();
+		startupTimer.time("Open shell", shell::open);
+		
+		// Print the startup times once the engine is ready and the first events have been handled.
+		if(showStartupTimes) {
+			long startNanos = System.nanoTime();
+			mainController.getScriptController().exec(() -> null).thenRun(() -> {
+				display.asyncExec(() -> {
+					startupTimer.record("Wait for engine and first events", startNanos);
+					System.out.print(startupTimer.getReport());
+				});
+			});
+		}
 
 		while(!shell.isDisposed()) {
 			try {
@@ -213,8 +236,10 @@ public class Workbook {
 	}
 	
 	public static void main(String[] args) {
-		Workbook workbook = new Workbook();
-		workbook.parseArgs(args);
+		// The language is needed before the workbook is created, so that only its engine is started.
+		CommandLine command = parseArgs(args);
+		Workbook workbook = new Workbook(command.getOptionValue("l"));
+		workbook.handleArgs(command);
 		if(args.length == 1) {
 			workbook.open(args[0]);
 		}
@@ -222,13 +247,18 @@ public class Workbook {
 		System.exit(0);
 	}
 	
-	private void parseArgs(String[] args) {
-		CommandLineParser parser = new GnuParser();
-		
+	private static Options createOptions() {
 		Options options = new Options();
 		options.addOption(new Option("l", "language", true, "set the language by name"));
 		options.addOption(new Option("f", "file", true, "load a file"));
+		options.addOption(new Option("t", "startup-times", false, "print the time taken by each step of starting up"));
 		options.addOption(new Option("h", "help", false, "show help"));
+		return options;
+	}
+	
+	private static CommandLine parseArgs(String[] args) {
+		CommandLineParser parser = new GnuParser();
+		Options options = createOptions();
 		
 		try {
 			CommandLine command = parser.parse(options, args);
@@ -238,11 +268,22 @@ public class Workbook {
 				System.exit(0);
 			}
 			
-			if(command.hasOption("l")) {
-				mainController.setEngine(command.getOptionValue("l"));
+			return command;
+		} catch(Throwable e) {
+			// Print usage and exit on any error.
+			System.err.println(e.getMessage());
+			new HelpFormatter().printHelp("java -jar workbook.jar", options);
+			System.exit(0);
+			return null;
+		}
+	}
+	
+	private void handleArgs(CommandLine command) {
+		try {
+			if(command.hasOption("t")) {
+				showStartupTimes = true;
 			}
 			
-			
 			if(command.hasOption("f")) {
 				open(command.getOptionValue("f"));
 			}
@@ -253,7 +294,7 @@ public class Workbook {
 		} catch(Throwable e) {
 			// Print usage and exit on any error.
 			System.err.println(e.getMessage());
-			new HelpFormatter().printHelp("java -jar workbook.jar", options);
+			new HelpFormatter().printHelp("java -jar workbook.jar", createOptions());
 			System.exit(0);
 		}
 	}
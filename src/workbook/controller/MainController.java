@@ -5,8 +5,10 @@ import java.io.StringReader;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.eclipse.swt.widgets.Display;
 import org.jdom2.Element;
@@ -23,20 +25,24 @@ import workbook.model.Model;
 import workbook.script.Engine;
 import workbook.script.ScriptController;
 import workbook.script.ScriptFuture;
-import workbook.util.ThrottledConsumer;
+import workbook.util.MpscRingBuffer;
 import workbook.view.result.wrapper.Wrapper;
 
 public class MainController {
+	private static final int MAX_QUEUED_LINES = 64 * 1024;
+	private static final int FRAME_MILLIS = 16;
+	
 	private final ScriptController scriptController = new ScriptController();
 	private final EventBus eventBus;
 	private final Model model;
 	
 	private final Map<String, Function<Object, ? extends Wrapper>> wrapperFunctions = new HashMap<>();
 	
-	private final Consumer<Void> flushConsoleConsumer;
-	
-	private final StringBuilder outputBuffer = new StringBuilder();
-	private final StringBuilder errorBuffer = new StringBuilder();
+	// Output lines are queued by the script threads and sent to the console at most once per frame.
+	private final MpscRingBuffer<String> outputQueue = new MpscRingBuffer<>(MAX_QUEUED_LINES);
+	private final MpscRingBuffer<String> errorQueue = new MpscRingBuffer<>(MAX_QUEUED_LINES);
+	private final AtomicLong droppedLines = new AtomicLong();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
 
 	public MainController(EventBus eventBus, Model model) {
 		this.eventBus = eventBus;
@@ -45,35 +51,66 @@ public class MainController {
 		scriptController.startQueueThread();
 		
 		scriptController.setOutputCallbacks(
-			line -> Display.getDefault().asyncExec(() -> addOutput(line)),
-			line -> Display.getDefault().asyncExec(() -> addError(line))
+			line -> addOutput(outputQueue, line),
+			line -> addOutput(errorQueue, line)
 		);
-		
-		flushConsoleConsumer = new ThrottledConsumer<Void>(100, true, result -> flushConsole());
-	}
-	
-	private void addOutput(String output) {
-		outputBuffer.append(output + "\n");
-		flushConsoleConsumer.accept(null);
 	}
 	
-	private void addError(String error) {
-		errorBuffer.append(error + "\n");
-		flushConsoleConsumer.accept(null);
+	/**
+	 * Queues a line of output from any thread, counting it as dropped if the console can't keep up, and schedules
+	 * the console to be updated on the next frame.
+	 */
+	private void addOutput(MpscRingBuffer<String> queue, String line) {
+		if(!queue.offer(line)) {
+			droppedLines.incrementAndGet();
+		}
+		
+		if(flushScheduled.compareAndSet(false, true)) {
+			Display display = Display.getDefault();
+			display.asyncExec(() -> display.timerExec(FRAME_MILLIS, this::flushConsole));
+		}
 	}
 	
+	/**
+	 * Sends all the queued output to the console as a single event.
+	 */
 	private void flushConsole() {
-		String output = outputBuffer.toString();
-		String error = errorBuffer.toString();
-		outputBuffer.setLength(0);
-		errorBuffer.setLength(0);
-		eventBus.post(new OutputEvent(output, error));
+		flushScheduled.set(false);
+		
+		StringBuilder output = new StringBuilder();
+		StringBuilder error = new StringBuilder();
+		outputQueue.drain(line -> output.append(line).append("\n"));
+		errorQueue.drain(line -> error.append(line).append("\n"));
+		
+		long dropped = droppedLines.getAndSet(0);
+		if(dropped > 0) {
+			error.append("[" + dropped + " lines of output dropped]\n");
+		}
+		
+		if(output.length() > 0 || error.length() > 0) {
+			eventBus.post(new OutputEvent(output.toString(), error.toString()));
+		}
 	}
 	
 	public void interrupt() {
 		scriptController.interrupt();
 	}
 	
+	/**
+	 * Sets the limits on the wall clock time and CPU time of each evaluation, or 0 for no limit.
+	 */
+	public void setTimeLimits(long timeoutMillis, long cpuTimeoutMillis) {
+		scriptController.setTimeLimits(timeoutMillis, cpuTimeoutMillis);
+	}
+	
+	public long getTimeoutMillis() {
+		return scriptController.getTimeoutMillis();
+	}
+	
+	public long getCpuTimeoutMillis() {
+		return scriptController.getCpuTimeoutMillis();
+	}
+	
 	public void clearGlobals() {
 		scriptController.clearGlobals();
 		eventBus.post(new MinorRefreshEvent(this));
@@ -83,8 +120,19 @@ public class MainController {
 		return scriptController;
 	}
 	
-	public void registerEngine(String scriptType, Engine engine) {
-		scriptController.addEngine(scriptType, engine);
+	/**
+	 * Registers an engine for scriptType, using engineFactory to create it when it is first used, and if parallel is true,
+	 * to create any extra engines for parallel evaluation.
+	 */
+	public void registerEngine(String scriptType, Supplier<Engine> engineFactory, boolean parallel) {
+		scriptController.addEngine(scriptType, engineFactory, parallel);
+	}
+	
+	/**
+	 * Starts creating the engine for scriptType in the background.
+	 */
+	public void prewarmEngine(String scriptType) {
+		scriptController.prewarmEngine(scriptType);
 	}
 
 	public void setEngine(String scriptType) {
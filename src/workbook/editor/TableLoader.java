@@ -0,0 +1,93 @@
+package workbook.editor;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import workbook.script.Engine;
+
+/**
+ * Loads the rows of a table from an iterator in chunks, so that a table can be shown before all of its rows have been read,
+ * and so that reading a large or lazy source can be stopped part way through. The chunks start small so that the first rows
+ * are shown quickly, then grow so that the cost of each script thread task is spread over more rows.
+ */
+public class TableLoader {
+	private static final int FIRST_CHUNK_ROWS = 200;
+	private static final int MAX_CHUNK_ROWS = 10000;
+	
+	private final TableModel model;
+	private final Engine script;
+	private final Iterator<?> iterator;
+	
+	private int chunkRows = FIRST_CHUNK_ROWS;
+	private volatile boolean done = false;
+	private boolean mapRows = true;
+	
+	public TableLoader(TableModel model, Engine script, Iterator<?> iterator) {
+		this.model = model;
+		this.script = script;
+		this.iterator = iterator;
+	}
+	
+	/**
+	 * Adds the next chunk of rows to the model, returning whether there are more rows to load.
+	 * Must be called on the script thread.
+	 */
+	public boolean loadChunk() {
+		boolean more = loadRows(chunkRows);
+		chunkRows = Math.min(chunkRows * 2, MAX_CHUNK_ROWS);
+		return more;
+	}
+	
+	/**
+	 * Adds up to maxRows rows to the model, returning whether there are more rows to load.
+	 * Must be called on the script thread.
+	 */
+	public boolean loadRows(int maxRows) {
+		for(int i = 0; i < maxRows && !done; i++) {
+			if(iterator.hasNext()) {
+				Object row = iterator.next();
+				mapRows &= (row instanceof Map);
+				model.addRow(script, row);
+			} else {
+				close();
+			}
+		}
+		return !done;
+	}
+	
+	/**
+	 * Stops loading rows, closing the iterator if it holds a resource such as a database cursor.
+	 * Must be called on the script thread.
+	 */
+	public void close() {
+		if(!done) {
+			done = true;
+			if(iterator instanceof AutoCloseable) {
+				try {
+					((AutoCloseable) iterator).close();
+				} catch(Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns whether all rows have been loaded, or the loader has been closed.
+	 */
+	public boolean isDone() {
+		return done;
+	}
+	
+	/**
+	 * Returns whether every row loaded so far is a Map, so that the first chunk can decide how a result is shown without
+	 * reading the rest of the rows.
+	 */
+	public boolean isMapRows() {
+		return mapRows;
+	}
+	
+	public TableModel getModel() {
+		return model;
+	}
+}
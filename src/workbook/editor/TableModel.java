@@ -0,0 +1,343 @@
+package workbook.editor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import workbook.editor.reference.ConstantReference;
+import workbook.editor.reference.JavaProperty;
+import workbook.editor.reference.JavaPropertyReference;
+import workbook.editor.reference.ListItemReference;
+import workbook.editor.reference.MapPropertyReference;
+import workbook.editor.reference.Reference;
+import workbook.script.Engine;
+import workbook.script.ScriptController;
+
+/**
+ * A table of the properties of a list of objects, stored by column. The columns are found in a single pass over the rows,
+ * and each column stores its values in an array of the narrowest type that holds them, using primitive arrays for columns
+ * of Integer, Long or Double values. The references to edit a cell are only created when they are needed.
+ */
+public class TableModel {
+	private static final int INITIAL_ROWS = 16;
+	
+	private enum RowType {
+		EMPTY, MAP, LIST, VALUES, OBJECT
+	}
+	
+	private enum Storage {
+		NONE, LONG, DOUBLE, OBJECT
+	}
+	
+	/**
+	 * The values of a column, with a flag for each row that has a value, and for each row that has a non-null value.
+	 */
+	private static class Column {
+		private final String name;
+		private final BitSet present = new BitSet();
+		private final BitSet nonNull = new BitSet();
+		
+		private Storage storage = Storage.NONE;
+		private Class<?> numberType;
+		private long[] longs;
+		private double[] doubles;
+		private Object[] objects;
+		
+		public Column(String name) {
+			this.name = name;
+		}
+		
+		public void set(int row, Object value) {
+			present.set(row);
+			
+			if(value == null) {
+				nonNull.clear(row);
+				if(storage == Storage.OBJECT && row < objects.length) {
+					objects[row] = null;
+				}
+				return;
+			}
+			
+			nonNull.set(row);
+			
+			if(storage == Storage.NONE) {
+				setStorage(value.getClass());
+			}
+			
+			if(storage == Storage.LONG && value.getClass() == numberType) {
+				longs = ensureCapacity(longs, row);
+				longs[row] = ((Number) value).longValue();
+			} else if(storage == Storage.DOUBLE && value.getClass() == Double.class) {
+				doubles = ensureCapacity(doubles, row);
+				doubles[row] = (Double) value;
+			} else {
+				if(storage != Storage.OBJECT) {
+					convertToObjects();
+				}
+				objects = ensureCapacity(objects, row);
+				objects[row] = value;
+			}
+		}
+		
+		public Object get(int row) {
+			if(!nonNull.get(row)) {
+				return null;
+			} else if(storage == Storage.LONG) {
+				if(numberType == Integer.class) {
+					return (int) longs[row];
+				} else {
+					return longs[row];
+				}
+			} else if(storage == Storage.DOUBLE) {
+				return doubles[row];
+			} else {
+				return objects[row];
+			}
+		}
+		
+		private void setStorage(Class<?> type) {
+			if(type == Integer.class || type == Long.class) {
+				storage = Storage.LONG;
+				numberType = type;
+				longs = new long[INITIAL_ROWS];
+			} else if(type == Double.class) {
+				storage = Storage.DOUBLE;
+				doubles = new double[INITIAL_ROWS];
+			} else {
+				storage = Storage.OBJECT;
+				objects = new Object[INITIAL_ROWS];
+			}
+		}
+		
+		/**
+		 * Moves the values from a primitive array into an object array, when a value of another type is added.
+		 */
+		private void convertToObjects() {
+			int length = (storage == Storage.LONG) ? longs.length : doubles.length;
+			Object[] values = new Object[length];
+			for(int row = nonNull.nextSetBit(0); row >= 0 && row < length; row = nonNull.nextSetBit(row + 1)) {
+				values[row] = get(row);
+			}
+			
+			objects = values;
+			longs = null;
+			doubles = null;
+			storage = Storage.OBJECT;
+		}
+	}
+	
+	private final ScriptController scriptController;
+	
+	private final List<Column> columns = new ArrayList<>();
+	private final Map<String, Column> columnsByName = new HashMap<>();
+	
+	// The map, list or object that the properties of each row were read from.
+	private Object[] rowObjects = new Object[INITIAL_ROWS];
+	private RowType[] rowTypes = new RowType[INITIAL_ROWS];
+	private int rowCount = 0;
+	
+	public TableModel(ScriptController scriptController) {
+		this.scriptController = scriptController;
+	}
+	
+	/**
+	 * Adds a row containing the properties of object, adding a column for any property that isn't already in the table.
+	 * Must be called on the script thread.
+	 */
+	public void addRow(Engine script, Object object) {
+		int row = rowCount++;
+		rowObjects = ensureCapacity(rowObjects, row);
+		rowTypes = ensureCapacity(rowTypes, row);
+		
+		if(script.isScriptObject(object)) {
+			setRow(row, RowType.MAP, script.getPropertyMap(object));
+		} else if(object instanceof Map) {
+			setRow(row, RowType.MAP, object);
+		} else if(object instanceof List) {
+			setRow(row, RowType.LIST, object);
+		} else if(object instanceof Iterable) {
+			rowTypes[row] = RowType.VALUES;
+			readValues(row, (Iterable<?>) object);
+		} else if(object != null) {
+			setRow(row, RowType.OBJECT, object);
+		} else {
+			setRow(row, RowType.EMPTY, null);
+		}
+	}
+	
+	/**
+	 * Reads the properties of a row again after it has been changed, updating the existing columns.
+	 * Must be called on the script thread.
+	 */
+	public void updateRow(int row) {
+		if(rowTypes[row] != RowType.VALUES) {
+			for(Column column:columns) {
+				column.present.clear(row);
+				column.nonNull.clear(row);
+			}
+			readRow(row, false);
+		}
+	}
+	
+	private void setRow(int row, RowType type, Object object) {
+		rowTypes[row] = type;
+		rowObjects[row] = object;
+		readRow(row, true);
+	}
+	
+	/**
+	 * Reads the properties of a row into the columns, adding new columns if addColumns is set.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readRow(int row, boolean addColumns) {
+		Object object = rowObjects[row];
+		
+		switch(rowTypes[row]) {
+		case MAP:
+			((Map<Object, Object>) object).forEach((k, v) -> setValue(row, String.valueOf(k), v, addColumns));
+			break;
+		case LIST:
+			List<Object> list = (List<Object>) object;
+			for(int i = 0; i < list.size(); i++) {
+				setValue(row, String.valueOf(i), list.get(i), addColumns);
+			}
+			break;
+		case OBJECT:
+			for(JavaProperty property:JavaProperty.getProperties(object.getClass())) {
+				setValue(row, property.getName(), getPropertyValue(property, object), addColumns);
+			}
+			break;
+		default:
+			break;
+		}
+	}
+	
+	/**
+	 * Adds the values of a row from an iterable that isn't a list, which can't be read again.
+	 */
+	private void readValues(int row, Iterable<?> iterable) {
+		Iterator<?> iterator = iterable.iterator();
+		int i = 0;
+		while(iterator.hasNext()) {
+			setValue(row, String.valueOf(i++), iterator.next(), true);
+		}
+	}
+	
+	private static Object getPropertyValue(JavaProperty property, Object object) {
+		try {
+			return property.get(object);
+		} catch(Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	private void setValue(int row, String name, Object value, boolean addColumns) {
+		Column column = columnsByName.get(name);
+		if(column == null) {
+			if(!addColumns) {
+				return;
+			}
+			column = new Column(name);
+			columns.add(column);
+			columnsByName.put(name, column);
+		}
+		column.set(row, value);
+	}
+	
+	public int getRowCount() {
+		return rowCount;
+	}
+	
+	public int getColumnCount() {
+		return columns.size();
+	}
+	
+	public String getColumnName(int column) {
+		return columns.get(column).name;
+	}
+	
+	/**
+	 * Returns the value of a cell when it was last read, or null if the row doesn't have a value for the column.
+	 */
+	public Object getValue(int row, int column) {
+		return columns.get(column).get(row);
+	}
+	
+	/**
+	 * Returns whether a row has a cell for a column, either as one of its properties, or as a property that can be added
+	 * to a map.
+	 */
+	public boolean hasCell(int row, int column) {
+		return rowTypes[row] == RowType.MAP || columns.get(column).present.get(row);
+	}
+	
+	/**
+	 * Returns a new reference to read and write the value of a cell, or null if there is no cell.
+	 */
+	@SuppressWarnings("unchecked")
+	public Reference getReference(int row, int column) {
+		if(!hasCell(row, column)) {
+			return null;
+		}
+		
+		String name = columns.get(column).name;
+		Object object = rowObjects[row];
+		
+		switch(rowTypes[row]) {
+		case MAP:
+			Map<Object, Object> map = (Map<Object, Object>) object;
+			return new MapPropertyReference(scriptController, map, getMapKey(map, name));
+		case LIST:
+			return new ListItemReference(scriptController, (List<Object>) object, Integer.parseInt(name));
+		case OBJECT:
+			return new JavaPropertyReference(scriptController, object, getProperty(object.getClass(), name));
+		default:
+			return new ConstantReference(scriptController, getValue(row, column));
+		}
+	}
+	
+	/**
+	 * Returns the key in map with name as its string value, or name if there is none, so that a new key can be added.
+	 */
+	private static Object getMapKey(Map<Object, Object> map, String name) {
+		if(map.containsKey(name)) {
+			return name;
+		}
+		for(Object key:map.keySet()) {
+			if(String.valueOf(key).equals(name)) {
+				return key;
+			}
+		}
+		return name;
+	}
+	
+	/**
+	 * Returns the last property with a name, as its value is the one in the table.
+	 */
+	private static JavaProperty getProperty(Class<?> type, String name) {
+		JavaProperty namedProperty = null;
+		for(JavaProperty property:JavaProperty.getProperties(type)) {
+			if(property.getName().equals(name)) {
+				namedProperty = property;
+			}
+		}
+		return namedProperty;
+	}
+	
+	private static <T> T[] ensureCapacity(T[] array, int index) {
+		return (index < array.length) ? array : Arrays.copyOf(array, Math.max(index + 1, array.length * 2));
+	}
+	
+	private static long[] ensureCapacity(long[] array, int index) {
+		return (index < array.length) ? array : Arrays.copyOf(array, Math.max(index + 1, array.length * 2));
+	}
+	
+	private static double[] ensureCapacity(double[] array, int index) {
+		return (index < array.length) ? array : Arrays.copyOf(array, Math.max(index + 1, array.length * 2));
+	}
+}
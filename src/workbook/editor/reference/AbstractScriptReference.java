@@ -5,6 +5,7 @@ import java.util.function.Supplier;
 import workbook.script.Engine;
 import workbook.script.ScriptController;
 import workbook.script.ScriptFuture;
+import workbook.script.ScriptPriority;
 
 /**
  * A reference that has access to the script controller.
@@ -17,11 +18,6 @@ public abstract class AbstractScriptReference implements Reference {
 	 */
 	protected abstract void setSync(Engine script, Object value) throws Exception;
 	
-	/**
-	 * Returns the value of the reference synchronously.
-	 */
-	protected abstract Object getSync(Engine script) throws Exception;
-	
 	public AbstractScriptReference(ScriptController scriptController) {
 		this.scriptController = scriptController;
 	}
@@ -42,8 +38,8 @@ public abstract class AbstractScriptReference implements Reference {
 	
 	@Override
 	public ScriptFuture<Object> get() {
-		ScriptFuture<Object> future = new ScriptFuture<>(scriptController);
-		scriptController.getScript(script -> {
+		ScriptFuture<Object> future = new ScriptFuture<>(scriptController, ScriptPriority.REFRESH);
+		scriptController.getScript(ScriptPriority.REFRESH, script -> {
 			try {
 				Object value = getSync(script);
 				future.complete(value);
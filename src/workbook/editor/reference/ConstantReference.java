@@ -16,7 +16,7 @@ public class ConstantReference extends AbstractScriptReference {
 	}
 	
 	@Override
-	protected Object getSync(Engine script) throws Exception {
+	public Object getSync(Engine script) throws Exception {
 		return value;
 	}
 
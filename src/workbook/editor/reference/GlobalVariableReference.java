@@ -21,7 +21,7 @@ public class GlobalVariableReference extends AbstractScriptReference {
 	}
 
 	@Override
-	protected Object getSync(Engine script) throws Exception {
+	public Object getSync(Engine script) throws Exception {
 		return script.getVariable(name);
 	}
 }
\ No newline at end of file
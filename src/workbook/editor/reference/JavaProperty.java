@@ -0,0 +1,157 @@
+package workbook.editor.reference;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A property of a Java class, with a get method and an optional set method. The properties of each class are found once
+ * and cached in a ClassValue, so that classes can still be unloaded, and the methods are called through method handles.
+ */
+public class JavaProperty {
+	private static final ClassValue<List<JavaProperty>> classProperties = new ClassValue<List<JavaProperty>>() {
+		protected List<JavaProperty> computeValue(Class<?> type) {
+			return Collections.unmodifiableList(findProperties(type));
+		}
+	};
+	
+	private static final MethodType GET_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType SET_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+	
+	private final String name;
+	private final Method getMethod;
+	private final Method setMethod;
+	
+	// The method handles, or null if the methods can't be accessed through a handle and are called by reflection instead.
+	private final MethodHandle getHandle;
+	private final MethodHandle setHandle;
+	
+	public JavaProperty(String name, Method getMethod, Method setMethod) {
+		this.name = name;
+		this.getMethod = getMethod;
+		this.setMethod = setMethod;
+		this.getHandle = getHandle(getMethod, GET_TYPE);
+		this.setHandle = getHandle(setMethod, SET_TYPE);
+	}
+	
+	/**
+	 * Returns the properties of a class (with get, set and is methods), in order of their get methods.
+	 */
+	public static List<JavaProperty> getProperties(Class<?> type) {
+		return classProperties.get(type);
+	}
+	
+	private static List<JavaProperty> findProperties(Class<?> type) {
+		Method[] methods = type.getMethods();
+		
+		Map<String, Method> setMethods = new HashMap<>();
+		for(Method setMethod:methods) {
+			if(setMethod.getName().startsWith("set") && setMethod.getParameterCount() == 1) {
+				setMethods.putIfAbsent(setMethod.getName().substring(3), setMethod);
+			}
+		}
+		
+		methods = methods.clone();
+		Arrays.sort(methods, Comparator.comparing(Method::getName));
+		
+		List<JavaProperty> properties = new ArrayList<>();
+		for(Method getMethod:methods) {
+			String methodName = getMethod.getName();
+			if(methodName.equals("getClass")) continue;
+			
+			if((methodName.startsWith("is") || methodName.startsWith("get")) && getMethod.getParameterCount() == 0) {
+				String name = methodName.substring(methodName.startsWith("is") ? 2 : 3);
+				Method setMethod = setMethods.get(name);
+				if(name.length() > 0) {
+					name = name.substring(0, 1).toLowerCase() + name.substring(1);
+				}
+				properties.add(new JavaProperty(name, getMethod, setMethod));
+			}
+		}
+		
+		return properties;
+	}
+	
+	/**
+	 * Returns a method handle for method adapted to type, or null if there is no method or it can't be accessed.
+	 */
+	private static MethodHandle getHandle(Method method, MethodType type) {
+		if(method == null) {
+			return null;
+		}
+		
+		try {
+			method.setAccessible(true);
+		} catch(RuntimeException e) {
+			// Not accessible in this module, so try with the normal access checks.
+		}
+		
+		try {
+			return MethodHandles.lookup().unreflect(method).asType(type);
+		} catch(IllegalAccessException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns the value of this property in object.
+	 */
+	public Object get(Object object) throws Exception {
+		if(getMethod == null) {
+			return null;
+		}
+		
+		if(getHandle == null) {
+			return getMethod.invoke(object);
+		}
+		
+		try {
+			return (Object) getHandle.invokeExact(object);
+		} catch(Exception | Error e) {
+			throw e;
+		} catch(Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Sets the value of this property in object, if it has a set method.
+	 */
+	public void set(Object object, Object value) throws Exception {
+		if(setMethod == null) {
+			return;
+		}
+		
+		if(setHandle == null) {
+			setMethod.invoke(object, value);
+			return;
+		}
+		
+		try {
+			setHandle.invokeExact(object, value);
+		} catch(Exception | Error e) {
+			throw e;
+		} catch(Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Returns the type of the set method parameter, or null if there is no set method.
+	 */
+	public Class<?> getSetType() {
+		return (setMethod == null) ? null : setMethod.getParameterTypes()[0];
+	}
+}
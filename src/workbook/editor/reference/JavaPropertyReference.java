@@ -9,36 +9,35 @@ import workbook.script.ScriptController;
  * A reference to a Java property through a pair of get and set methods.
  */
 public class JavaPropertyReference extends AbstractScriptReference {
-	private final Method getMethod;
-	private final Method setMethod;
+	private final JavaProperty property;
 	private final Object object;
 
 	public JavaPropertyReference(ScriptController scriptController, Object object, Method getMethod, Method setMethod) {
+		this(scriptController, object, new JavaProperty(null, getMethod, setMethod));
+	}
+	
+	public JavaPropertyReference(ScriptController scriptController, Object object, JavaProperty property) {
 		super(scriptController);
 		
 		this.object = object;
-		this.getMethod = getMethod;
-		this.setMethod = setMethod;
+		this.property = property;
 	}
 	
 	@Override
 	protected void setSync(Engine script, Object value) throws Exception {
 		// Don't do type conversion unless value is a String.
-		if(setMethod != null) {
+		Class<?> setType = property.getSetType();
+		if(setType != null) {
 			Object convertedValue = value;
 			if(value instanceof String) {
-				convertedValue = convertFromString((String) value, setMethod.getParameterTypes()[0]);
+				convertedValue = convertFromString((String) value, setType);
 			}
-			setMethod.invoke(object, convertedValue);
+			property.set(object, convertedValue);
 		}
 	}
 
 	@Override
-	protected Object getSync(Engine script) throws Exception {
-		if(getMethod == null) {
-			return null;
-		} else {
-			return getMethod.invoke(object);
-		}
+	public Object getSync(Engine script) throws Exception {
+		return property.get(object);
 	}
 }
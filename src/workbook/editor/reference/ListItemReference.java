@@ -44,7 +44,7 @@ public class ListItemReference extends AbstractScriptReference {
 	}
 	
 	@Override
-	protected Object getSync(Engine script) throws Exception {
+	public Object getSync(Engine script) throws Exception {
 		return list.get(index);
 	}
 }
\ No newline at end of file
@@ -45,7 +45,7 @@ public class MapPropertyReference extends AbstractScriptReference {
 	}
 	
 	@Override
-	protected Object getSync(Engine script) throws Exception {
+	public Object getSync(Engine script) throws Exception {
 		return object.get(property);
 	}
 }
\ No newline at end of file
@@ -1,38 +1,181 @@
 package workbook.editor.reference;
 
+import ognl.ASTChain;
+import ognl.ASTConst;
+import ognl.ASTProperty;
 import ognl.DefaultClassResolver;
 import ognl.DefaultMemberAccess;
 import ognl.DefaultTypeConverter;
+import ognl.Node;
 import ognl.Ognl;
 import ognl.OgnlContext;
 import ognl.OgnlException;
+import ognl.OgnlRuntime;
 import workbook.script.Engine;
 import workbook.script.ScriptController;
+import workbook.util.LruCache;
 
+/**
+ * A reference to the value of an OGNL expression on the script globals. Expressions are parsed once and shared between
+ * references in a cache, and the contexts are shared for each thread. Property paths that are read often are compiled to
+ * bytecode, which is used while the types of their values stay the same, falling back to interpreting the expression if
+ * the compiled expression fails.
+ */
 public class OgnlReference extends AbstractScriptReference {
-	private final OgnlContext context;
+	// The maximum number of parsed expressions to keep.
+	private static final int MAX_EXPRESSIONS = 1000;
+	
+	// The number of times an expression is evaluated before it is compiled.
+	private static final int COMPILE_THRESHOLD = 10;
+	
+	/**
+	 * An expression parsed once, with its compiled form once it has been evaluated enough times.
+	 */
+	static class CachedExpression {
+		private final String expression;
+		private final Node node;
+		private final boolean compilable;
+		
+		private volatile Node compiledNode;
+		private volatile boolean compileFailed;
+		private int evaluations;
+		
+		public CachedExpression(String expression) throws OgnlException {
+			this.expression = expression;
+			this.node = (Node) Ognl.parseExpression(expression);
+			this.compilable = isPropertyPath(node);
+		}
+		
+		/**
+		 * Returns the node to evaluate, compiling the expression against root once it has been evaluated enough times.
+		 */
+		private synchronized Node getNode(OgnlContext context, Object root) {
+			if(compiledNode != null) {
+				return compiledNode;
+			}
+			
+			if(compilable && !compileFailed && ++evaluations >= COMPILE_THRESHOLD) {
+				try {
+					Node compiled = (Node) Ognl.parseExpression(expression);
+					OgnlRuntime.compileExpression(context, compiled, root);
+					compiledNode = compiled;
+					return compiled;
+				} catch(Exception e) {
+					compileFailed = true;
+				} finally {
+					context.clear();
+				}
+			}
+			
+			return node;
+		}
+		
+		/**
+		 * Stops using the compiled expression, which can fail when the types of the values change.
+		 */
+		private void clearCompiled() {
+			compiledNode = null;
+			compileFailed = true;
+		}
+		
+		public Object getValue(OgnlContext context, Object root) throws OgnlException {
+			Node evalNode = getNode(context, root);
+			try {
+				context.clear();
+				return Ognl.getValue(evalNode, context, root);
+			} catch(RuntimeException | OgnlException e) {
+				if(evalNode == node) {
+					throw e;
+				}
+				clearCompiled();
+				context.clear();
+				return Ognl.getValue(node, context, root);
+			}
+		}
+		
+		public void setValue(OgnlContext context, Object root, Object value) throws OgnlException {
+			Node evalNode = getNode(context, root);
+			try {
+				context.clear();
+				Ognl.setValue(evalNode, context, root, value);
+			} catch(RuntimeException | OgnlException e) {
+				if(evalNode == node) {
+					throw e;
+				}
+				clearCompiled();
+				context.clear();
+				Ognl.setValue(node, context, root, value);
+			}
+		}
+		
+		boolean isCompiled() {
+			return compiledNode != null;
+		}
+	}
+	
+	private static final LruCache<String, CachedExpression> expressions = new LruCache<>(MAX_EXPRESSIONS);
+	
+	private static final ThreadLocal<OgnlContext> contexts = ThreadLocal.withInitial(() -> {
+		return new OgnlContext(new DefaultClassResolver(), new DefaultTypeConverter(), new DefaultMemberAccess(true));
+	});
+	
+	private final String expressionString;
+	private final CachedExpression expression;
 	
-	private Object expression = null;
-
 	public OgnlReference(ScriptController scriptController, String expression) {
 		super(scriptController);
 		
-		this.context = new OgnlContext(new DefaultClassResolver(), new DefaultTypeConverter(), new DefaultMemberAccess(true));
-		
-		try {
-			this.expression = Ognl.parseExpression(expression);
-		} catch (OgnlException e) {
-			e.printStackTrace();
+		this.expressionString = expression;
+		this.expression = getCachedExpression(expression);
+	}
+	
+	public String getExpression() {
+		return expressionString;
+	}
+	
+	/**
+	 * Returns the cached expression for an expression string, parsing it if it isn't cached, or null if it can't be parsed.
+	 */
+	static CachedExpression getCachedExpression(String expression) {
+		return expressions.get(expression, key -> {
+			try {
+				return new CachedExpression(key);
+			} catch(OgnlException e) {
+				e.printStackTrace();
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Returns whether a node only contains properties, indexes and constants, so that evaluating it while it is compiled
+	 * doesn't call any methods with side effects.
+	 */
+	private static boolean isPropertyPath(Node node) {
+		if(!(node instanceof ASTChain || node instanceof ASTProperty || node instanceof ASTConst)) {
+			return false;
+		}
+		for(int i = 0; i < node.jjtGetNumChildren(); i++) {
+			if(!isPropertyPath(node.jjtGetChild(i))) {
+				return false;
+			}
 		}
+		return true;
 	}
-
+	
 	@Override
 	protected void setSync(Engine script, Object value) throws Exception {
-		Ognl.setValue(expression, context, scriptController.getGlobalsSync(), value);
+		if(expression == null) {
+			throw new OgnlException("Invalid expression");
+		}
+		expression.setValue(contexts.get(), scriptController.getGlobalsSync(), value);
 	}
-
+	
 	@Override
-	protected Object getSync(Engine script) throws Exception {
-		return Ognl.getValue(expression, context, scriptController.getGlobalsSync());
+	public Object getSync(Engine script) throws Exception {
+		if(expression == null) {
+			throw new OgnlException("Invalid expression");
+		}
+		return expression.getValue(contexts.get(), scriptController.getGlobalsSync());
 	}
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package workbook.editor.reference;
 
+import workbook.script.Engine;
 import workbook.script.ScriptFuture;
 
 /**
@@ -15,4 +16,9 @@ public interface Reference {
 	 * Gets the value of the reference, returning a future that will complete with this value.
 	 */
 	public ScriptFuture<Object> get();
+	
+	/**
+	 * Returns the value of the reference synchronously. Must be called on the script thread.
+	 */
+	public Object getSync(Engine script) throws Exception;
 }
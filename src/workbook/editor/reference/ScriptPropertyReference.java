@@ -23,7 +23,7 @@ public class ScriptPropertyReference extends AbstractScriptReference {
 	}
 
 	@Override
-	protected Object getSync(Engine script) throws Exception {
+	public Object getSync(Engine script) throws Exception {
 		return script.getPropertyMap(object).get(property);
 	}
 }
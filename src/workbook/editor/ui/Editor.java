@@ -16,15 +16,18 @@ import workbook.editor.reference.OgnlReference;
 import workbook.editor.reference.Reference;
 import workbook.event.MajorRefreshEvent;
 import workbook.event.MinorRefreshEvent;
+import workbook.script.GlobalObserver;
 import workbook.script.ScriptController;
 import workbook.view.InputDialog;
 
 /**
- * An editor view that can be used to view and modify the contents of a reference.
+ * An editor view that can be used to view and modify the contents of a reference. Minor refreshes only read the reference
+ * again if the globals that it read have changed.
  */
 public abstract class Editor {
 	protected final ScriptController scriptController;
 	protected final EventBus eventBus;
+	private final GlobalObserver observer;
 	
 	private String expression;
 	protected Reference reference;
@@ -32,6 +35,7 @@ public abstract class Editor {
 	protected Editor(EventBus eventBus, ScriptController scriptController) {
 		this.eventBus = eventBus;
 		this.scriptController = scriptController;
+		this.observer = new GlobalObserver(scriptController);
 	}
 	
 	/**
@@ -46,8 +50,19 @@ public abstract class Editor {
 	 * Reads the reference value, updating this view.
 	 */
 	protected void readReference() {
+		Reference reference = this.reference;
 		if(reference != null) {
-			reference.get().thenAccept(value -> setValue(value));
+			observer.read(() -> reference.getSync(scriptController.getScriptSync()), this::setValue);
+		}
+	}
+	
+	/**
+	 * Reads the reference value if any of the globals it read last time have changed, updating this view.
+	 */
+	private void readReferenceIfChanged() {
+		Reference reference = this.reference;
+		if(reference != null) {
+			observer.readIfChanged(() -> reference.getSync(scriptController.getScriptSync()), this::setValue);
 		}
 	}
 	
@@ -64,7 +79,7 @@ public abstract class Editor {
 	@Subscribe
 	public void onMinorRefresh(MinorRefreshEvent event) {
 		if(event.getSource() != this) {
-			readReference();
+			readReferenceIfChanged();
 		}
 	}
 	
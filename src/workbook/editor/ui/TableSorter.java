@@ -1,78 +1,248 @@
 package workbook.editor.ui;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.widgets.Table;
-import org.eclipse.swt.widgets.TableColumn;
-import org.eclipse.swt.widgets.TableItem;
 
 import workbook.util.NaturalOrderComparator;
 
 /**
- * Allows sorting of a table by clicking on its column headers.
+ * Allows sorting of a virtual table by clicking on its column headers.
  */
 public class TableSorter {
+	// The minimum number of rows to sort in parallel.
+	private static final int PARALLEL_SORT_ROWS = 10000;
+	
+	private enum ValueType {
+		INTEGER, DECIMAL, NUMBER, DATE, COMPARABLE, STRING
+	}
+	
+	private final VirtualTable virtualTable;
 	private final Table table;
 	
+	// The column and direction of the last sort, and the generation of the model it sorted.
 	private int sortColumn = -1;
 	private boolean ascending = true;
+	private int sortGeneration = -1;
 	
-	public TableSorter(Table table) {
-		this.table = table;
+	public TableSorter(VirtualTable virtualTable) {
+		this.virtualTable = virtualTable;
+		this.table = virtualTable.getTable();
 	}
 	
 	/**
-	 * Adds listeners to each column to enable sorting by column.
+	 * Adds a listener to each column, including columns added later, to enable sorting by column.
 	 */
 	public void addListeners() {
-		for(TableColumn column:table.getColumns()) {
-			column.addSelectionListener(new SelectionAdapter() {
-				public void widgetSelected(SelectionEvent event) {
-					int newSortColumn = Arrays.asList(table.getColumns()).indexOf(column);
-					
-					if(newSortColumn == sortColumn) {
-						ascending = !ascending;
-					} else {
-						sortColumn = newSortColumn;
-						ascending = true;
-					}
-					
-					sortItems();
+		virtualTable.addColumnSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent event) {
+				int newSortColumn = Arrays.asList(table.getColumns()).indexOf(event.widget);
+				
+				// Start again with an ascending sort after the model has been replaced.
+				if(virtualTable.getGeneration() != sortGeneration) {
+					sortColumn = -1;
+					ascending = true;
+					sortGeneration = virtualTable.getGeneration();
 				}
-			});
-		}
+				
+				if(newSortColumn == sortColumn) {
+					ascending = !ascending;
+				} else {
+					sortColumn = newSortColumn;
+					ascending = true;
+				}
+				
+				sortItems();
+			}
+		});
 	}
 	
 	/**
-	 * Sorts the table based on sortColumn and ascending, recreating the tableItems in the new order.
+	 * Sorts the table based on sortColumn and ascending, reading the values of the column and reordering the rows
+	 * of the virtual table so that only the shown rows are updated.
 	 */
 	private void sortItems() {
 		if(sortColumn >= 0 && sortColumn < table.getColumnCount()) {
 			table.setSortColumn(table.getColumn(sortColumn));
 			table.setSortDirection(ascending ? SWT.UP : SWT.DOWN);
-			Comparator<String> natcmp = new NaturalOrderComparator();
 			
-			// Get table items in sorted order.
-			TableItem[] items = table.getItems();
-			Arrays.sort(items, (x, y) -> natcmp.compare(x.getText(sortColumn), y.getText(sortColumn)) * (ascending ? 1 : -1));
+			boolean sortAscending = ascending;
+			int readGeneration = virtualTable.getGeneration();
+			virtualTable.readColumn(sortColumn).thenAccept(values -> {
+				int[] order = getSortedOrder(values, sortAscending);
+				table.getDisplay().asyncExec(() -> {
+					if(!table.isDisposed()) {
+						virtualTable.setOrder(order, readGeneration);
+					}
+				});
+			});
+		} else {
+			table.setSortDirection(SWT.NONE);
+		}
+	}
+	
+	/**
+	 * Returns the rows in order of their values. Columns where every value is a number or a date are sorted by value,
+	 * exactly for integers and big numbers, and as doubles for other numbers,
+	 * columns of another comparable type are sorted by compareTo, and other columns are sorted by their string values
+	 * in natural order. Null values are sorted after other values in ascending order.
+	 */
+	static int[] getSortedOrder(List<Object> values, boolean ascending) {
+		Comparator<Integer> comparator = getComparator(values);
+		if(!ascending) {
+			comparator = comparator.reversed();
+		}
+		
+		Integer[] rows = new Integer[values.size()];
+		for(int i = 0; i < rows.length; i++) {
+			rows[i] = i;
+		}
+		
+		if(rows.length >= PARALLEL_SORT_ROWS) {
+			Arrays.parallelSort(rows, comparator);
+		} else {
+			Arrays.sort(rows, comparator);
+		}
+		
+		int[] order = new int[rows.length];
+		for(int i = 0; i < rows.length; i++) {
+			order[i] = rows[i];
+		}
+		return order;
+	}
+	
+	/**
+	 * Returns a comparator of rows that compares keys calculated once for each row from its value.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Comparator<Integer> getComparator(List<Object> values) {
+		int size = values.size();
+		
+		switch(getValueType(values)) {
+		case INTEGER:
+			long[] integerKeys = new long[size];
+			boolean[] nullKeys = new boolean[size];
+			for(int i = 0; i < size; i++) {
+				Object value = values.get(i);
+				nullKeys[i] = (value == null);
+				integerKeys[i] = (value == null) ? 0 : ((Number) value).longValue();
+			}
+			return (x, y) -> (nullKeys[x] != nullKeys[y]) ? Boolean.compare(nullKeys[x], nullKeys[y]) : Long.compare(integerKeys[x], integerKeys[y]);
 			
-			for(int i = 0; i < items.length; i++) {
-				// Create copy of item[i] at bottom of table.
-				TableItem item = new TableItem(items[i].getParent(), items[i].getStyle());
-				for(int j = 0; j < table.getColumnCount(); j++) {
-					item.setText(j, items[i].getText(j));
-				}
-				item.setData(items[i].getData());
+		case DECIMAL:
+			Comparator<BigDecimal> decimalComparator = Comparator.nullsLast(Comparator.naturalOrder());
+			BigDecimal[] decimalKeys = new BigDecimal[size];
+			for(int i = 0; i < size; i++) {
+				decimalKeys[i] = toBigDecimal(values.get(i));
+			}
+			return (x, y) -> decimalComparator.compare(decimalKeys[x], decimalKeys[y]);
+			
+		case NUMBER:
+			double[] numberKeys = new double[size];
+			for(int i = 0; i < size; i++) {
+				Object value = values.get(i);
+				numberKeys[i] = (value == null) ? Double.NaN : ((Number) value).doubleValue();
+			}
+			return (x, y) -> Double.compare(numberKeys[x], numberKeys[y]);
+			
+		case DATE:
+			long[] dateKeys = new long[size];
+			for(int i = 0; i < size; i++) {
+				Object value = values.get(i);
+				dateKeys[i] = (value == null) ? Long.MAX_VALUE : getTime(value);
+			}
+			return (x, y) -> Long.compare(dateKeys[x], dateKeys[y]);
+			
+		case COMPARABLE:
+			Comparator<Comparable> comparableComparator = Comparator.nullsLast(Comparator.naturalOrder());
+			Comparable[] comparableKeys = values.toArray(new Comparable[size]);
+			return (x, y) -> comparableComparator.compare(comparableKeys[x], comparableKeys[y]);
+			
+		default:
+			Comparator<String> natcmp = new NaturalOrderComparator();
+			String[] stringKeys = new String[size];
+			for(int i = 0; i < size; i++) {
+				stringKeys[i] = String.valueOf(values.get(i));
+			}
+			return (x, y) -> natcmp.compare(stringKeys[x], stringKeys[y]);
+		}
+	}
+	
+	/**
+	 * Returns the type of sort to use for the non-null values.
+	 */
+	private static ValueType getValueType(List<Object> values) {
+		boolean integers = true;
+		boolean decimals = true;
+		boolean numbers = true;
+		boolean dates = true;
+		boolean comparables = true;
+		Class<?> comparableClass = null;
+		
+		for(Object value:values) {
+			if(value != null) {
+				integers &= isInteger(value);
+				decimals &= (isInteger(value) || value instanceof BigInteger || value instanceof BigDecimal);
+				numbers &= (value instanceof Number);
+				dates &= (value instanceof Date || value instanceof Calendar || value instanceof Instant);
 				
-				// Dispose original item.
-				items[i].dispose();
+				if(comparableClass == null) {
+					comparableClass = value.getClass();
+				}
+				comparables &= (value instanceof Comparable && !(value instanceof CharSequence) && value.getClass() == comparableClass);
 			}
+		}
+		
+		if(comparableClass == null) {
+			return ValueType.STRING;
+		} else if(integers) {
+			return ValueType.INTEGER;
+		} else if(decimals) {
+			return ValueType.DECIMAL;
+		} else if(numbers) {
+			return ValueType.NUMBER;
+		} else if(dates) {
+			return ValueType.DATE;
+		} else if(comparables) {
+			return ValueType.COMPARABLE;
 		} else {
-			table.setSortDirection(SWT.NONE);
+			return ValueType.STRING;
+		}
+	}
+	
+	private static boolean isInteger(Object value) {
+		return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+	}
+	
+	private static BigDecimal toBigDecimal(Object value) {
+		if(value == null) {
+			return null;
+		} else if(value instanceof BigDecimal) {
+			return (BigDecimal) value;
+		} else if(value instanceof BigInteger) {
+			return new BigDecimal((BigInteger) value);
+		} else {
+			return BigDecimal.valueOf(((Number) value).longValue());
+		}
+	}
+	
+	private static long getTime(Object value) {
+		if(value instanceof Date) {
+			return ((Date) value).getTime();
+		} else if(value instanceof Calendar) {
+			return ((Calendar) value).getTimeInMillis();
+		} else {
+			return ((Instant) value).toEpochMilli();
 		}
 	}
 }
\ No newline at end of file
@@ -1,18 +1,11 @@
 package workbook.editor.ui;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.TableEditor;
 import org.eclipse.swt.events.FocusAdapter;
 import org.eclipse.swt.events.FocusEvent;
 import org.eclipse.swt.events.MouseAdapter;
 import org.eclipse.swt.events.MouseEvent;
-import org.eclipse.swt.events.SelectionAdapter;
-import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.TraverseEvent;
 import org.eclipse.swt.events.TraverseListener;
 import org.eclipse.swt.graphics.Point;
@@ -20,16 +13,17 @@ import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Table;
-import org.eclipse.swt.widgets.TableColumn;
 import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
 
 import com.google.common.eventbus.EventBus;
 
 import workbook.editor.ScriptTableUtil;
-import workbook.editor.reference.Reference;
+import workbook.editor.TableLoader;
+import workbook.editor.TableModel;
 import workbook.event.MinorRefreshEvent;
 import workbook.script.ScriptController;
+import workbook.script.ScriptPriority;
 import workbook.view.TabbedView;
 
 /**
@@ -40,6 +34,7 @@ public class TableTabbedEditor extends Editor implements TabbedView {
 	private final EventBus eventBus;
 	private final ScriptTableUtil scriptTableUtil;
 	
+	private final VirtualTable virtualTable;
 	private final Table table;
 	private final TableSorter tableSorter;
 	private final TableEditor tableEditor;
@@ -51,7 +46,8 @@ public class TableTabbedEditor extends Editor implements TabbedView {
 		this.eventBus = eventBus;
 		this.scriptTableUtil = new ScriptTableUtil(scriptController);
 		
-		this.table = new Table(parent, SWT.NONE);
+		this.virtualTable = new VirtualTable(parent, SWT.NONE, scriptController);
+		this.table = virtualTable.getTable();
 		this.tableEditor = new TableEditor(table);
 		tableEditor.horizontalAlignment = SWT.LEFT;
 		tableEditor.grabHorizontal = true;
@@ -62,7 +58,8 @@ public class TableTabbedEditor extends Editor implements TabbedView {
 			}
 		});
 		
-		tableSorter = new TableSorter(table);
+		tableSorter = new TableSorter(virtualTable);
+		tableSorter.addListeners();
 		
 		registerEvents();
 	}
@@ -98,14 +95,14 @@ public class TableTabbedEditor extends Editor implements TabbedView {
 		Text text = new Text(table, SWT.NONE);
 		
 		String originalValue = item.getText(column);
-		Object itemData = item.getData();
+		int row = virtualTable.getRow(table.indexOf(item));
 		
 		text.addFocusListener(new FocusAdapter() {
 			public void focusLost(FocusEvent event) {
 				if(!text.isDisposed()) {
 					// Save value and dispose editor.
 					if(!text.getText().equals(originalValue)) {
-						writeItemValue(item, itemData, column, text.getText());
+						writeItemValue(item, row, column, text.getText());
 					}
 					text.dispose();
 				}
@@ -118,7 +115,7 @@ public class TableTabbedEditor extends Editor implements TabbedView {
 					if(event.detail == SWT.TRAVERSE_RETURN) {
 						// Save value and dispose editor.
 						if(!text.getText().equals(originalValue)) {
-							writeItemValue(item, itemData, column, text.getText());
+							writeItemValue(item, row, column, text.getText());
 						}
 						text.dispose();
 						event.doit = false;
@@ -144,11 +141,12 @@ public class TableTabbedEditor extends Editor implements TabbedView {
 	 */
 	public void setValue(Object value) {
 		if(value != null) {
-			scriptController.exec(() -> {
-				Map<String, List<Reference>> rows = scriptTableUtil.getTable(value);
+			scriptController.exec(ScriptPriority.REFRESH, () -> {
+				TableLoader loader = scriptTableUtil.getTableLoader(value);
+				loader.loadChunk();
 				table.getDisplay().asyncExec(() -> {
 					if(!table.isDisposed()) {
-						setTableData(rows);
+						setTableData(loader);
 					}
 				});
 				return null;
@@ -157,102 +155,37 @@ public class TableTabbedEditor extends Editor implements TabbedView {
 	}
 	
 	/**
-	 * Adds the table items based on columns.
+	 * Sets the rows of the table to the rows of loader, which loads any remaining rows in the background and creates
+	 * the text of the rows as they are shown.
 	 */
-	private void setTableData(Map<String, List<Reference>> columns) {
-		for(TableItem tableItem:table.getItems()) {
-			tableItem.dispose();
-		}
-		
-		for(TableColumn tableColummn:table.getColumns()) {
-			tableColummn.dispose();
-		}
-		
-		table.setHeaderVisible(true);
-		
-		List<TableItem> rows = new ArrayList<>();
-		
-		Map<String, Integer> columnIndexes = new HashMap<>();
-		
-		// Add columns.
-		columns.forEach((name, values) -> {
-			TableColumn column = new TableColumn(table, SWT.NONE);
-			column.setText(name);
-			column.setWidth(100);
-			column.setMoveable(true);
-			
-			columnIndexes.put(name, columnIndexes.size());
-			
-			column.addSelectionListener(new SelectionAdapter() {
-				public void widgetDefaultSelected(SelectionEvent event) {
-					column.pack();
-				}
-			});
-		});
-		
-		// Add table items with values.
-		columns.forEach((name, values) -> {
-			for(int i = 0; i < values.size(); i++) {
-				if(rows.size() <= i) {
-					rows.add(new TableItem(table, SWT.NONE));
-				}
-				
-				TableItem item = rows.get(i);
-				
-				Reference reference = values.get(i);
-				readItemValue(item, columnIndexes.get(name), reference);
-			}
-		});
-		
-		// Set references data for each row.
-		for(int i = 0; i < rows.size(); i++) {
-			List<Reference> references = new ArrayList<>();
-			for(List<Reference> values:columns.values()) {
-				references.add(values.get(i));
-			}
-			rows.get(i).setData(references);
-		}
-		
-		tableSorter.addListeners();
+	private void setTableData(TableLoader loader) {
+		virtualTable.setLoader(loader);
 	}
 	
 	/**
-	 * Reads the table item value from the reference.
-	 */
-	public void readItemValue(TableItem tableItem, int index, Reference reference) {
-		if(reference != null) {
-			reference.get().thenAccept(value -> {
-				String stringValue = String.valueOf(value);
-				tableItem.getDisplay().asyncExec(() -> {
-					if(!tableItem.isDisposed()) {
-						tableItem.setText(index, stringValue);
-					}
-				});
-			});
-		}
-	}
-
-	/**
-	 * Writes value to the reference of tableItem.
+	 * Writes value to a reference to the cell of tableItem, then reads the row again.
 	 */
-	private void writeItemValue(TableItem tableItem, Object itemData, int index, String value) {
+	private void writeItemValue(TableItem tableItem, int row, int column, String value) {
 		if(!tableItem.isDisposed()) {
-			tableItem.setText(index, "");
+			tableItem.setText(column, "");
 		}
 		
-		List<Reference> references = (List<Reference>) itemData;
-		if(references != null && index < references.size()) {
-			Reference reference = references.get(index);
+		TableModel model = virtualTable.getModel();
+		scriptController.exec(() -> model.getReference(row, column)).thenAccept(reference -> {
 			if(reference != null) {
 				reference.set(value).thenRunAlways(() -> {
 					eventBus.post(new MinorRefreshEvent(this));
-					readItemValue(tableItem, index, reference);
+					table.getDisplay().asyncExec(() -> {
+						if(!table.isDisposed()) {
+							virtualTable.refreshRow(row);
+						}
+					});
 				});
 			}
-		}
+		});
 	}
 	
 	public Control getControl() {
-		return table;
+		return virtualTable.getControl();
 	}
 }
\ No newline at end of file
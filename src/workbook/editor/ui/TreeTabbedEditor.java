@@ -30,6 +30,7 @@ import workbook.editor.ScriptTableUtil;
 import workbook.editor.reference.Reference;
 import workbook.event.MinorRefreshEvent;
 import workbook.script.ScriptController;
+import workbook.script.ScriptPriority;
 import workbook.view.TabbedView;
 
 /**
@@ -166,7 +167,7 @@ public class TreeTabbedEditor extends Editor implements TabbedView {
 	 */
 	public void setValue(Object value) {
 		if(value != null) {
-			scriptController.exec(() -> {
+			scriptController.exec(ScriptPriority.REFRESH, () -> {
 				Map<String, Reference> rows = scriptTableUtil.getTableRow(value);
 				tree.getDisplay().asyncExec(() -> {
 					if(!tree.isDisposed()) {
@@ -224,14 +225,16 @@ public class TreeTabbedEditor extends Editor implements TabbedView {
 	private void addTreeItems(Tree parent, Map<String, Reference> rows, List<List<String>> expandedItem) {
 		TreeItem[] oldItems = parent.getItems();
 		
+		List<TreeItem> treeItems = new ArrayList<>();
 		rows.forEach((name, value) -> {
 			TreeItem treeItem = new TreeItem(parent, SWT.NONE);
 			treeItem.setText(0, name);
 			treeItem.setData(value);
-			readItemValue(treeItem, value);
+			treeItems.add(treeItem);
 			
 			treeItem.setExpanded(true);
 		});
+		readItemValues(treeItems, new ArrayList<>(rows.values()));
 		
 		for(TreeItem treeItem:oldItems) {
 			treeItem.dispose();
@@ -244,12 +247,14 @@ public class TreeTabbedEditor extends Editor implements TabbedView {
 	private void addTreeItems(TreeItem parent, Map<String, Reference> rows) {
 		TreeItem[] oldItems = parent.getItems();
 		
+		List<TreeItem> treeItems = new ArrayList<>();
 		rows.forEach((name, value) -> {
 			TreeItem treeItem = new TreeItem(parent, SWT.NONE);
 			treeItem.setText(0, name);
 			treeItem.setData(value);
-			readItemValue(treeItem, value);
+			treeItems.add(treeItem);
 		});
+		readItemValues(treeItems, new ArrayList<>(rows.values()));
 		
 		for(TreeItem treeItem:oldItems) {
 			treeItem.dispose();
@@ -266,20 +271,48 @@ public class TreeTabbedEditor extends Editor implements TabbedView {
 				
 				String stringValue = String.valueOf(value);
 				treeItem.getDisplay().asyncExec(() -> {
-					if(!treeItem.isDisposed()) {
-						treeItem.setText(1, stringValue);
-						if(hasChild) {
-							new TreeItem(treeItem, SWT.NONE);
-							if(shouldExpand(treeItem)) {
-								expandItem(treeItem);
-							}
-						}
-					}
+					setItemValue(treeItem, stringValue, hasChild);
 				});
 			});
 		}
 	}
 	
+	/**
+	 * Sets the treeItems values by reading the references, in a single script thread task and a single UI update.
+	 */
+	private void readItemValues(List<TreeItem> treeItems, List<Reference> references) {
+		scriptController.getValues(references).thenAccept(values -> {
+			List<Boolean> hasChildren = new ArrayList<>(values.size());
+			List<String> stringValues = new ArrayList<>(values.size());
+			for(Object value:values) {
+				hasChildren.add(!scriptTableUtil.getTableRow(value).isEmpty());
+				stringValues.add(String.valueOf(value));
+			}
+			tree.getDisplay().asyncExec(() -> {
+				for(int i = 0; i < treeItems.size(); i++) {
+					if(references.get(i) != null) {
+						setItemValue(treeItems.get(i), stringValues.get(i), hasChildren.get(i));
+					}
+				}
+			});
+		});
+	}
+	
+	/**
+	 * Sets the value text of treeItem, adding a placeholder child if the value has children so that it can be expanded.
+	 */
+	private void setItemValue(TreeItem treeItem, String stringValue, boolean hasChild) {
+		if(!treeItem.isDisposed()) {
+			treeItem.setText(1, stringValue);
+			if(hasChild) {
+				new TreeItem(treeItem, SWT.NONE);
+				if(shouldExpand(treeItem)) {
+					expandItem(treeItem);
+				}
+			}
+		}
+	}
+	
 	/**
 	 * Returns whether a treeItem should be expanded based on whether it is represented in expandedItems.
 	 */
@@ -0,0 +1,420 @@
+package workbook.editor.ui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.SelectionListener;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+
+import workbook.editor.TableLoader;
+import workbook.editor.TableModel;
+import workbook.layout.GridDataBuilder;
+import workbook.layout.GridLayoutBuilder;
+import workbook.script.ScriptController;
+import workbook.script.ScriptFuture;
+import workbook.script.ScriptPriority;
+
+/**
+ * Displays a table model in a virtual table, so that table items are only created for the rows that are shown. The text for
+ * a row is created when the row is first shown, along with the rows around it in a single script thread task.
+ * The rows can be displayed in a different order to the model, and the number of rows is shown below the table. The rows
+ * can also be loaded from a TableLoader, one chunk at a time, adding them to the table as they are loaded until all rows are
+ * loaded or loading is stopped.
+ */
+public class VirtualTable {
+	// The number of rows before and after a shown row to read at the same time.
+	private static final int PREFETCH_ROWS = 50;
+	
+	private final ScriptController scriptController;
+	
+	private final Composite composite;
+	private final Table table;
+	private final Label rowCountLabel;
+	private final Button loadButton;
+	
+	private TableModel model;
+	private int rowCount = 0;
+	
+	// The loader for the remaining rows of the model, or null if the model is complete.
+	private TableLoader loader;
+	private boolean loading = false;
+	private boolean chunkPending = false;
+	
+	private final List<SelectionListener> columnSelectionListeners = new ArrayList<>();
+	
+	// The text for each row in model order, or null if it hasn't been read.
+	private String[][] rowText = new String[0][];
+	private final BitSet requestedRows = new BitSet();
+	
+	// The model row for each displayed row.
+	private int[] order = new int[0];
+	
+	// Incremented when the model is replaced, so that reads for the previous model are ignored.
+	private int generation = 0;
+	
+	public VirtualTable(Composite parent, int style, ScriptController scriptController) {
+		this.scriptController = scriptController;
+		
+		composite = new Composite(parent, SWT.NONE);
+		composite.setLayout(new GridLayoutBuilder().numColumns(2).marginWidth(0).marginHeight(0).verticalSpacing(2).build());
+		composite.addDisposeListener(event -> closeLoader());
+		
+		table = new Table(composite, style | SWT.VIRTUAL);
+		table.setLayoutData(new GridDataBuilder().fillHorizontal().fillVertical().horizontalSpan(2).build());
+		table.setHeaderVisible(true);
+		table.addListener(SWT.SetData, event -> setItemData((TableItem) event.item, event.index));
+		
+		rowCountLabel = new Label(composite, SWT.NONE);
+		rowCountLabel.setLayoutData(new GridDataBuilder().fillHorizontal().build());
+		
+		loadButton = new Button(composite, SWT.PUSH);
+		loadButton.setLayoutData(new GridDataBuilder().build());
+		loadButton.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent event) {
+				toggleLoading();
+			}
+		});
+		setLoadButtonVisible(false);
+	}
+	
+	/**
+	 * Replaces the columns and rows of the table with those in a model.
+	 */
+	public void setModel(TableModel model) {
+		replaceModel(model, null);
+	}
+	
+	/**
+	 * Replaces the columns and rows of the table with the rows that have been loaded by loader, then loads the remaining
+	 * rows in the background, adding them to the table after each chunk.
+	 */
+	public void setLoader(TableLoader loader) {
+		replaceModel(loader.getModel(), loader);
+		if(loading) {
+			loadNextChunk();
+		}
+	}
+	
+	private void replaceModel(TableModel model, TableLoader loader) {
+		closeLoader();
+		generation++;
+		
+		table.setItemCount(0);
+		table.setSortColumn(null);
+		table.setSortDirection(SWT.NONE);
+		for(TableColumn tableColumn:table.getColumns()) {
+			tableColumn.dispose();
+		}
+		
+		this.model = model;
+		this.loader = loader;
+		loading = (loader != null && !loader.isDone());
+		chunkPending = false;
+		
+		rowCount = 0;
+		rowText = new String[0][];
+		requestedRows.clear();
+		order = new int[0];
+		
+		addLoadedRows();
+	}
+	
+	/**
+	 * Adds the columns and rows that have been added to the model since the table was last updated. The model only changes
+	 * while a chunk is loaded, so this is called after each chunk.
+	 */
+	private void addLoadedRows() {
+		int columnCount = table.getColumnCount();
+		if(model.getColumnCount() > columnCount) {
+			for(int i = columnCount; i < model.getColumnCount(); i++) {
+				addColumn(model.getColumnName(i));
+			}
+			
+			// The text of the rows that have been read doesn't have the new columns.
+			Arrays.fill(rowText, null);
+			requestedRows.clear();
+			table.clearAll();
+		}
+		
+		int loadedRowCount = (model.getColumnCount() == 0) ? 0 : model.getRowCount();
+		if(loadedRowCount > rowCount) {
+			rowText = Arrays.copyOf(rowText, loadedRowCount);
+			order = extendOrder(order, loadedRowCount);
+			rowCount = loadedRowCount;
+			table.setItemCount(rowCount);
+		}
+		
+		updateStatus();
+	}
+	
+	private void addColumn(String name) {
+		TableColumn column = new TableColumn(table, SWT.NONE);
+		column.setText(name);
+		column.setWidth(100);
+		column.setMoveable(true);
+		
+		column.addSelectionListener(new SelectionAdapter() {
+			public void widgetDefaultSelected(SelectionEvent event) {
+				column.pack();
+			}
+		});
+		
+		columnSelectionListeners.forEach(column::addSelectionListener);
+	}
+	
+	/**
+	 * Adds a listener for the selection of the header of each column, including columns that are added as rows are loaded.
+	 */
+	public void addColumnSelectionListener(SelectionListener listener) {
+		columnSelectionListeners.add(listener);
+		for(TableColumn column:table.getColumns()) {
+			column.addSelectionListener(listener);
+		}
+	}
+	
+	/**
+	 * Loads the next chunk of rows on the script thread, then adds them to the table and continues loading unless loading
+	 * has been stopped.
+	 */
+	private void loadNextChunk() {
+		TableLoader readLoader = loader;
+		int readGeneration = generation;
+		chunkPending = true;
+		scriptController.exec(ScriptPriority.BACKGROUND, readLoader::loadChunk).thenAcceptAlways(result -> {
+			if(result instanceof Throwable) {
+				((Throwable) result).printStackTrace();
+			}
+			
+			table.getDisplay().asyncExec(() -> {
+				if(!table.isDisposed() && generation == readGeneration) {
+					chunkPending = false;
+					if(!Boolean.TRUE.equals(result)) {
+						loading = false;
+					}
+					addLoadedRows();
+					if(loading) {
+						loadNextChunk();
+					}
+				}
+			});
+		});
+	}
+	
+	/**
+	 * Stops loading rows after the current chunk, or continues loading rows if it has been stopped.
+	 */
+	private void toggleLoading() {
+		if(loader == null || loader.isDone()) {
+			return;
+		}
+		
+		loading = !loading;
+		if(loading && !chunkPending) {
+			loadNextChunk();
+		}
+		updateStatus();
+	}
+	
+	/**
+	 * Closes the loader on the script thread so that any resource it holds is released.
+	 */
+	private void closeLoader() {
+		TableLoader closeLoader = loader;
+		if(closeLoader != null && !closeLoader.isDone()) {
+			scriptController.exec(ScriptPriority.BACKGROUND, () -> {
+				closeLoader.close();
+				return null;
+			});
+		}
+		loader = null;
+		loading = false;
+	}
+	
+	/**
+	 * Shows the number of rows, and whether more rows are being loaded.
+	 */
+	private void updateStatus() {
+		String rows = rowCount + ((rowCount == 1) ? " row" : " rows");
+		
+		if(loader == null || loader.isDone()) {
+			rowCountLabel.setText(rows);
+			setLoadButtonVisible(false);
+		} else if(loading) {
+			rowCountLabel.setText(rows + " loaded");
+			loadButton.setText("Stop");
+			setLoadButtonVisible(true);
+		} else {
+			rowCountLabel.setText(rows + " loaded (stopped)");
+			loadButton.setText("Continue");
+			setLoadButtonVisible(true);
+		}
+		
+		composite.layout();
+	}
+	
+	private void setLoadButtonVisible(boolean visible) {
+		((GridData) loadButton.getLayoutData()).exclude = !visible;
+		loadButton.setVisible(visible);
+	}
+	
+	/**
+	 * Sets the text of a table item when it is first shown, or reads its row if it hasn't been read yet.
+	 */
+	private void setItemData(TableItem item, int index) {
+		int row = order[index];
+		
+		if(rowText[row] != null) {
+			item.setText(rowText[row]);
+		} else {
+			readRows(Math.max(0, index - PREFETCH_ROWS), Math.min(rowCount, index + PREFETCH_ROWS + 1));
+		}
+	}
+	
+	/**
+	 * Creates the text for the displayed rows from start to end that haven't been read, then updates those rows.
+	 */
+	private void readRows(int start, int end) {
+		List<Integer> rows = new ArrayList<>();
+		for(int index = start; index < end; index++) {
+			int row = order[index];
+			if(!requestedRows.get(row)) {
+				requestedRows.set(row);
+				rows.add(row);
+			}
+		}
+		
+		if(rows.isEmpty()) {
+			return;
+		}
+		
+		TableModel readModel = model;
+		int readGeneration = generation;
+		scriptController.exec(ScriptPriority.REFRESH, () -> {
+			int columnCount = readModel.getColumnCount();
+			String[][] text = new String[rows.size()][columnCount];
+			for(int i = 0; i < rows.size(); i++) {
+				int row = rows.get(i);
+				for(int column = 0; column < columnCount; column++) {
+					text[i][column] = readModel.hasCell(row, column) ? String.valueOf(readModel.getValue(row, column)) : "";
+				}
+			}
+			return text;
+		}).thenAccept(text -> {
+			table.getDisplay().asyncExec(() -> {
+				if(!table.isDisposed() && generation == readGeneration) {
+					for(int i = 0; i < rows.size(); i++) {
+						rowText[rows.get(i)] = text[i];
+					}
+					table.clear(start, end - 1);
+				}
+			});
+		});
+	}
+	
+	/**
+	 * Returns the values in a column, in model order.
+	 */
+	public ScriptFuture<List<Object>> readColumn(int column) {
+		TableModel readModel = model;
+		return scriptController.exec(ScriptPriority.REFRESH, () -> {
+			List<Object> values = new ArrayList<>(readModel.getRowCount());
+			for(int row = 0; row < readModel.getRowCount(); row++) {
+				values.add(readModel.getValue(row, column));
+			}
+			return values;
+		});
+	}
+	
+	/**
+	 * Returns a number that changes each time the model is replaced.
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+	
+	/**
+	 * Displays the rows in a new order, where order contains the model row for each displayed row, unless the model has
+	 * been replaced since orderGeneration.
+	 */
+	public void setOrder(int[] order, int orderGeneration) {
+		if(orderGeneration != generation) {
+			return;
+		}
+		
+		// Rows that haven't been added to the table yet are left out, and shown after the other rows once they are added,
+		// as are rows loaded since the order was created.
+		if(order.length > rowCount) {
+			order = Arrays.stream(order).filter(row -> row < rowCount).toArray();
+		}
+		this.order = extendOrder(order, rowCount);
+		table.clearAll();
+	}
+	
+	/**
+	 * Returns order with the model rows from its length up to rowCount added to the end.
+	 */
+	private static int[] extendOrder(int[] order, int rowCount) {
+		int[] extendedOrder = Arrays.copyOf(order, rowCount);
+		for(int i = order.length; i < rowCount; i++) {
+			extendedOrder[i] = i;
+		}
+		return extendedOrder;
+	}
+	
+	/**
+	 * Reads the values of a row again from its object after they have changed, then updates the row.
+	 */
+	public void refreshRow(int row) {
+		if(row >= 0 && row < rowCount) {
+			TableModel readModel = model;
+			int readGeneration = generation;
+			scriptController.exec(ScriptPriority.REFRESH, () -> {
+				readModel.updateRow(row);
+				return null;
+			}).thenRunAlways(() -> {
+				table.getDisplay().asyncExec(() -> {
+					if(!table.isDisposed() && generation == readGeneration) {
+						rowText[row] = null;
+						requestedRows.clear(row);
+						table.clearAll();
+					}
+				});
+			});
+		}
+	}
+	
+	/**
+	 * Returns the model row that is displayed at index.
+	 */
+	public int getRow(int index) {
+		return order[index];
+	}
+	
+	public TableModel getModel() {
+		return model;
+	}
+	
+	public int getRowCount() {
+		return rowCount;
+	}
+	
+	public Table getTable() {
+		return table;
+	}
+	
+	public Control getControl() {
+		return composite;
+	}
+}
@@ -1,5 +1,6 @@
 package workbook.script;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -12,9 +13,10 @@ import syntaxhighlighter.brush.Brush;
  */
 public interface Engine {
 	public Brush getBrush();
-	public void setGlobals(Map<String, Object> globals);
+	public void setGlobals(GlobalBindings globals);
 	public boolean isIterable(Object value);
 	public void iterateObject(Object array, Consumer<Object> consumer);
+	public Iterator<Object> iterator(Object array);
 	public void setVariable(String name, Object value);
 	public Object getVariable(String name);
 	public boolean isScriptObject(Object object);
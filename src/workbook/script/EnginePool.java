@@ -0,0 +1,39 @@
+package workbook.script;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+import workbook.view.result.wrapper.ChartWrapper;
+
+/**
+ * A pool of extra engines of a single script type, used to evaluate commands on other threads than the script thread.
+ * Engines are created when needed and reused once released, but each is only used by one thread at a time.
+ */
+class EnginePool {
+	private final Supplier<Engine> engineFactory;
+	private final Queue<Engine> idleEngines = new ConcurrentLinkedQueue<>();
+	
+	public EnginePool(Supplier<Engine> engineFactory) {
+		this.engineFactory = engineFactory;
+	}
+	
+	/**
+	 * Returns an idle engine, or creates a new one with the given functions defined.
+	 */
+	public Engine take(List<String> functionNames) {
+		Engine engine = idleEngines.poll();
+		if(engine == null) {
+			engine = engineFactory.get();
+			for(String name:functionNames) {
+				engine.defineFunction(name, ChartWrapper::new);
+			}
+		}
+		return engine;
+	}
+	
+	public void release(Engine engine) {
+		idleEngines.add(engine);
+	}
+}
@@ -0,0 +1,236 @@
+package workbook.script;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.script.Bindings;
+import javax.script.SimpleBindings;
+
+/**
+ * The global variables shared by all the script engines. Engines that accept external bindings use
+ * this directly as their engine scope, so evaluating a command doesn't copy the globals. Engines that
+ * keep variables in their own runtime can track the keys that have changed since they last synchronized.
+ * The keys read and written can also be recorded to find the dependencies between evaluations.
+ * Engines that read some globals from their own runtime or from a copy of the globals record those keys as possibly read.
+ */
+public class GlobalBindings extends SimpleBindings {
+	/**
+	 * The keys read and written while recording.
+	 */
+	public static class Access {
+		private final Set<String> reads = new LinkedHashSet<>();
+		private final Set<String> writes = new LinkedHashSet<>();
+		private final Set<String> possibleReads = new LinkedHashSet<>();
+		private final Set<String> blindWrites = new LinkedHashSet<>();
+		
+		public Set<String> getReads() {
+			return reads;
+		}
+		
+		/**
+		 * Returns the keys that an engine may have read without going through the bindings.
+		 */
+		public Set<String> getPossibleReads() {
+			return possibleReads;
+		}
+		
+		public Set<String> getWrites() {
+			return writes;
+		}
+		
+		/**
+		 * Returns the keys that were written before they were read or possibly read.
+		 */
+		public Set<String> getBlindWrites() {
+			return blindWrites;
+		}
+	}
+	
+	/**
+	 * A copy of the globals for a separate evaluation, which records each key read from it as possibly read from the
+	 * globals. Reading all of the keys at once records all of them, and keys put into the copy are local to it.
+	 */
+	private class RecordingCopy extends SimpleBindings {
+		private final Set<String> localKeys = new HashSet<>();
+		
+		public RecordingCopy() {
+			super(new HashMap<>(GlobalBindings.this));
+		}
+		
+		public Object put(String name, Object value) {
+			localKeys.add(name);
+			return super.put(name, value);
+		}
+		
+		public Object get(Object key) {
+			readCopy(key);
+			return super.get(key);
+		}
+		
+		public boolean containsKey(Object key) {
+			readCopy(key);
+			return super.containsKey(key);
+		}
+		
+		public Set<String> keySet() {
+			readAllCopy();
+			return super.keySet();
+		}
+		
+		public Set<Map.Entry<String, Object>> entrySet() {
+			readAllCopy();
+			return super.entrySet();
+		}
+		
+		public Collection<Object> values() {
+			readAllCopy();
+			return super.values();
+		}
+		
+		private void readCopy(Object key) {
+			if(key instanceof String && !localKeys.contains(key)) {
+				recordPossibleReads(Collections.singleton((String) key));
+			}
+		}
+		
+		private void readAllCopy() {
+			Set<String> keys = new HashSet<>(super.keySet());
+			keys.removeAll(localKeys);
+			recordPossibleReads(keys);
+		}
+	}
+	
+	private final List<Set<String>> trackers = new ArrayList<>();
+	private final List<Access> recorders = new ArrayList<>();
+
+	public GlobalBindings() {
+		super(new HashMap<>());
+	}
+
+	/**
+	 * Returns a set that will have the key added each time a global is added, replaced with a different object, or removed.
+	 * The caller should remove keys from the set once they have been handled.
+	 */
+	public Set<String> trackChanges() {
+		Set<String> changedKeys = new LinkedHashSet<>(keySet());
+		trackers.add(changedKeys);
+		return changedKeys;
+	}
+
+	/**
+	 * Starts recording the keys read and written into access.
+	 */
+	public void startRecording(Access access) {
+		recorders.add(access);
+	}
+	
+	public void stopRecording(Access access) {
+		recorders.remove(access);
+	}
+	
+	/**
+	 * Returns whether any keys are being recorded.
+	 */
+	public boolean isRecording() {
+		return !recorders.isEmpty();
+	}
+	
+	/**
+	 * Returns a copy of the globals for an engine to evaluate a command against separately, which records the keys that
+	 * the engine reads from it as possibly read.
+	 */
+	public Bindings createRecordingCopy() {
+		return new RecordingCopy();
+	}
+	
+	/**
+	 * Stops adding keys to a set returned from trackChanges.
+	 */
+	public void stopTracking(Set<String> changedKeys) {
+		trackers.removeIf(tracker -> tracker == changedKeys);
+	}
+	
+	/**
+	 * Returns a global without recording it as read, for engines copying the globals into their own runtime.
+	 */
+	public Object getUnrecorded(String key) {
+		return super.get(key);
+	}
+	
+	public boolean containsKeyUnrecorded(String key) {
+		return super.containsKey(key);
+	}
+	
+	/**
+	 * Records keys as possibly read, for an engine that reads them from its own runtime or from a copy of the globals.
+	 */
+	public void recordPossibleReads(Collection<String> keys) {
+		for(Access access:recorders) {
+			access.possibleReads.addAll(keys);
+		}
+	}
+	
+	public Object get(Object key) {
+		read(key);
+		return super.get(key);
+	}
+	
+	public boolean containsKey(Object key) {
+		read(key);
+		return super.containsKey(key);
+	}
+	
+	public Object put(String name, Object value) {
+		boolean changed = (super.get(name) != value || !super.containsKey(name));
+		Object previous = super.put(name, value);
+		if(changed) {
+			changed(name);
+		}
+		return previous;
+	}
+
+	public void putAll(Map<? extends String, ? extends Object> toMerge) {
+		toMerge.forEach(this::put);
+	}
+
+	public Object remove(Object key) {
+		if(super.containsKey(key)) {
+			changed((String) key);
+		}
+		return super.remove(key);
+	}
+
+	public void clear() {
+		for(String key:keySet()) {
+			changed(key);
+		}
+		super.clear();
+	}
+
+	private void changed(String key) {
+		for(Set<String> changedKeys:trackers) {
+			changedKeys.add(key);
+		}
+		for(Access access:recorders) {
+			if(!access.reads.contains(key) && !access.possibleReads.contains(key)) {
+				access.blindWrites.add(key);
+			}
+			access.writes.add(key);
+		}
+	}
+	
+	private void read(Object key) {
+		if(key instanceof String) {
+			for(Access access:recorders) {
+				access.reads.add((String) key);
+			}
+		}
+	}
+}
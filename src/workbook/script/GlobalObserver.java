@@ -0,0 +1,71 @@
+package workbook.script;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * Reads the values shown by a view, recording the globals that are read so that later refreshes can be skipped until
+ * one of them changes. A global is changed when interactive work on the script thread writes it, or reads it while it
+ * holds a mutable object, so a value reached through an object in a global is refreshed when that global is used.
+ */
+public class GlobalObserver {
+	private final ScriptController scriptController;
+	
+	// The globals read by the last refresh, or null before the first, and the version of the globals after it.
+	// Only accessed on the script thread.
+	private Set<String> reads = null;
+	private long version = 0;
+	
+	public GlobalObserver(ScriptController scriptController) {
+		this.scriptController = scriptController;
+	}
+	
+	/**
+	 * Runs callable at REFRESH priority and passes its result to callback on the script thread. Returns a future that
+	 * completes with true once it has run.
+	 */
+	public <T> ScriptFuture<Boolean> read(Callable<T> callable, Consumer<T> callback) {
+		return read(true, callable, callback);
+	}
+	
+	/**
+	 * Runs callable at REFRESH priority and passes its result to callback on the script thread, unless none of the
+	 * globals read the last time have changed. Returns a future that completes with whether it was run.
+	 */
+	public <T> ScriptFuture<Boolean> readIfChanged(Callable<T> callable, Consumer<T> callback) {
+		return read(false, callable, callback);
+	}
+	
+	private <T> ScriptFuture<Boolean> read(boolean force, Callable<T> callable, Consumer<T> callback) {
+		return scriptController.exec(ScriptPriority.REFRESH, () -> {
+			if(!force && reads != null && !scriptController.isChangedSync(reads, version)) {
+				return false;
+			}
+			
+			GlobalBindings globals = scriptController.getGlobalsSync();
+			GlobalBindings.Access access = new GlobalBindings.Access();
+			T value;
+			
+			globals.startRecording(access);
+			try {
+				value = callable.call();
+			} catch(Exception e) {
+				e.printStackTrace();
+				return true;
+			} finally {
+				globals.stopRecording(access);
+				
+				// Count any globals written as changed before taking the version, so that they don't refresh this again.
+				scriptController.changedSync(access.getWrites());
+				reads = new HashSet<>(access.getReads());
+				reads.addAll(access.getPossibleReads());
+				version = scriptController.getGlobalVersionSync();
+			}
+			
+			callback.accept(value);
+			return true;
+		});
+	}
+}
@@ -5,15 +5,17 @@ import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 import javax.script.Bindings;
+import javax.script.CompiledScript;
 import javax.script.ScriptContext;
-import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 
 import org.codehaus.groovy.jsr223.GroovyScriptEngineImpl;
@@ -23,27 +25,34 @@ import org.codehaus.groovy.util.ReferenceBundle;
 
 import com.google.common.base.Throwables;
 
+import groovy.lang.Script;
 import syntaxhighlighter.brush.Brush;
 import syntaxhighlighter.brush.BrushGroovy;
+import workbook.util.LruCache;
 
 /**
  * An engine using the Groovy scripting language.
  */
 public class GroovyEngine implements Engine {
-	private final ScriptEngine engine;
-	private Map<String, Object> globals = new HashMap<>();
+	private static final int SCRIPT_CACHE_SIZE = 500;
+	
+	private final GroovyScriptEngineImpl engine;
+	private final LruCache<String, CompiledScript> scriptCache = new LruCache<>(SCRIPT_CACHE_SIZE);
+	private GlobalBindings globals = new GlobalBindings();
 	
 	public GroovyEngine() {
 		System.setProperty("groovy.antlr4", "true");
 		engine = new GroovyScriptEngineImpl();
+		engine.setBindings(globals, ScriptContext.ENGINE_SCOPE);
 	}
 	
 	public Brush getBrush() {
 		return new BrushGroovy();
 	}
 	
-	public void setGlobals(Map<String, Object> globals) {
+	public void setGlobals(GlobalBindings globals) {
 		this.globals = globals;
+		engine.setBindings(globals, ScriptContext.ENGINE_SCOPE);
 	}
 	
 	public boolean isIterable(Object value) {
@@ -57,6 +66,13 @@ public class GroovyEngine implements Engine {
 		}
 	}
 	
+	public Iterator<Object> iterator(Object array) {
+		// Iterators are read-only here, so viewing an Iterator<?> as an Iterator<Object> is safe.
+		@SuppressWarnings("unchecked")
+		Iterator<Object> iterator = (Iterator<Object>) ((Iterable<?>) array).iterator();
+		return iterator;
+	}
+	
 	public Object getVariable(String name) {
 		return globals.get(name);
 	}
@@ -90,8 +106,7 @@ public class GroovyEngine implements Engine {
 	 * Evaluates a method given its name and list of parameters, and returns the result.
 	 */
 	public Object evalMethodCall(String name, List<Object> params) {
-		Bindings bindings = engine.createBindings();
-		bindings.putAll(engine.getBindings(ScriptContext.ENGINE_SCOPE));
+		Bindings bindings = globals.createRecordingCopy();
 		bindings.put("arguments", params);
 		String command = name + "(*arguments)";
 		return eval(command, bindings);
@@ -111,8 +126,7 @@ public class GroovyEngine implements Engine {
 	public List<NameAndProperties> evalWithCallbackFunctions(String command, List<String> callbackFunctionNames) {
 		List<NameAndProperties> callbackValues = new ArrayList<>();
 		
-		Bindings bindings = engine.createBindings();
-		bindings.putAll(engine.getBindings(ScriptContext.ENGINE_SCOPE));
+		Bindings bindings = globals.createRecordingCopy();
 		
 		bindings.put("callback", new BiConsumer<String, Map<Object, String>>() {
 			public void accept(String name, Map<Object, String> properties) {
@@ -144,17 +158,8 @@ public class GroovyEngine implements Engine {
         	engine.getContext().setWriter(new PrintWriter(System.out));
         	engine.getContext().setErrorWriter(new PrintWriter(System.err));
         	
-        	// Clear cache to work around invalid cached classes.
-        	Field field = engine.getClass().getDeclaredField("classMap");
-			field.setAccessible(true);
-			field.set(engine, new ManagedConcurrentValueMap<String, Class>(ReferenceBundle.getSoftBundle()));
-			
-			engine.getBindings(ScriptContext.ENGINE_SCOPE).clear();
-        	engine.getBindings(ScriptContext.ENGINE_SCOPE).putAll(globals);
-        	
-			Object value = (bindings == null) ? engine.eval(command) : engine.eval(command, bindings);
-			
-			globals.putAll(engine.getBindings(ScriptContext.ENGINE_SCOPE));
+        	CompiledScript compiledScript = compile(command);
+			Object value = (bindings == null) ? compiledScript.eval() : compiledScript.eval(bindings);
 			
 			engine.getContext().getWriter().flush();
 			engine.getContext().getErrorWriter().flush();
@@ -164,6 +169,56 @@ public class GroovyEngine implements Engine {
         	throw new RuntimeException("Error evaluating command", e);
 		}
 	}
+	
+	/**
+	 * Returns the compiled script for a command, reusing the previously compiled script if the command text is unchanged.
+	 */
+	private CompiledScript compile(String command) throws Exception {
+		CompiledScript compiledScript = scriptCache.getIfPresent(command);
+		if(compiledScript != null) {
+			return compiledScript;
+		}
+		
+		// Clear the engine's own cache, as it may contain classes compiled against invalidated types.
+		Field field = engine.getClass().getDeclaredField("classMap");
+		field.setAccessible(true);
+		field.set(engine, new ManagedConcurrentValueMap<String, Class>(ReferenceBundle.getSoftBundle()));
+		
+		Set<Class<?>> previousClasses = new HashSet<>();
+		for(Class<?> loadedClass:engine.getClassLoader().getLoadedClasses()) {
+			previousClasses.add(loadedClass);
+		}
+		
+		compiledScript = engine.compile(command);
+		
+		// Scripts compiled earlier may refer to a previous definition of any types declared in this command.
+		if(declaresTypes(previousClasses)) {
+			scriptCache.invalidateAll();
+		}
+		
+		scriptCache.put(command, compiledScript);
+		
+		return compiledScript;
+	}
+	
+	/**
+	 * Returns whether any top-level types other than scripts have been loaded since previousClasses.
+	 */
+	private boolean declaresTypes(Set<Class<?>> previousClasses) {
+		for(Class<?> loadedClass:engine.getClassLoader().getLoadedClasses()) {
+			if(!previousClasses.contains(loadedClass) && !loadedClass.getName().contains("$") && !Script.class.isAssignableFrom(loadedClass)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the cache of compiled scripts, which contains the hit rate statistics.
+	 */
+	public LruCache<String, CompiledScript> getScriptCache() {
+		return scriptCache;
+	}
 
 	private static String getScriptExceptionCause(Throwable e) {
 		while(e instanceof ScriptException) {
@@ -4,6 +4,7 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
@@ -28,18 +29,24 @@ import syntaxhighlighter.brush.BrushJava;
  */
 public class JShellEngine implements Engine {
 	private final ScriptEngine engine;
-	private Map<String, Object> globals = new HashMap<>();
+	private GlobalBindings globals = new GlobalBindings();
 	
 	public JShellEngine() {
 		engine = new JShellScriptEngine();
+		engine.setBindings(globals, ScriptContext.ENGINE_SCOPE);
 	}
 	
 	public Brush getBrush() {
 		return new BrushJava();
 	}
 	
-	public void setGlobals(Map<String, Object> globals) {
+	/**
+	 * Uses globals as the engine scope. The JShell script engine still copies every binding into JShell and back on each
+	 * evaluation, so the cost of an evaluation remains proportional to the number of globals.
+	 */
+	public void setGlobals(GlobalBindings globals) {
 		this.globals = globals;
+		engine.setBindings(globals, ScriptContext.ENGINE_SCOPE);
 	}
 	
 	public boolean isIterable(Object value) {
@@ -53,6 +60,13 @@ public class JShellEngine implements Engine {
 		}
 	}
 	
+	public Iterator<Object> iterator(Object array) {
+		// Iterators are read-only here, so viewing an Iterator<?> as an Iterator<Object> is safe.
+		@SuppressWarnings("unchecked")
+		Iterator<Object> iterator = (Iterator<Object>) ((Iterable<?>) array).iterator();
+		return iterator;
+	}
+	
 	public Object getVariable(String name) {
 		return globals.get(name);
 	}
@@ -86,8 +100,7 @@ public class JShellEngine implements Engine {
 	 * Evaluates a method given its name and list of parameters, and returns the result.
 	 */
 	public Object evalMethodCall(String name, List<Object> params) {
-		Bindings bindings = engine.createBindings();
-		bindings.putAll(engine.getBindings(ScriptContext.ENGINE_SCOPE));
+		Bindings bindings = globals.createRecordingCopy();
 		for(int x = 0; x < params.size(); x++) {
 			bindings.put("_argument" + x, params.get(x));
 		}
@@ -119,8 +132,7 @@ public class JShellEngine implements Engine {
 	public List<NameAndProperties> evalWithCallbackFunctions(String command, List<String> callbackFunctionNames) {
 		List<NameAndProperties> callbackValues = new ArrayList<>();
 		
-		Bindings bindings = engine.createBindings();
-		bindings.putAll(engine.getBindings(ScriptContext.ENGINE_SCOPE));
+		Bindings bindings = globals.createRecordingCopy();
 		
 		bindings.put("callback", new BiConsumer<String, Map<String, Object>>() {
 			public void accept(String name, Map<String, Object> properties) {
@@ -154,13 +166,8 @@ public class JShellEngine implements Engine {
         	engine.getContext().setWriter(new PrintWriter(System.out));
         	engine.getContext().setErrorWriter(new PrintWriter(System.err));
         	
-			engine.getBindings(ScriptContext.ENGINE_SCOPE).clear();
-        	engine.getBindings(ScriptContext.ENGINE_SCOPE).putAll(globals);
-        	
 			Object value = (bindings == null) ? engine.eval(command) : engine.eval(command, bindings);
 			
-			globals.putAll(engine.getBindings(ScriptContext.ENGINE_SCOPE));
-			
 			return value;
         } catch(Throwable e) {
         	throw new RuntimeException("Error evaluating command", e);
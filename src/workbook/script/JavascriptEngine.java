@@ -1,16 +1,25 @@
 package workbook.script;
 
 import java.io.PrintWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
@@ -21,13 +30,36 @@ import jdk.nashorn.api.scripting.NashornScriptEngineFactory;
 import jdk.nashorn.api.scripting.ScriptObjectMirror;
 import syntaxhighlighter.brush.Brush;
 import syntaxhighlighter.brush.BrushJScript;
+import workbook.util.LruCache;
 
 /**
  * An engine using the JavaScript scripting language.
  */
 public class JavascriptEngine implements Engine {
+	private static final int SCRIPT_CACHE_SIZE = 500;
+	private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+	
+	/**
+	 * Looks up undefined variables in java.util and java.lang after checking the globals, replacing a
+	 * with(JavaImporter) block around each command which would otherwise hide the globals.
+	 */
+	private static final String IMPORT_SCRIPT = String.join("\n",
+		"(function(importer) {",
+		"	var lookupGlobal = this.__noSuchProperty__;",
+		"	Object.defineProperty(this, '__noSuchProperty__', { value: function(name) {",
+		"		var value = lookupGlobal.call(this, name);",
+		"		if(value !== undefined) return value;",
+		"		var type = importer[name];",
+		"		return (type != null) ? type : undefined;",
+		"	}});",
+		"})(new JavaImporter(java.util, java.lang))"
+	);
+	
 	private final ScriptEngine engine;
-	private Map<String, Object> globals = new HashMap<>();
+	private final LruCache<String, CompiledScript> scriptCache = new LruCache<>(SCRIPT_CACHE_SIZE);
+	private final Set<String> builtinNames;
+	private GlobalBindings globals = new GlobalBindings();
+	private Set<String> changedGlobals = globals.trackChanges();
 	
 	public JavascriptEngine() {
 		NashornScriptEngineFactory factory = new NashornScriptEngineFactory();
@@ -36,25 +68,36 @@ public class JavascriptEngine implements Engine {
 			throw new RuntimeException("Can't create JavaScript engine");
 		}
 		
+		// Globals not defined in the engine scope are looked up in the global scope.
+		engine.setBindings(globals, ScriptContext.GLOBAL_SCOPE);
+		
+		eval(IMPORT_SCRIPT);
 		eval("function print() { System.out.println([].slice.call(arguments).join(', ')) }");
+		
+		builtinNames = new HashSet<>(engine.getBindings(ScriptContext.ENGINE_SCOPE).keySet());
 	}
 	
 	public Brush getBrush() {
 		return new BrushJScript();
 	}
 	
-	public void setGlobals(Map<String, Object> globals) {
+	public void setGlobals(GlobalBindings globals) {
+		this.globals.stopTracking(changedGlobals);
 		this.globals = globals;
+		this.changedGlobals = globals.trackChanges();
+		engine.setBindings(globals, ScriptContext.GLOBAL_SCOPE);
+		
+		// Remove the variables left from the previous globals, so that an engine can be reused with different globals.
+		Bindings engineBindings = engine.getBindings(ScriptContext.ENGINE_SCOPE);
+		for(String name:new ArrayList<>(engineBindings.keySet())) {
+			if(!globals.containsKeyUnrecorded(name) && !builtinNames.contains(name)) {
+				engineBindings.remove(name);
+			}
+		}
 	}
 	
 	public boolean isIterable(Object value) {
-		try {
-			Bindings bindings = engine.createBindings();
-			bindings.put("arg", value);
-			return (Boolean) engine.eval("Object.prototype.toString.call(arg) === '[object Array]'", bindings);
-		} catch(ScriptException e) {
-			throw new RuntimeException("Error checking iterable", e);
-		}
+		return (value instanceof ScriptObjectMirror) && ((ScriptObjectMirror) value).isArray();
 	}
 
 	public void iterateObject(Object array, Consumer<Object> consumer) {
@@ -67,6 +110,26 @@ public class JavascriptEngine implements Engine {
 		}
 	}
 	
+	public Iterator<Object> iterator(Object array) {
+		Map<?, ?> map = (Map<?, ?>) array;
+		Long length = getNumeric(map.get("length"));
+		long size = (length == null) ? 0 : length;
+		return new Iterator<Object>() {
+			private long index = 0;
+			
+			public boolean hasNext() {
+				return index < size;
+			}
+			
+			public Object next() {
+				if(!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return map.get(String.valueOf(index++));
+			}
+		};
+	}
+	
 	private static Long getNumeric(Object object) {
 		if(object instanceof Integer) {
 			return Long.valueOf((Integer) object);
@@ -99,15 +162,14 @@ public class JavascriptEngine implements Engine {
 	 */
 	public void defineFunction(String name, Function<Object, Object> callback) {
 		globals.put("_"+name+"Callback", callback);
-		eval(String.format("function %s(param) { return _%sCallback.accept(param); }", name, name));
+		eval(String.format("function %s(param) { return _%sCallback.apply(param); }", name, name));
 	}
 	
 	/**
 	 * Evaluates a method given its name and list of parameters, and returns the result.
 	 */
 	public Object evalMethodCall(String methodName, List<Object> params) {
-		Bindings bindings = engine.createBindings();
-		bindings.putAll(engine.getBindings(ScriptContext.ENGINE_SCOPE));
+		Bindings bindings = createBindings();
 		bindings.put("arguments", params);
 		// TODO: Apply only works for javascript functions, not Java methods.
 		String command = "(" + methodName + ").apply(null, arguments)";
@@ -128,8 +190,7 @@ public class JavascriptEngine implements Engine {
 	public List<NameAndProperties> evalWithCallbackFunctions(String command, List<String> callbackFunctionNames) {
 		List<NameAndProperties> callbackValues = new ArrayList<>();
 		
-		Bindings bindings = engine.createBindings();
-		bindings.putAll(engine.getBindings(ScriptContext.ENGINE_SCOPE));
+		Bindings bindings = createBindings();
 		
 		bindings.put("callback", new BiConsumer<String, Map<String, String>>() {
 			public void accept(String name, Map<String, String> properties) {
@@ -154,18 +215,38 @@ public class JavascriptEngine implements Engine {
 		return callbackValues;
 	}
 	
+	/**
+	 * Creates bindings for a separate evaluation, containing a copy of the engine scope variables.
+	 */
+	private Bindings createBindings() {
+		Bindings bindings = engine.createBindings();
+		bindings.putAll(engine.getBindings(ScriptContext.ENGINE_SCOPE));
+		try {
+			compile(IMPORT_SCRIPT).eval(bindings);
+		} catch(ScriptException e) {
+			throw new RuntimeException("Error evaluating command", e);
+		}
+		return bindings;
+	}
+	
 	private Object eval(String command, Bindings bindings) {
         try {
         	engine.getContext().setWriter(new PrintWriter(System.out));
         	engine.getContext().setErrorWriter(new PrintWriter(System.err));
         	
-        	engine.getBindings(ScriptContext.ENGINE_SCOPE).clear();
-        	engine.getBindings(ScriptContext.ENGINE_SCOPE).putAll(globals);
+        	Bindings engineBindings = engine.getBindings(ScriptContext.ENGINE_SCOPE);
         	
-        	String script = String.format("with(new JavaImporter(java.util, java.lang)) { %s; }", command);
-			Object value = (bindings == null) ? engine.eval(script) : engine.eval(script, bindings);
+        	updateEngineBindings(engineBindings);
+        	
+        	CompiledScript compiledScript = compile(command);
+			Object value = (bindings == null) ? compiledScript.eval() : compiledScript.eval(bindings);
 			
-			globals.putAll(engine.getBindings(ScriptContext.ENGINE_SCOPE));
+			updateGlobals(engineBindings);
+			// Variables assigned in the engine are read from the engine scope rather than through the globals.
+			if(globals.isRecording()) {
+				globals.recordPossibleReads(getEngineReads(command, engineBindings));
+			}
+			changedGlobals.clear();
 			
 			engine.getContext().getWriter().flush();
 			engine.getContext().getErrorWriter().flush();
@@ -176,6 +257,117 @@ public class JavascriptEngine implements Engine {
 		}
 	}
 	
+	/**
+	 * Returns the engine scope variables that a command may read: those named in the command, or in the source of a
+	 * function or method reached through them. A command that calls eval may read any of them.
+	 */
+	private static Set<String> getEngineReads(String command, Bindings engineBindings) {
+		Set<String> reads = new HashSet<>();
+		Deque<String> sources = new ArrayDeque<>();
+		sources.add(command);
+		
+		while(!sources.isEmpty()) {
+			Matcher matcher = IDENTIFIER.matcher(sources.pop());
+			while(matcher.find()) {
+				String name = matcher.group();
+				if(name.equals("eval")) {
+					return new HashSet<>(engineBindings.keySet());
+				} else if(engineBindings.containsKey(name) && reads.add(name)) {
+					addFunctionSources(engineBindings.get(name), sources);
+				}
+			}
+		}
+		
+		return reads;
+	}
+	
+	/**
+	 * Adds the source of a function, or of the functions in an object and its prototype, to sources.
+	 */
+	private static void addFunctionSources(Object value, Deque<String> sources) {
+		if(value instanceof ScriptObjectMirror) {
+			ScriptObjectMirror mirror = (ScriptObjectMirror) value;
+			if(mirror.isFunction()) {
+				sources.add(mirror.toString());
+				addMethodSources(mirror.getMember("prototype"), sources);
+			} else if(!mirror.isArray()) {
+				addMethodSources(mirror, sources);
+				addMethodSources(mirror.getProto(), sources);
+			}
+		}
+	}
+	
+	private static void addMethodSources(Object value, Deque<String> sources) {
+		if(value instanceof ScriptObjectMirror && !((ScriptObjectMirror) value).isArray()) {
+			for(Object member:((ScriptObjectMirror) value).values()) {
+				if(member instanceof ScriptObjectMirror && ((ScriptObjectMirror) member).isFunction()) {
+					sources.add(member.toString());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Updates the variables in the engine scope that have been changed in the globals since the last evaluation.
+	 * Only variables that have been assigned within the engine are stored there, as the rest are read from the globals.
+	 */
+	private void updateEngineBindings(Bindings engineBindings) {
+		for(String name:changedGlobals) {
+			if(engineBindings.containsKey(name)) {
+				if(globals.containsKeyUnrecorded(name)) {
+					engineBindings.put(name, globals.getUnrecorded(name));
+				} else {
+					engineBindings.remove(name);
+				}
+			}
+		}
+		changedGlobals.clear();
+	}
+	
+	/**
+	 * Copies the variables in the engine scope to the globals, skipping those that still hold the same value. Nashorn
+	 * returns a new mirror or boxed value each time a variable is read, so mirrors are compared by the object they wrap,
+	 * and immutable values by equality.
+	 */
+	private void updateGlobals(Bindings engineBindings) {
+		for(Map.Entry<String, Object> entry:engineBindings.entrySet()) {
+			String name = entry.getKey();
+			Object value = entry.getValue();
+			if(!globals.containsKeyUnrecorded(name) || !isSameValue(globals.getUnrecorded(name), value)) {
+				globals.put(name, value);
+			}
+		}
+	}
+	
+	private static boolean isSameValue(Object a, Object b) {
+		if(a == b) {
+			return true;
+		} else if(a instanceof ScriptObjectMirror || a instanceof Number || a instanceof String || a instanceof Boolean) {
+			return b != null && a.getClass() == b.getClass() && a.equals(b);
+		} else {
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns the compiled script for a command, reusing the previously compiled script if the command text is unchanged.
+	 */
+	private CompiledScript compile(String command) throws ScriptException {
+		CompiledScript compiledScript = scriptCache.getIfPresent(command);
+		if(compiledScript == null) {
+			compiledScript = ((Compilable) engine).compile(command);
+			scriptCache.put(command, compiledScript);
+		}
+		return compiledScript;
+	}
+	
+	/**
+	 * Returns the cache of compiled scripts, which contains the hit rate statistics.
+	 */
+	public LruCache<String, CompiledScript> getScriptCache() {
+		return scriptCache;
+	}
+	
 	private static String getScriptExceptionCause(Throwable e) {
 		while(e instanceof ScriptException) {
     		e = e.getCause();
@@ -1,40 +1,151 @@
 package workbook.script;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
 
 /**
- * Creates an OutputStream that calls a callback for each line that's written to it.
+ * Creates an OutputStream that calls a callback for each line that's written to it. Bytes are collected in a reusable buffer
+ * and decoded once per line, so that characters split across writes are decoded correctly. Lines longer than the maximum line
+ * length are split so that the buffer doesn't grow without limit.
  */
 public class LineReader {
+	private static final int DEFAULT_MAX_LINE_LENGTH = 1024 * 1024;
+	private static final int MIN_MAX_LINE_LENGTH = 16;
+	private static final int INITIAL_CAPACITY = 256;
+	
 	private final OutputStream outputStream;
 	private final CompletableFuture<?> future;
 	
 	public LineReader(final Consumer<String> callback) {
+		this(callback, Charset.defaultCharset(), DEFAULT_MAX_LINE_LENGTH);
+	}
+	
+	/**
+	 * Creates a LineReader that decodes lines with charset, and splits lines longer than maxLineLength bytes.
+	 */
+	public LineReader(final Consumer<String> callback, Charset charset, int maxLineLength) {
 		this.future = new CompletableFuture<Void>();
+		this.outputStream = new LineOutputStream(callback, charset, Math.max(maxLineLength, MIN_MAX_LINE_LENGTH));
+	}
+	
+	private class LineOutputStream extends OutputStream {
+		private final Consumer<String> callback;
+		private final CharsetDecoder decoder;
+		private final int maxLineLength;
 		
-		this.outputStream = new OutputStream() {
-			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-			
-			public void write(int b) throws IOException {
-				if(b != '\r') {
-					if(b == '\n') {
-						callback.accept(new String(buffer.toByteArray()));
-						buffer = new ByteArrayOutputStream();
-					} else {
-						buffer.write(b);
+		private byte[] bytes = new byte[INITIAL_CAPACITY];
+		private int length = 0;
+		private CharBuffer chars = CharBuffer.allocate(INITIAL_CAPACITY);
+		
+		public LineOutputStream(Consumer<String> callback, Charset charset, int maxLineLength) {
+			this.callback = callback;
+			this.maxLineLength = maxLineLength;
+			this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+		
+		public synchronized void write(int b) {
+			if(b == '\n') {
+				endLine();
+			} else if(b != '\r') {
+				ensureCapacity(length + 1);
+				bytes[length++] = (byte) b;
+				if(length >= maxLineLength) {
+					splitLine();
+				}
+			}
+		}
+		
+		public synchronized void write(byte[] b, int off, int len) {
+			int start = off;
+			int end = off + len;
+			for(int i = off; i < end; i++) {
+				if(b[i] == '\n' || b[i] == '\r') {
+					append(b, start, i - start);
+					if(b[i] == '\n') {
+						endLine();
 					}
+					start = i + 1;
 				}
 			}
+			append(b, start, end - start);
+		}
+		
+		public synchronized void close() {
+			if(length > 0) {
+				endLine();
+			}
+			future.complete(null);
+		}
+		
+		/**
+		 * Adds bytes to the current line, splitting the line whenever it reaches the maximum length.
+		 */
+		private void append(byte[] b, int off, int len) {
+			while(len > 0) {
+				int count = Math.min(len, maxLineLength - length);
+				ensureCapacity(length + count);
+				System.arraycopy(b, off, bytes, length, count);
+				length += count;
+				off += count;
+				len -= count;
+				if(length >= maxLineLength) {
+					splitLine();
+				}
+			}
+		}
+		
+		private void endLine() {
+			callback.accept(decode(true));
+		}
+		
+		/**
+		 * Passes the current line to the callback, keeping any bytes of an incomplete character for the next line.
+		 */
+		private void splitLine() {
+			callback.accept(decode(false));
+		}
+		
+		/**
+		 * Decodes the buffered bytes, leaving any that can't be decoded yet in the buffer unless endOfInput is set.
+		 */
+		private String decode(boolean endOfInput) {
+			int maxChars = (int) Math.ceil(length * (double) decoder.maxCharsPerByte()) + 1;
+			if(chars.capacity() < maxChars) {
+				chars = CharBuffer.allocate(Math.max(maxChars, chars.capacity() * 2));
+			}
 			
-			public void close() {
-				future.complete(null);
+			ByteBuffer input = ByteBuffer.wrap(bytes, 0, length);
+			// Cast to Buffer so that the methods are the same when compiled with newer JDKs.
+			((Buffer) chars).clear();
+			decoder.reset();
+			decoder.decode(input, chars, endOfInput);
+			if(endOfInput) {
+				decoder.flush(chars);
 			}
-		};
+			((Buffer) chars).flip();
+			
+			length = input.remaining();
+			System.arraycopy(bytes, input.position(), bytes, 0, length);
+			
+			return chars.toString();
+		}
+		
+		private void ensureCapacity(int capacity) {
+			if(bytes.length < capacity) {
+				bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+			}
+		}
 	}
 	
 	/**
@@ -43,7 +154,7 @@ public class LineReader {
 	public OutputStream getOutputStream() {
 		return outputStream;
 	}
-
+	
 	/**
 	 * Waits until there are no more lines left - the OutputStream is closed and all lines have been
 	 * passed to the callback.
@@ -55,4 +166,4 @@ public class LineReader {
 			throw new RuntimeException("Error waiting for stream", e);
 		}
 	}
-} 
\ No newline at end of file
+}
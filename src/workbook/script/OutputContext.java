@@ -0,0 +1,71 @@
+package workbook.script;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * The output and error streams for an evaluation. A context is entered on the thread that runs the evaluation, and is
+ * inherited by any threads started from it, so that all of the output of an evaluation can be captured separately. Once
+ * the context is closed, any threads still using it write to the default streams instead.
+ */
+public class OutputContext {
+	private static final InheritableThreadLocal<OutputContext> currentContext = new InheritableThreadLocal<>();
+	
+	private final PrintStream output;
+	private final PrintStream error;
+	private volatile boolean closed = false;
+	
+	public OutputContext(OutputStream output, OutputStream error) {
+		this.output = toPrintStream(output);
+		this.error = toPrintStream(error);
+	}
+	
+	/**
+	 * Returns the context for the current thread, or null if there is none or it is closed.
+	 */
+	public static OutputContext getCurrent() {
+		OutputContext context = currentContext.get();
+		return (context == null || context.closed) ? null : context;
+	}
+	
+	/**
+	 * Makes this the context for the current thread and any threads it starts, returning the previous context to restore.
+	 */
+	public OutputContext enter() {
+		OutputContext previous = currentContext.get();
+		currentContext.set(this);
+		return previous;
+	}
+	
+	/**
+	 * Restores the context for the current thread to a context returned by enter.
+	 */
+	public static void restore(OutputContext previous) {
+		if(previous == null) {
+			currentContext.remove();
+		} else {
+			currentContext.set(previous);
+		}
+	}
+	
+	/**
+	 * Flushes the streams and stops any threads still using this context from writing to them.
+	 */
+	public void close() {
+		closed = true;
+		output.flush();
+		error.flush();
+	}
+	
+	public PrintStream getOutput() {
+		return output;
+	}
+	
+	public PrintStream getError() {
+		return error;
+	}
+	
+	private static PrintStream toPrintStream(OutputStream outputStream) {
+		return (outputStream instanceof PrintStream) ? (PrintStream) outputStream : new PrintStream(outputStream);
+	}
+}
@@ -0,0 +1,66 @@
+package workbook.script;
+
+import java.util.Set;
+
+/**
+ * The result of a command evaluated on a worker engine, with the globals it read and wrote and the output it printed.
+ */
+public class ParallelResult {
+	private final Object value;
+	private final Exception exception;
+	private final GlobalBindings.Access access;
+	private final GlobalBindings globals;
+	private final byte[] output;
+	private final byte[] error;
+	
+	public ParallelResult(Object value, Exception exception, GlobalBindings.Access access, GlobalBindings globals, byte[] output, byte[] error) {
+		this.value = value;
+		this.exception = exception;
+		this.access = access;
+		this.globals = globals;
+		this.output = output;
+		this.error = error;
+	}
+	
+	public Object getValue() {
+		return value;
+	}
+	
+	/**
+	 * Returns the exception thrown by the command, or null if it completed normally.
+	 */
+	public Exception getException() {
+		return exception;
+	}
+	
+	public Set<String> getReads() {
+		return access.getReads();
+	}
+	
+	public Set<String> getWrites() {
+		return access.getWrites();
+	}
+	
+	public Set<String> getPossibleReads() {
+		return access.getPossibleReads();
+	}
+	
+	public Set<String> getBlindWrites() {
+		return access.getBlindWrites();
+	}
+	
+	/**
+	 * Returns the copy of the globals that the command was evaluated against.
+	 */
+	GlobalBindings getGlobals() {
+		return globals;
+	}
+	
+	byte[] getOutput() {
+		return output;
+	}
+	
+	byte[] getError() {
+		return error;
+	}
+}
@@ -3,32 +3,34 @@ package workbook.script;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.util.Locale;
+import java.util.function.Function;
 
 /**
- * Splits a PrintStream so that one thread goes to one stream, and the rest go to another.
+ * Splits a PrintStream so that threads with an OutputContext write to a stream from that context, and the rest go to a
+ * default stream. Each call is passed straight to the selected stream, so threads writing to different contexts don't
+ * wait on each other.
  */
 public class PrintStreamSplitter extends PrintStream {
-	private final Thread thread;
-	private final PrintStream currentThreadStream;
-	private final PrintStream otherThreadStream;
+	private final PrintStream defaultStream;
+	private final Function<OutputContext, PrintStream> contextStream;
 	
-	public PrintStreamSplitter(Thread thread, PrintStream currentThreadStream, PrintStream otherThreadStream) {
+	/**
+	 * Creates a splitter that writes to the stream returned by contextStream for the current OutputContext, or to
+	 * defaultStream if there is no current context.
+	 */
+	public PrintStreamSplitter(PrintStream defaultStream, Function<OutputContext, PrintStream> contextStream) {
 		super(new ByteArrayOutputStream());
 		
-		this.thread = thread;
-		this.currentThreadStream = currentThreadStream;
-		this.otherThreadStream = otherThreadStream;
+		this.defaultStream = defaultStream;
+		this.contextStream = contextStream;
 	}
 	
 	/**
 	 * Returns the stream for the current thread.
 	 */
 	private PrintStream getPrintStream() {
-		if(Thread.currentThread().equals(thread)) {
-			return currentThreadStream;
-		} else {
-			return otherThreadStream;
-		}
+		OutputContext context = OutputContext.getCurrent();
+		return (context == null) ? defaultStream : contextStream.apply(context);
 	}
 	
 	public PrintStream append(char c) {
@@ -152,6 +154,6 @@ public class PrintStreamSplitter extends PrintStream {
 	}
 	
 	public void write(int b) {
-		getPrintStream().println(b);
+		getPrintStream().write(b);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+package workbook.script;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * A queue of runnables to be run on the script thread, which takes the highest priority runnable first and
+ * runs runnables of the same priority in the order they were added. To prevent starvation a waiting priority
+ * is given a turn each time it has been passed over maxSkips times by higher priorities.
+ * Keeps the queue depth and wait time statistics of each priority.
+ */
+public class PriorityRunQueue {
+	private static final int DEFAULT_MAX_SKIPS = 8;
+	
+	private static class Entry {
+		private final Runnable runnable;
+		private final long addedNanos;
+		
+		public Entry(Runnable runnable, long addedNanos) {
+			this.runnable = runnable;
+			this.addedNanos = addedNanos;
+		}
+	}
+	
+	/**
+	 * The statistics of the runnables of a single priority.
+	 */
+	public static class Statistics {
+		private final int depth;
+		private final long taken;
+		private final long totalWaitNanos;
+		private final long maxWaitNanos;
+		
+		public Statistics(int depth, long taken, long totalWaitNanos, long maxWaitNanos) {
+			this.depth = depth;
+			this.taken = taken;
+			this.totalWaitNanos = totalWaitNanos;
+			this.maxWaitNanos = maxWaitNanos;
+		}
+		
+		/**
+		 * Returns the number of runnables currently waiting.
+		 */
+		public int getDepth() {
+			return depth;
+		}
+		
+		/**
+		 * Returns the number of runnables that have been taken from the queue.
+		 */
+		public long getTaken() {
+			return taken;
+		}
+		
+		public double getAverageWaitMillis() {
+			return (taken == 0) ? 0 : totalWaitNanos / 1e6 / taken;
+		}
+		
+		public double getMaxWaitMillis() {
+			return maxWaitNanos / 1e6;
+		}
+		
+		public String toString() {
+			return String.format("depth=%d, taken=%d, averageWait=%.2fms, maxWait=%.2fms", depth, taken, getAverageWaitMillis(), getMaxWaitMillis());
+		}
+	}
+	
+	private final int maxSkips;
+	private final Map<ScriptPriority, Queue<Entry>> queues = new EnumMap<>(ScriptPriority.class);
+	private final Map<ScriptPriority, Integer> skips = new EnumMap<>(ScriptPriority.class);
+	private final Map<ScriptPriority, Long> taken = new EnumMap<>(ScriptPriority.class);
+	private final Map<ScriptPriority, Long> totalWaitNanos = new EnumMap<>(ScriptPriority.class);
+	private final Map<ScriptPriority, Long> maxWaitNanos = new EnumMap<>(ScriptPriority.class);
+	
+	public PriorityRunQueue() {
+		this(DEFAULT_MAX_SKIPS);
+	}
+	
+	public PriorityRunQueue(int maxSkips) {
+		this.maxSkips = maxSkips;
+		for(ScriptPriority priority:ScriptPriority.values()) {
+			queues.put(priority, new ArrayDeque<>());
+			skips.put(priority, 0);
+			taken.put(priority, 0L);
+			totalWaitNanos.put(priority, 0L);
+			maxWaitNanos.put(priority, 0L);
+		}
+	}
+	
+	public synchronized void add(ScriptPriority priority, Runnable runnable) {
+		queues.get(priority).add(new Entry(runnable, System.nanoTime()));
+		notifyAll();
+	}
+	
+	/**
+	 * Removes and returns the next runnable to run, waiting until one is available.
+	 */
+	public synchronized Runnable take() throws InterruptedException {
+		while(isEmpty()) {
+			wait();
+		}
+		
+		ScriptPriority next = nextPriority();
+		Entry entry = queues.get(next).remove();
+		
+		long waitNanos = System.nanoTime() - entry.addedNanos;
+		taken.put(next, taken.get(next) + 1);
+		totalWaitNanos.put(next, totalWaitNanos.get(next) + waitNanos);
+		maxWaitNanos.put(next, Math.max(maxWaitNanos.get(next), waitNanos));
+		
+		return entry.runnable;
+	}
+	
+	/**
+	 * Returns the priority to take from next, which is the highest non-empty priority unless a lower priority
+	 * has been passed over too many times. Updates the skip counts of the priorities that are passed over.
+	 */
+	private ScriptPriority nextPriority() {
+		ScriptPriority next = null;
+		for(ScriptPriority priority:ScriptPriority.values()) {
+			if(!queues.get(priority).isEmpty()) {
+				if(next == null) {
+					next = priority;
+				} else if(skips.get(priority) >= maxSkips) {
+					next = priority;
+					break;
+				}
+			}
+		}
+		
+		for(ScriptPriority priority:ScriptPriority.values()) {
+			if(priority == next || queues.get(priority).isEmpty()) {
+				skips.put(priority, 0);
+			} else if(priority.compareTo(next) > 0) {
+				skips.put(priority, skips.get(priority) + 1);
+			}
+		}
+		
+		return next;
+	}
+	
+	public synchronized boolean isEmpty() {
+		for(Queue<Entry> queue:queues.values()) {
+			if(!queue.isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	public synchronized Statistics getStatistics(ScriptPriority priority) {
+		return new Statistics(queues.get(priority).size(), taken.get(priority), totalWaitNanos.get(priority), maxWaitNanos.get(priority));
+	}
+}
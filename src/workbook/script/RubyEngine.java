@@ -4,8 +4,10 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -30,7 +32,7 @@ import syntaxhighlighter.brush.BrushRuby;
  */
 public class RubyEngine implements Engine {
 	private final ScriptEngine engine;
-	private Map<String, Object> globals = new HashMap<>();
+	private GlobalBindings globals = new GlobalBindings();
 	
 	public RubyEngine() {
 		System.setProperty("org.jruby.embed.localvariable.behavior", "persistent");
@@ -39,14 +41,21 @@ public class RubyEngine implements Engine {
 		if(engine == null) {
 			throw new RuntimeException("Can't create JRuby engine");
 		}
+		
+		engine.setBindings(globals, ScriptContext.ENGINE_SCOPE);
 	}
 	
 	public Brush getBrush() {
 		return new BrushRuby();
 	}
 	
-	public void setGlobals(Map<String, Object> globals) {
+	/**
+	 * Uses globals as the engine scope. JRuby still copies the engine scope into its persistent local variables and back
+	 * on each evaluation, so the cost of an evaluation remains proportional to the number of globals.
+	 */
+	public void setGlobals(GlobalBindings globals) {
 		this.globals = globals;
+		engine.setBindings(globals, ScriptContext.ENGINE_SCOPE);
 	}
 	
 	public boolean isIterable(Object value) {
@@ -60,6 +69,24 @@ public class RubyEngine implements Engine {
 		}
 	}
 	
+	public Iterator<Object> iterator(Object array) {
+		RubyArray rubyArray = (RubyArray) array;
+		return new Iterator<Object>() {
+			private int index = 0;
+			
+			public boolean hasNext() {
+				return index < rubyArray.getLength();
+			}
+			
+			public Object next() {
+				if(!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return rubyArray.get(index++);
+			}
+		};
+	}
+	
 	public void setVariable(String name, Object value) {
 		engine.put(name, value);
 		globals.put(name, value);
@@ -94,8 +121,7 @@ public class RubyEngine implements Engine {
 	 * Evaluates a method given its name and list of parameters, and returns the result.
 	 */
 	public Object evalMethodCall(String name, List<Object> params) {
-		Bindings bindings = engine.createBindings();
-		bindings.putAll(engine.getBindings(ScriptContext.ENGINE_SCOPE));
+		Bindings bindings = globals.createRecordingCopy();
 		bindings.put("arguments", params);
 		String command = name + "(*arguments)";
 		return eval(command, bindings);
@@ -115,8 +141,7 @@ public class RubyEngine implements Engine {
 	public List<NameAndProperties> evalWithCallbackFunctions(String command, List<String> callbackFunctionNames) {
 		List<NameAndProperties> callbackValues = new ArrayList<>();
 		
-		Bindings bindings = engine.createBindings();
-		bindings.putAll(engine.getBindings(ScriptContext.ENGINE_SCOPE));
+		Bindings bindings = globals.createRecordingCopy();
 		
 		bindings.put("callback", new BiConsumer<String, Map<Object, String>>() {
 			public void accept(String name, Map<Object, String> properties) {
@@ -148,14 +173,9 @@ public class RubyEngine implements Engine {
         	engine.getContext().setWriter(new PrintWriter(System.out));
         	engine.getContext().setErrorWriter(new PrintWriter(System.err));
         	
-        	engine.getBindings(ScriptContext.ENGINE_SCOPE).clear();
-        	engine.getBindings(ScriptContext.ENGINE_SCOPE).putAll(globals);
-        	
         	String script = String.format("require 'java'; %s;", command);
 			Object value = (bindings == null) ? engine.eval(script) : engine.eval(script, bindings);
 			
-			globals.putAll(engine.getBindings(ScriptContext.ENGINE_SCOPE));
-			
 			engine.getContext().getWriter().flush();
 			engine.getContext().getErrorWriter().flush();
 			
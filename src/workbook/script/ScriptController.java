@@ -1,34 +1,83 @@
 package workbook.script;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
+import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
+import workbook.editor.reference.Reference;
+import workbook.util.StartupTimer;
 import workbook.view.result.wrapper.ChartWrapper;
 
 /**
  * Manages the interaction with the script engines. The script engine runs on a separate thread, and all interactions with it
  * must run on the same thread. This controller allows posting events to a queue so that they will run on the correct thread,
- * and return their results as a ScriptFuture.
+ * and return their results as a ScriptFuture. Work is run in order of its ScriptPriority, so that user commands don't wait behind
+ * view refreshes. A watchdog aborts work that is cancelled or runs over its time limits, replacing the script thread if necessary
+ * while keeping the globals. Independent commands can also be evaluated in parallel on a pool of worker engines, each against
+ * its own copy of the globals, with their changes merged back on the script thread. Engines can be registered as factories,
+ * so that they are only created when they are first used. The globals read or written by interactive work are counted as
+ * changed, so that views refreshed through a GlobalObserver only read their values again when the globals they depend on change.
  */
 public class ScriptController {
-	private final BlockingQueue<Runnable> runnableQueue = new LinkedBlockingQueue<>();
+	/**
+	 * The variable that stores the result of the last evaluation.
+	 */
+	public static final String RESULT_VARIABLE = "_";
 	
-	private final Map<String, Object> globals = new HashMap<>();
+	private final PriorityRunQueue runnableQueue = new PriorityRunQueue();
+	private final ScriptWatchdog watchdog = new ScriptWatchdog(this::abandonThread);
+	
+	private final GlobalBindings globals = new GlobalBindings();
 	private final Map<String, Engine> engines = new LinkedHashMap<>();
+	private final Map<String, Supplier<Engine>> engineFactories = new LinkedHashMap<>();
+	private final Map<String, EnginePool> enginePools = new HashMap<>();
+	private final Set<String> functionNames = new LinkedHashSet<>();
+	
+	// The version of the globals, incremented each time any are changed, and the version at which each was last changed.
+	private final Map<String, Long> globalVersions = new HashMap<>();
+	private long globalVersion = 0;
+	
+	// The globals used by the running interactive work, or null if none is running. Only accessed on the script thread.
+	private GlobalBindings.Access changesAccess = null;
 
-	private String scriptType;
+	private volatile String scriptType;
 	private Engine engine;
+	private EnginePool enginePool;
+	
+	private ExecutorService workerExecutor = null;
+	private OutputStream outputStream = null;
+	private OutputStream errorStream = null;
+	
+	private volatile StartupTimer startupTimer = null;
 	
 	private volatile Thread thread = null;
+	
+	private volatile long timeoutMillis = 0;
+	private volatile long cpuTimeoutMillis = 0;
 
 	private Consumer<String> outputCallback = line -> {};
 	private Consumer<String> errorCallback = line -> {};
@@ -46,16 +95,32 @@ public class ScriptController {
 		// Restart thread on exception.
 		thread.setUncaughtExceptionHandler(new UncaughtExceptionHandler() {
 			public void uncaughtException(Thread t, Throwable e) {
-				e.printStackTrace();
-				startQueueThread();
+				ScriptWatchdog.Evaluation stopped = watchdog.takeStopped();
+				if(stopped != null) {
+					stopped.getFuture().completeExceptionally(stopped.getAbortReason());
+				} else {
+					e.printStackTrace();
+				}
+				if(t == ScriptController.this.thread) {
+					startQueueThread();
+				}
 			}
 		});
 	}
 	
+	/**
+	 * Fails the evaluation of a script thread that couldn't be stopped, and replaces the thread. The abandoned thread
+	 * exits once the evaluation returns.
+	 */
+	private void abandonThread(ScriptWatchdog.Evaluation evaluation) {
+		evaluation.getFuture().completeExceptionally(evaluation.getAbortReason());
+		startQueueThread();
+	}
+	
 	private void runQueue() {
-		redirectOutput(false);
+		redirectOutput();
 		
-		while(true) {
+		while(thread == Thread.currentThread()) {
 			try {
 				runnableQueue.take().run();
 			} catch(Exception e) {
@@ -65,18 +130,16 @@ public class ScriptController {
 	}
 	
 	/**
-	 * Sends the system output and error streams to outputCallback and errorCallback consumers.
+	 * Sends the system output and error streams to outputCallback and errorCallback consumers, except for threads
+	 * with an OutputContext, which write to the streams of their context.
 	 */
-	private void redirectOutput(boolean currentThreadOnly) {
+	private void redirectOutput() {
 		LineReader outputReader = new LineReader(line -> outputCallback.accept(line));
-    	LineReader errorReader = new LineReader(line -> errorCallback.accept(line));
-    	if(currentThreadOnly) {
-			System.setOut(new PrintStreamSplitter(Thread.currentThread(), new PrintStream(outputReader.getOutputStream()), System.out));
-			System.setErr(new PrintStreamSplitter(Thread.currentThread(), new PrintStream(errorReader.getOutputStream()), System.err));
-    	} else {
-    		System.setOut(new PrintStream(outputReader.getOutputStream()));
-	    	System.setErr(new PrintStream(errorReader.getOutputStream()));
-    	}
+		LineReader errorReader = new LineReader(line -> errorCallback.accept(line));
+		outputStream = outputReader.getOutputStream();
+		errorStream = errorReader.getOutputStream();
+		System.setOut(new PrintStreamSplitter(new PrintStream(outputStream), OutputContext::getOutput));
+		System.setErr(new PrintStreamSplitter(new PrintStream(errorStream), OutputContext::getError));
 	}
 
 	public void setOutputCallbacks(Consumer<String> outputCallback, Consumer<String> errorCallback) {
@@ -92,43 +155,317 @@ public class ScriptController {
 	}
 	
 	public ScriptFuture<Void> addEngine(String scriptType, Engine engine) {
+		return addEngine(scriptType, engine, null);
+	}
+	
+	/**
+	 * Adds a factory for the engine of scriptType. The engine isn't created until it is first used by setScriptType or
+	 * prewarmEngine.
+	 */
+	public ScriptFuture<Void> addEngine(String scriptType, Supplier<Engine> engineFactory) {
+		return addEngine(scriptType, engineFactory, false);
+	}
+	
+	/**
+	 * Adds a factory for the engine of scriptType. The engine isn't created until it is first used by setScriptType or
+	 * prewarmEngine. If parallel is true, the factory also creates the engines used to evaluate commands in parallel.
+	 */
+	public ScriptFuture<Void> addEngine(String scriptType, Supplier<Engine> engineFactory, boolean parallel) {
+		return exec(() -> {
+			engineFactories.put(scriptType, engineFactory);
+			if(parallel) {
+				enginePools.put(scriptType, new EnginePool(engineFactory));
+			}
+			return null;
+		});
+	}
+	
+	/**
+	 * Adds an engine for scriptType, with a factory that creates more engines of the same type to evaluate commands in parallel,
+	 * or null if they can only be evaluated on the script thread.
+	 */
+	public ScriptFuture<Void> addEngine(String scriptType, Engine engine, Supplier<Engine> engineFactory) {
 		return exec(() -> {
 			engine.setGlobals(globals);
 			engines.put(scriptType, engine);
+			engineFactories.put(scriptType, engineFactory);
+			if(engineFactory != null) {
+				enginePools.put(scriptType, new EnginePool(engineFactory));
+			}
 			return null;
 		});
 	}
 	
+	/**
+	 * Changes the current engine to the engine for scriptType, creating it if needed. The script type is only changed once
+	 * the engine has been created, so it stays the same if the engine can't be created.
+	 */
 	public ScriptFuture<Void> setScriptType(String scriptType) {
-		this.scriptType = scriptType;
 		return exec(() -> {
-			for(String key:engines.keySet()) {
+			for(String key:engineFactories.keySet()) {
 				if(key.equalsIgnoreCase(scriptType)) {
-					engine = engines.get(key);
-					if(engine == null) {
-						throw new IllegalArgumentException("Unknown script type: " + scriptType);
+					Engine engine = getEngineSync(key);
+					if(engine != null) {
+						this.engine = engine;
+						this.enginePool = enginePools.get(key);
+						this.scriptType = scriptType;
+						return null;
 					}
 				}
 			}
+			throw new IllegalArgumentException("Unknown script type: " + scriptType);
+		});
+	}
+	
+	/**
+	 * Creates the engine for scriptType in the background if it hasn't been created yet, so that it is ready when it is
+	 * first used.
+	 */
+	public ScriptFuture<Void> prewarmEngine(String scriptType) {
+		return exec(ScriptPriority.BACKGROUND, () -> {
+			for(String key:engineFactories.keySet()) {
+				if(key.equalsIgnoreCase(scriptType)) {
+					getEngineSync(key);
+				}
+			}
 			return null;
 		});
 	}
 	
+	/**
+	 * Returns the engine registered with key, creating it from its factory if this is its first use.
+	 */
+	private Engine getEngineSync(String key) {
+		Engine engine = engines.get(key);
+		Supplier<Engine> engineFactory = engineFactories.get(key);
+		if(engine == null && engineFactory != null) {
+			long startNanos = System.nanoTime();
+			engine = engineFactory.get();
+			engine.setGlobals(globals);
+			for(String name:functionNames) {
+				engine.defineFunction(name, ChartWrapper::new);
+			}
+			engines.put(key, engine);
+			
+			StartupTimer startupTimer = this.startupTimer;
+			if(startupTimer != null) {
+				startupTimer.record("Create " + key + " engine", startNanos);
+			}
+		}
+		return engine;
+	}
+	
+	/**
+	 * Sets the timer to record the time taken to create each engine, or null to not record them.
+	 */
+	public void setStartupTimer(StartupTimer startupTimer) {
+		this.startupTimer = startupTimer;
+	}
+	
 	public <T> ScriptFuture<T> exec(Callable<T> callable) {
-		ScriptFuture<T> future = new ScriptFuture<>(this);
-		runnableQueue.add(() -> {
+		return exec(ScriptPriority.INTERACTIVE, callable);
+	}
+	
+	/**
+	 * Runs callable on the script thread after any waiting work of a higher priority.
+	 */
+	public <T> ScriptFuture<T> exec(ScriptPriority priority, Callable<T> callable) {
+		return exec(priority, timeoutMillis, callable);
+	}
+	
+	/**
+	 * Runs callable on the script thread after any waiting work of a higher priority, aborting it if it runs for
+	 * longer than timeoutMillis, or 0 for no limit.
+	 */
+	public <T> ScriptFuture<T> exec(ScriptPriority priority, long timeoutMillis, Callable<T> callable) {
+		ScriptFuture<T> future = new ScriptFuture<>(this, priority);
+		long cpuTimeoutMillis = this.cpuTimeoutMillis;
+		runnableQueue.add(priority, () -> {
+			// Skip work that was cancelled before it started.
+			if(future.isCancelled()) {
+				return;
+			}
+			
+			ScriptWatchdog.Evaluation evaluation = watchdog.start(future, timeoutMillis, cpuTimeoutMillis);
+			GlobalBindings.Access access = startRecordingChanges(priority);
 			try {
-				future.complete(callable.call());
+				T result;
+				try {
+					result = callable.call();
+				} finally {
+					// Stop watching before completing the future, as its callbacks may run on this thread.
+					watchdog.finish(evaluation);
+				}
+				if(evaluation.getAbortReason() != null) {
+					future.completeExceptionally(evaluation.getAbortReason());
+				} else {
+					future.complete(result);
+				}
 			} catch(Exception e) {
-				future.completeExceptionally(e);
+				future.completeExceptionally((evaluation.getAbortReason() != null) ? evaluation.getAbortReason() : e);
+			} finally {
+				stopRecordingChanges(access);
 			}
 		});
 		return future;
 	}
 	
+	/**
+	 * Starts recording the globals used by work of INTERACTIVE priority, returning null for other priorities.
+	 */
+	private GlobalBindings.Access startRecordingChanges(ScriptPriority priority) {
+		if(priority != ScriptPriority.INTERACTIVE) {
+			return null;
+		}
+		GlobalBindings.Access access = new GlobalBindings.Access();
+		globals.startRecording(access);
+		changesAccess = access;
+		return access;
+	}
+	
+	/**
+	 * Stops recording and counts the globals that were read or written as changed. Reads of objects other than immutable
+	 * values are counted as well as writes, since the objects may have been modified in place.
+	 */
+	private void stopRecordingChanges(GlobalBindings.Access access) {
+		if(access != null) {
+			globals.stopRecording(access);
+			countChanges(access);
+			changesAccess = null;
+		}
+	}
+	
+	/**
+	 * Counts the globals used so far by the running interactive work as changed, so that versions taken afterwards
+	 * include them. Must be called on the script thread.
+	 */
+	public void countChangesSync() {
+		if(changesAccess != null) {
+			countChanges(changesAccess);
+		}
+	}
+	
+	/**
+	 * Counts the globals recorded in access as changed, and clears them so that they aren't counted again.
+	 */
+	private void countChanges(GlobalBindings.Access access) {
+		Set<String> keys = getModifiableKeysSync(access.getReads());
+		keys.addAll(getModifiableKeysSync(access.getPossibleReads()));
+		keys.addAll(access.getWrites());
+		changedSync(keys);
+		
+		access.getReads().clear();
+		access.getPossibleReads().clear();
+		access.getWrites().clear();
+		access.getBlindWrites().clear();
+	}
+	
+	/**
+	 * Returns the keys of the globals that hold objects that could be modified in place, rather than immutable values.
+	 * Must be called on the script thread.
+	 */
+	public Set<String> getModifiableKeysSync(Collection<String> keys) {
+		Set<String> modifiableKeys = new HashSet<>();
+		for(String key:keys) {
+			if(!isImmutable(globals.getUnrecorded(key))) {
+				modifiableKeys.add(key);
+			}
+		}
+		return modifiableKeys;
+	}
+	
+	private static boolean isImmutable(Object value) {
+		return value == null || value instanceof String || value instanceof Boolean || value instanceof Character
+			|| value instanceof Integer || value instanceof Long || value instanceof Double || value instanceof Float
+			|| value instanceof Short || value instanceof Byte || value instanceof BigInteger || value instanceof BigDecimal;
+	}
+	
+	/**
+	 * Counts the globals as changed at a new version. Must be called on the script thread.
+	 */
+	void changedSync(Collection<String> keys) {
+		if(!keys.isEmpty()) {
+			globalVersion++;
+			for(String key:keys) {
+				globalVersions.put(key, globalVersion);
+			}
+		}
+	}
+	
+	/**
+	 * Returns whether any of the globals have changed after version. Must be called on the script thread.
+	 */
+	boolean isChangedSync(Collection<String> keys, long version) {
+		for(String key:keys) {
+			Long keyVersion = globalVersions.get(key);
+			if(keyVersion != null && keyVersion > version) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the current version of the globals. Must be called on the script thread.
+	 */
+	long getGlobalVersionSync() {
+		return globalVersion;
+	}
+	
+	/**
+	 * Returns the version at which a global was last changed, or 0 if it hasn't been. Must be called on the script thread.
+	 */
+	public long getGlobalVersionSync(String key) {
+		return globalVersions.getOrDefault(key, 0L);
+	}
+	
+	/**
+	 * Sets the default limits on the wall clock time and CPU time of each evaluation, or 0 for no limit.
+	 */
+	public void setTimeLimits(long timeoutMillis, long cpuTimeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+		this.cpuTimeoutMillis = cpuTimeoutMillis;
+	}
+	
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+	
+	public long getCpuTimeoutMillis() {
+		return cpuTimeoutMillis;
+	}
+	
+	/**
+	 * Aborts the evaluation for future if it is currently running. Returns whether it was aborted.
+	 */
+	boolean abort(ScriptFuture<?> future, Throwable reason) {
+		return watchdog.abort(future, reason);
+	}
+	
+	/**
+	 * Returns an executor that runs on the script thread at the given priority, running immediately if already on the script thread.
+	 */
+	public Executor getExecutor(ScriptPriority priority) {
+		return runnable -> {
+			if(isScriptThread()) {
+				runnable.run();
+			} else {
+				runnableQueue.add(priority, runnable);
+			}
+		};
+	}
+	
+	/**
+	 * Returns whether the current thread is the script thread.
+	 */
+	public boolean isScriptThread() {
+		return Thread.currentThread() == thread;
+	}
+	
 	public ScriptFuture<Void> defineFunction(String name, Function<?, ?> callback) {
 		return exec(() -> {
 			engine.defineFunction(name, ChartWrapper::new);
+			functionNames.add(name);
 			return null;
 		});
 	}
@@ -140,13 +477,182 @@ public class ScriptController {
 	}
 	
 	public ScriptFuture<Object> eval(String expression) {
-		return exec(() -> {
-			Object result = engine.eval(expression);
-			engine.setVariable("_", result);
-			return result;
+		return eval(expression, timeoutMillis);
+	}
+	
+	/**
+	 * Evaluates expression, aborting it if it runs for longer than timeoutMillis, or 0 for no limit.
+	 */
+	public ScriptFuture<Object> eval(String expression, long timeoutMillis) {
+		return exec(ScriptPriority.INTERACTIVE, timeoutMillis, () -> {
+			return evalSync(expression);
 		});
 	}
 	
+	/**
+	 * Evaluates expression synchronously in its own OutputContext, storing the result in the _ variable. Must be called
+	 * on the script thread.
+	 */
+	public Object evalSync(String expression) {
+		return captureOutputSync(() -> evalSync(engine, expression), null, null);
+	}
+	
+	/**
+	 * Evaluates expression with engine, storing the result in the _ variable.
+	 */
+	public static Object evalSync(Engine engine, String expression) {
+		Object result = engine.eval(expression);
+		engine.setVariable(RESULT_VARIABLE, result);
+		return result;
+	}
+	
+	/**
+	 * Returns whether the current script type can evaluate commands in parallel.
+	 */
+	public boolean isParallelSupported() {
+		return enginePool != null;
+	}
+	
+	/**
+	 * Evaluates each task concurrently on a worker engine of the current script type, against its own copy of the globals.
+	 * Must be called on the script thread, which waits for all the tasks to finish. The globals aren't changed, so the results
+	 * should be passed to mergeSync in the order that their changes should be applied.
+	 * The copies are shallow, so tasks shouldn't use the same mutable object, and classes or functions defined in the
+	 * script engine that aren't stored in the globals aren't available to the worker engines.
+	 */
+	public List<ParallelResult> evalParallelSync(List<? extends Function<Engine, Object>> tasks) throws InterruptedException {
+		EnginePool enginePool = this.enginePool;
+		if(enginePool == null) {
+			throw new IllegalStateException("Parallel evaluation not supported for script type: " + scriptType);
+		}
+		
+		Map<String, Object> globalsCopy = new HashMap<>(globals);
+		List<String> functionNames = new ArrayList<>(this.functionNames);
+		
+		List<Future<ParallelResult>> futures = new ArrayList<>();
+		for(Function<Engine, Object> task:tasks) {
+			futures.add(getWorkerExecutor().submit(() -> evalWorker(enginePool, functionNames, globalsCopy, task)));
+		}
+		
+		try {
+			List<ParallelResult> results = new ArrayList<>();
+			for(Future<ParallelResult> future:futures) {
+				results.add(future.get());
+			}
+			return results;
+		} catch(ExecutionException e) {
+			throw new RuntimeException("Error evaluating in parallel", e.getCause());
+		} finally {
+			// Interrupt any tasks still running if the script thread was aborted.
+			for(Future<ParallelResult> future:futures) {
+				future.cancel(true);
+			}
+		}
+	}
+	
+	/**
+	 * Evaluates task on the current worker thread, recording the globals it reads and writes, and capturing its output.
+	 */
+	private ParallelResult evalWorker(EnginePool enginePool, List<String> functionNames, Map<String, Object> globalsCopy, Function<Engine, Object> task) {
+		GlobalBindings workerGlobals = new GlobalBindings();
+		workerGlobals.putAll(globalsCopy);
+		GlobalBindings.Access access = new GlobalBindings.Access();
+		
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ByteArrayOutputStream error = new ByteArrayOutputStream();
+		OutputContext outputContext = new OutputContext(output, error);
+		OutputContext previousContext = outputContext.enter();
+		
+		Engine engine = null;
+		Object value = null;
+		Exception exception = null;
+		try {
+			engine = enginePool.take(functionNames);
+			engine.setGlobals(workerGlobals);
+			workerGlobals.startRecording(access);
+			value = task.apply(engine);
+		} catch(Exception e) {
+			exception = e;
+		} finally {
+			workerGlobals.stopRecording(access);
+			if(engine != null) {
+				enginePool.release(engine);
+			}
+			outputContext.close();
+			OutputContext.restore(previousContext);
+		}
+		
+		return new ParallelResult(value, exception, access, workerGlobals, output.toByteArray(), error.toByteArray());
+	}
+	
+	/**
+	 * Applies the changes that a result from evalParallelSync made to its copy of the globals, and writes its output.
+	 * Must be called on the script thread.
+	 */
+	public void mergeSync(ParallelResult result) {
+		// The worker may have modified the objects it read in place, as they are shared with its copy of the globals.
+		Set<String> readKeys = getModifiableKeysSync(result.getReads());
+		readKeys.addAll(getModifiableKeysSync(result.getPossibleReads()));
+		changedSync(readKeys);
+		
+		GlobalBindings workerGlobals = result.getGlobals();
+		for(String key:result.getWrites()) {
+			if(workerGlobals.containsKeyUnrecorded(key)) {
+				globals.put(key, workerGlobals.getUnrecorded(key));
+			} else {
+				globals.remove(key);
+			}
+		}
+		
+		writeOutputSync(result.getOutput(), result.getError());
+	}
+	
+	/**
+	 * Runs supplier in its own OutputContext, which is inherited by any threads it starts, copying the output and error
+	 * that it writes to the console into output and error as well if they aren't null. Must be called on the script thread.
+	 */
+	public <T> T captureOutputSync(Supplier<T> supplier, OutputStream output, OutputStream error) {
+		OutputContext currentContext = OutputContext.getCurrent();
+		OutputStream currentOutput = (currentContext != null) ? currentContext.getOutput() : outputStream;
+		OutputStream currentError = (currentContext != null) ? currentContext.getError() : errorStream;
+		
+		OutputContext outputContext = new OutputContext(new TeeOutputStream(currentOutput, output), new TeeOutputStream(currentError, error));
+		OutputContext previousContext = outputContext.enter();
+		try {
+			return supplier.get();
+		} finally {
+			outputContext.close();
+			OutputContext.restore(previousContext);
+		}
+	}
+	
+	/**
+	 * Writes output and error to the console, such as output captured from an earlier evaluation. Must be called on
+	 * the script thread.
+	 */
+	public void writeOutputSync(byte[] output, byte[] error) {
+		try {
+			if(outputStream != null && errorStream != null) {
+				outputStream.write(output);
+				errorStream.write(error);
+			}
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	private ExecutorService getWorkerExecutor() {
+		if(workerExecutor == null) {
+			AtomicInteger count = new AtomicInteger();
+			workerExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+				Thread thread = new Thread(runnable, "Script Worker " + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return workerExecutor;
+	}
+	
 	public ScriptFuture<List<NameAndProperties>> evalWithCallbackFunctions(String expression, List<String> callbackFunctionNames) {
 		return exec(() -> {
 			return engine.evalWithCallbackFunctions(expression, callbackFunctionNames);
@@ -176,13 +682,57 @@ public class ScriptController {
 		});
 	}
 	
+	/**
+	 * Reads the values of all the references in a single task on the script thread, returning a future that will complete
+	 * with the values in the same order. The value is null for a null reference or one that can't be read.
+	 */
+	public ScriptFuture<List<Object>> getValues(List<? extends Reference> references) {
+		return exec(ScriptPriority.REFRESH, () -> getValuesSync(references));
+	}
+	
+	/**
+	 * Reads the values of all the references, with null for a null reference or one that can't be read.
+	 * Must be called on the script thread.
+	 */
+	public List<Object> getValuesSync(List<? extends Reference> references) {
+		List<Object> values = new ArrayList<>(references.size());
+		for(Reference reference:references) {
+			Object value = null;
+			if(reference != null) {
+				try {
+					value = reference.getSync(engine);
+				} catch(Exception e) {
+					e.printStackTrace();
+				}
+			}
+			values.add(value);
+		}
+		return values;
+	}
+	
 	public void getScript(Consumer<Engine> consumer) {
-		runnableQueue.add(() -> {
-			consumer.accept(engine);
+		getScript(ScriptPriority.INTERACTIVE, consumer);
+	}
+	
+	public void getScript(ScriptPriority priority, Consumer<Engine> consumer) {
+		runnableQueue.add(priority, () -> {
+			GlobalBindings.Access access = startRecordingChanges(priority);
+			try {
+				consumer.accept(engine);
+			} finally {
+				stopRecordingChanges(access);
+			}
 		});
 	}
 	
-	public Map<String, Object> getGlobalsSync() {
+	/**
+	 * Returns the queue depth and wait time statistics for work of the given priority.
+	 */
+	public PriorityRunQueue.Statistics getQueueStatistics(ScriptPriority priority) {
+		return runnableQueue.getStatistics(priority);
+	}
+	
+	public GlobalBindings getGlobalsSync() {
 		return globals;
 	}
 	
@@ -190,9 +740,14 @@ public class ScriptController {
 		return engine;
 	}
 
+	/**
+	 * Aborts the running evaluation, stopping the script thread if it doesn't respond to being interrupted.
+	 */
 	public void interrupt() {
-		if(thread != null && thread.isAlive()) {
-			thread.interrupt();
+		if(!watchdog.abort(null, new CancellationException("Evaluation interrupted"))) {
+			if(thread != null && thread.isAlive()) {
+				thread.interrupt();
+			}
 		}
 	}
 
@@ -203,7 +758,7 @@ public class ScriptController {
 		return exec(() -> {
 			Map<String, Object> map = new HashMap<>(globals);
 			map.remove("system");
-			map.remove("_");
+			map.remove(RESULT_VARIABLE);
 			return new ObjectSerializer().serialize(map);
 		});
 	}
@@ -220,4 +775,44 @@ public class ScriptController {
 			return null;
 		});
 	}
+	
+	/**
+	 * Writes to both of two streams, skipping either if it is null.
+	 */
+	private static class TeeOutputStream extends OutputStream {
+		private final OutputStream first;
+		private final OutputStream second;
+		
+		public TeeOutputStream(OutputStream first, OutputStream second) {
+			this.first = first;
+			this.second = second;
+		}
+		
+		public void write(int b) throws IOException {
+			if(first != null) {
+				first.write(b);
+			}
+			if(second != null) {
+				second.write(b);
+			}
+		}
+		
+		public void write(byte[] b, int off, int len) throws IOException {
+			if(first != null) {
+				first.write(b, off, len);
+			}
+			if(second != null) {
+				second.write(b, off, len);
+			}
+		}
+		
+		public void flush() throws IOException {
+			if(first != null) {
+				first.flush();
+			}
+			if(second != null) {
+				second.flush();
+			}
+		}
+	}
 }
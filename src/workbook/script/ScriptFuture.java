@@ -1,84 +1,174 @@
 package workbook.script;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 /**
  * A future created to allow asynchronous communication with the script engine.
- * Contains the default exception handlers, and runs callbacks on the script thread.
+ * Contains the default exception handlers, and runs callbacks on the script thread at the priority of the future
+ * unless another executor is given. Callbacks for the script thread run immediately when the future completes
+ * on the script thread, rather than being posted to the back of the queue.
  */
 public class ScriptFuture<T> {
+	/**
+	 * An executor that runs callbacks on the thread that completes the future, or on the thread that adds the callback
+	 * if the future has already completed.
+	 */
+	public static final Executor DIRECT = Runnable::run;
+	
 	private final CompletableFuture<T> future = new CompletableFuture<>();
 	private final ScriptController scriptController;
+	private final ScriptPriority priority;
+	
+	// The callbacks to run once the future completes. Kept here rather than added to the CompletableFuture, which may
+	// run them on a thread waiting in get() instead of the thread that completes it.
+	private final List<Runnable> callbacks = new ArrayList<>();
 	
 	public ScriptFuture(ScriptController scriptController) {
+		this(scriptController, ScriptPriority.INTERACTIVE);
+	}
+	
+	public ScriptFuture(ScriptController scriptController, ScriptPriority priority) {
 		this.scriptController = scriptController;
+		this.priority = priority;
 	}
 	
 	public void complete(T result) {
-		future.complete(result);
-		future.exceptionally(this::exceptionHandler);
+		synchronized(callbacks) {
+			future.complete(result);
+		}
+		runCallbacks();
 	}
 	
 	public void completeExceptionally(Throwable throwable) {
-		future.completeExceptionally(throwable);
+		synchronized(callbacks) {
+			future.completeExceptionally(throwable);
+		}
+		runCallbacks();
 	}
-
+	
+	/**
+	 * Cancels the future, aborting its evaluation if it is running, or skipping it if it hasn't started.
+	 * Returns false if the future had already completed.
+	 */
+	public boolean cancel() {
+		synchronized(callbacks) {
+			if(!future.cancel(false)) {
+				return false;
+			}
+		}
+		runCallbacks();
+		scriptController.abort(this, new CancellationException("Evaluation cancelled"));
+		return true;
+	}
+	
+	public boolean isCancelled() {
+		return future.isCancelled();
+	}
+	
 	public T get() throws InterruptedException, ExecutionException {
 		return future.get();
 	}
 	
 	public void thenAccept(Consumer<T> callback) {
-		future
-			.thenAccept(runOnScriptThread(callback))
-			.exceptionally(this::exceptionHandler);
+		thenAccept(scriptController.getExecutor(priority), callback);
+	}
+	
+	/**
+	 * Calls callback with the result using executor.
+	 */
+	public void thenAccept(Executor executor, Consumer<T> callback) {
+		whenComplete((value, e) -> {
+			if(e == null) {
+				executor.execute(() -> callback.accept(value));
+			} else {
+				exceptionHandler(e);
+			}
+		});
 	}
 	
 	public void thenAcceptAlways(Consumer<Object> callback) {
-		future
-			.thenAccept(runOnScriptThread(callback))
-			.exceptionally(e -> {
-				runOnScriptThread(callback).accept(e);
-				return null;
-			});
+		thenAcceptAlways(scriptController.getExecutor(priority), callback);
 	}
-
+	
+	/**
+	 * Calls callback with the result, or the exception if the future failed, using executor.
+	 */
+	public void thenAcceptAlways(Executor executor, Consumer<Object> callback) {
+		whenComplete((value, e) -> {
+			executor.execute(() -> callback.accept((e == null) ? value : e));
+		});
+	}
+	
 	public void thenRun(Runnable callback) {
-		future
-			.thenRun(runOnScriptThread(callback))
-			.exceptionally(this::exceptionHandler);
+		thenRun(scriptController.getExecutor(priority), callback);
+	}
+	
+	/**
+	 * Runs callback using executor once the future completes successfully.
+	 */
+	public void thenRun(Executor executor, Runnable callback) {
+		thenAccept(executor, value -> callback.run());
 	}
 	
 	public void thenRunAlways(Runnable callback) {
-		future
-			.thenRun(runOnScriptThread(callback))
-			.exceptionally(e -> {
+		whenComplete((value, e) -> {
+			if(e != null) {
 				exceptionHandler(e);
-				callback.run();
-				return null;
-			})
-			.exceptionally(this::exceptionHandler);
+			}
+			scriptController.getExecutor(priority).execute(callback);
+		});
 	}
 	
-	private <U> Consumer<U> runOnScriptThread(Consumer<U> callback) {
-		return value -> {
-			scriptController.exec(() -> {
-				callback.accept(value);
-				return null;
-			});
-		};
+	/**
+	 * Calls action with the result or exception once the future completes, on the thread that completes it, or
+	 * immediately if it has already completed. Exceptions are wrapped in a CompletionException as they would be
+	 * for a callback added to the CompletableFuture.
+	 */
+	private void whenComplete(BiConsumer<T, Throwable> action) {
+		synchronized(callbacks) {
+			if(!future.isDone()) {
+				callbacks.add(() -> runCallback(action));
+				return;
+			}
+		}
+		runCallback(action);
 	}
 	
-	private Runnable runOnScriptThread(Runnable callback) {
-		return () -> {
-			scriptController.exec(() -> {
-				callback.run();
-				return null;
-			});
-		};
+	private void runCallbacks() {
+		List<Runnable> completedCallbacks;
+		synchronized(callbacks) {
+			completedCallbacks = new ArrayList<>(callbacks);
+			callbacks.clear();
+		}
+		completedCallbacks.forEach(Runnable::run);
 	}
-
+	
+	private void runCallback(BiConsumer<T, Throwable> action) {
+		T value = null;
+		Throwable exception = null;
+		try {
+			value = future.join();
+		} catch(CompletionException e) {
+			exception = e;
+		} catch(CancellationException e) {
+			exception = new CompletionException(e);
+		}
+		
+		try {
+			action.accept(value, exception);
+		} catch(Exception e) {
+			exceptionHandler(e);
+		}
+	}
+	
 	private <V> V exceptionHandler(Throwable e) {
 		e.printStackTrace();
 		return null;
@@ -0,0 +1,21 @@
+package workbook.script;
+
+/**
+ * The priority of work posted to the script thread, from highest to lowest.
+ */
+public enum ScriptPriority {
+	/**
+	 * Commands run directly by the user, such as evaluating a cell or script.
+	 */
+	INTERACTIVE,
+	
+	/**
+	 * Reading and writing references to refresh the views.
+	 */
+	REFRESH,
+	
+	/**
+	 * Formatting results for display.
+	 */
+	BACKGROUND
+}
@@ -0,0 +1,202 @@
+package workbook.script;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Watches the evaluation running on the script thread, and aborts it when it is cancelled or exceeds its time limits.
+ * An aborted evaluation is first interrupted, and if it is still running after a grace period then its thread is stopped
+ * so that the script controller can replace it. Where threads can't be stopped, the thread is abandoned instead, and
+ * left to finish on its own while the script controller replaces it.
+ */
+class ScriptWatchdog {
+	private static final long CHECK_INTERVAL_MILLIS = 100;
+	private static final long STOP_GRACE_MILLIS = 1000;
+	
+	/**
+	 * A single evaluation on the script thread, and its limits.
+	 */
+	static class Evaluation {
+		private final ScriptFuture<?> future;
+		private final Thread thread;
+		private final long timeoutMillis;
+		private final long cpuTimeoutMillis;
+		private final long startNanos;
+		private final long startCpuNanos;
+		
+		private volatile Throwable abortReason;
+		private volatile long abortNanos;
+		
+		private Evaluation(ScriptFuture<?> future, Thread thread, long timeoutMillis, long cpuTimeoutMillis) {
+			this.future = future;
+			this.thread = thread;
+			this.timeoutMillis = timeoutMillis;
+			this.cpuTimeoutMillis = cpuTimeoutMillis;
+			this.startNanos = System.nanoTime();
+			// Reading the CPU time is slow, so it is only read when there is a CPU time limit.
+			this.startCpuNanos = (cpuTimeoutMillis > 0) ? getCpuNanos(thread) : -1;
+		}
+		
+		public ScriptFuture<?> getFuture() {
+			return future;
+		}
+		
+		/**
+		 * Returns the reason the evaluation was aborted, or null if it hasn't been.
+		 */
+		public Throwable getAbortReason() {
+			return abortReason;
+		}
+		
+		/**
+		 * Returns the reason the evaluation has exceeded its limits, or null if it is within them.
+		 */
+		private Throwable getExceededLimit() {
+			long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+			if(timeoutMillis > 0 && elapsedMillis > timeoutMillis) {
+				return new TimeoutException("Evaluation exceeded time limit of " + timeoutMillis + "ms");
+			}
+			
+			if(cpuTimeoutMillis > 0 && startCpuNanos >= 0) {
+				long cpuNanos = getCpuNanos(thread);
+				long cpuMillis = TimeUnit.NANOSECONDS.toMillis(cpuNanos - startCpuNanos);
+				if(cpuMillis > cpuTimeoutMillis) {
+					return new TimeoutException("Evaluation exceeded CPU time limit of " + cpuTimeoutMillis + "ms");
+				}
+			}
+			
+			return null;
+		}
+	}
+	
+	private final Object lock = new Object();
+	private final Consumer<Evaluation> abandonHandler;
+	private Evaluation current = null;
+	private Evaluation stopped = null;
+	private Timer timer = null;
+	
+	/**
+	 * Creates a watchdog that calls abandonHandler with an evaluation whose thread couldn't be stopped.
+	 */
+	public ScriptWatchdog(Consumer<Evaluation> abandonHandler) {
+		this.abandonHandler = abandonHandler;
+	}
+	
+	/**
+	 * Starts watching an evaluation for future on the current thread.
+	 */
+	public Evaluation start(ScriptFuture<?> future, long timeoutMillis, long cpuTimeoutMillis) {
+		Evaluation evaluation = new Evaluation(future, Thread.currentThread(), timeoutMillis, cpuTimeoutMillis);
+		synchronized(lock) {
+			current = evaluation;
+			if(timer == null && (timeoutMillis > 0 || cpuTimeoutMillis > 0)) {
+				startTimer();
+			}
+		}
+		return evaluation;
+	}
+	
+	/**
+	 * Stops watching an evaluation once its callable has returned, clearing any interrupt that was meant for it.
+	 * Must be called before running anything else on the thread, so that it can't be stopped for the evaluation.
+	 */
+	public void finish(Evaluation evaluation) {
+		synchronized(lock) {
+			if(current == evaluation) {
+				current = null;
+			}
+			Thread.interrupted();
+		}
+	}
+	
+	/**
+	 * Aborts the current evaluation if it is for future, or any current evaluation if future is null.
+	 * Returns whether an evaluation was aborted.
+	 */
+	public boolean abort(ScriptFuture<?> future, Throwable reason) {
+		synchronized(lock) {
+			if(current == null || (future != null && current.future != future)) {
+				return false;
+			}
+			abort(current, reason);
+			return true;
+		}
+	}
+	
+	/**
+	 * Returns and clears the evaluation whose thread was stopped, or null if there isn't one.
+	 */
+	public Evaluation takeStopped() {
+		synchronized(lock) {
+			Evaluation evaluation = stopped;
+			stopped = null;
+			return evaluation;
+		}
+	}
+	
+	private void abort(Evaluation evaluation, Throwable reason) {
+		if(evaluation.abortReason == null) {
+			evaluation.abortReason = reason;
+			evaluation.abortNanos = System.nanoTime();
+			evaluation.thread.interrupt();
+			if(timer == null) {
+				startTimer();
+			}
+		}
+	}
+	
+	private void startTimer() {
+		timer = new Timer("Script Watchdog", true);
+		timer.schedule(new TimerTask() {
+			public void run() {
+				check();
+			}
+		}, CHECK_INTERVAL_MILLIS, CHECK_INTERVAL_MILLIS);
+	}
+	
+	/**
+	 * Aborts the current evaluation if it has exceeded its limits, and stops its thread if it has ignored being interrupted.
+	 */
+	@SuppressWarnings("deprecation")
+	private void check() {
+		Evaluation abandoned = null;
+		
+		synchronized(lock) {
+			Evaluation evaluation = current;
+			if(evaluation == null) {
+				return;
+			}
+			
+			if(evaluation.abortReason == null) {
+				Throwable exceeded = evaluation.getExceededLimit();
+				if(exceeded != null) {
+					abort(evaluation, exceeded);
+				}
+			} else if(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - evaluation.abortNanos) > STOP_GRACE_MILLIS) {
+				current = null;
+				stopped = evaluation;
+				try {
+					evaluation.thread.stop();
+				} catch(UnsupportedOperationException e) {
+					// Threads can't be stopped from JDK 20.
+					stopped = null;
+					abandoned = evaluation;
+				}
+			}
+		}
+		
+		if(abandoned != null) {
+			abandonHandler.accept(abandoned);
+		}
+	}
+	
+	private static long getCpuNanos(Thread thread) {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		return threadBean.isThreadCpuTimeSupported() ? threadBean.getThreadCpuTime(thread.getId()) : -1;
+	}
+}
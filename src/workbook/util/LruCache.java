@@ -0,0 +1,143 @@
+package workbook.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A cache holding at most maxSize values, which evicts the least recently used value when full.
+ * A weigher can also be given to limit the total weight of the values, such as their estimated memory size.
+ * Keeps count of hits, misses and evictions so that the effectiveness of the cache can be measured.
+ */
+public class LruCache<K, V> {
+	private final int maxSize;
+	private final long maxWeight;
+	private final ToLongFunction<? super V> weigher;
+	private final Map<K, V> map;
+
+	private long weight = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	public LruCache(int maxSize) {
+		this(maxSize, Long.MAX_VALUE, value -> 0);
+	}
+
+	/**
+	 * Creates a cache that evicts values when there are more than maxSize, or when the total weight of the values
+	 * given by weigher is more than maxWeight.
+	 */
+	public LruCache(int maxSize, long maxWeight, ToLongFunction<? super V> weigher) {
+		this.maxSize = maxSize;
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+		this.map = new LinkedHashMap<K, V>(16, 0.75f, true);
+	}
+
+	/**
+	 * Returns the value for key, calling loader to create and store it if it isn't already in the cache.
+	 * The value isn't stored if loader throws an exception or returns null.
+	 */
+	public synchronized V get(K key, Function<? super K, ? extends V> loader) {
+		V value = map.get(key);
+		if(value != null) {
+			hits++;
+			return value;
+		}
+
+		misses++;
+		value = loader.apply(key);
+		if(value != null) {
+			put(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the value for key, or null if it isn't in the cache.
+	 */
+	public synchronized V getIfPresent(K key) {
+		V value = map.get(key);
+		if(value != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return value;
+	}
+
+	public synchronized void put(K key, V value) {
+		V previous = map.put(key, value);
+		if(previous != null) {
+			weight -= weigher.applyAsLong(previous);
+		}
+		weight += weigher.applyAsLong(value);
+		evict();
+	}
+
+	public synchronized void invalidate(K key) {
+		V previous = map.remove(key);
+		if(previous != null) {
+			weight -= weigher.applyAsLong(previous);
+		}
+	}
+
+	/**
+	 * Removes all values from the cache, keeping the statistics.
+	 */
+	public synchronized void invalidateAll() {
+		map.clear();
+		weight = 0;
+	}
+
+	/**
+	 * Removes the least recently used values until the cache is within its limits.
+	 */
+	private void evict() {
+		Iterator<V> iterator = map.values().iterator();
+		while(iterator.hasNext() && (map.size() > maxSize || weight > maxWeight)) {
+			weight -= weigher.applyAsLong(iterator.next());
+			iterator.remove();
+			evictions++;
+		}
+	}
+
+	public synchronized int size() {
+		return map.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the fraction of lookups that were found in the cache, or 0 if there have been no lookups.
+	 */
+	public synchronized double getHitRate() {
+		long total = hits + misses;
+		return (total == 0) ? 0 : (double) hits / total;
+	}
+
+	public synchronized String toString() {
+		return String.format("size=%d/%d, hits=%d, misses=%d, evictions=%d, hitRate=%.2f", map.size(), maxSize, hits, misses, evictions, getHitRate());
+	}
+}
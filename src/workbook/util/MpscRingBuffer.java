@@ -0,0 +1,89 @@
+package workbook.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded queue backed by a ring buffer that can be written by many threads and read by a single thread without locking.
+ * Writers claim a slot by advancing the tail, and the reader frees a slot by clearing it before advancing the head. Adding to a
+ * full queue fails rather than blocking, so that the writers never wait on the reader.
+ */
+public class MpscRingBuffer<E> {
+	private final AtomicReferenceArray<E> buffer;
+	private final int capacity;
+	private final int mask;
+	
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+	
+	/**
+	 * Creates a queue that holds at least capacity items, rounded up to a power of two.
+	 */
+	public MpscRingBuffer(int capacity) {
+		int size = (capacity <= 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		this.buffer = new AtomicReferenceArray<>(size);
+		this.capacity = size;
+		this.mask = size - 1;
+	}
+	
+	/**
+	 * Adds an item to the queue from any thread. Returns false if the queue is full.
+	 */
+	public boolean offer(E item) {
+		if(item == null) {
+			throw new NullPointerException();
+		}
+		
+		while(true) {
+			long index = tail.get();
+			if(index - head.get() >= capacity) {
+				return false;
+			}
+			if(tail.compareAndSet(index, index + 1)) {
+				buffer.lazySet((int) (index & mask), item);
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Removes and returns the next item, or null if there isn't one ready. Must only be called from a single thread.
+	 */
+	public E poll() {
+		long index = head.get();
+		int offset = (int) (index & mask);
+		
+		// The slot is still null if a writer has claimed it but not written it yet.
+		E item = buffer.get(offset);
+		if(item != null) {
+			buffer.lazySet(offset, null);
+			head.lazySet(index + 1);
+		}
+		return item;
+	}
+	
+	/**
+	 * Removes each item that is ready and passes it to consumer. Returns the number of items removed.
+	 */
+	public int drain(Consumer<? super E> consumer) {
+		int count = 0;
+		E item;
+		while((item = poll()) != null) {
+			consumer.accept(item);
+			count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the approximate number of items in the queue.
+	 */
+	public int size() {
+		return (int) Math.max(0, Math.min(capacity, tail.get() - head.get()));
+	}
+	
+	public int getCapacity() {
+		return capacity;
+	}
+}
@@ -1,88 +1,115 @@
 package workbook.util;
 
-import java.math.BigInteger;
-import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * A comparator that compares String after grouping on runs of digits, so that numbers are
- * ordered in numerical order.
+ * ordered in numerical order. Spaces and leading zeros are ignored, then strings with fewer
+ * trailing zeros are ordered first. The strings are compared by walking their characters,
+ * without creating any objects.
  */
 public class NaturalOrderComparator implements Comparator<String> {
-	private static final Pattern groupPattern = Pattern.compile("([1-9][0-9]*)|([^ 0])");
-	
-	private static class CompareBuilder {
-		private int compare = 0;
+	public int compare(String a, String b) {
+		int startA = skipIgnored(a, 0);
+		int startB = skipIgnored(b, 0);
 		
-		public void compare(BigInteger a, BigInteger b) {
-			if(compare == 0) {
-				compare = a.compareTo(b);
+		while(startA < a.length() && startB < b.length()) {
+			int endA = getGroupEnd(a, startA);
+			int endB = getGroupEnd(b, startB);
+			
+			int compare;
+			if(Character.isDigit(a.charAt(startA)) && Character.isDigit(b.charAt(startB))) {
+				compare = compareNumbers(a, startA, endA, b, startB, endB);
+			} else {
+				compare = compareChars(a, startA, endA, b, startB, endB);
 			}
-		}
-		
-		public void compare(String a, String b) {
-			if(compare == 0) {
-				compare = a.compareTo(b);
+			
+			if(compare != 0) {
+				return compare;
 			}
+			
+			startA = skipIgnored(a, endA);
+			startB = skipIgnored(b, endB);
 		}
 		
-		public void compare(int a, int b) {
-			if(compare == 0) {
-				compare = Integer.compare(a, b);
-			}
+		// The string with groups remaining has more groups.
+		int compare = Boolean.compare(startA < a.length(), startB < b.length());
+		if(compare != 0) {
+			return compare;
 		}
 		
-		public int get() {
-			return compare;
+		return Integer.compare(getTrailingZeros(a), getTrailingZeros(b));
+	}
+	
+	/**
+	 * Returns the index of the next character from start that isn't a space or a zero outside of a number.
+	 */
+	private static int skipIgnored(String s, int start) {
+		while(start < s.length() && (s.charAt(start) == ' ' || s.charAt(start) == '0')) {
+			start++;
 		}
+		return start;
 	}
 	
-	public int compare(String a, String b) {
-		CompareBuilder compare = new CompareBuilder();
+	/**
+	 * Returns the end of the group starting at start, which is either a number starting with a non-zero digit,
+	 * or a single character.
+	 */
+	private static int getGroupEnd(String s, int start) {
+		char c = s.charAt(start);
+		int end = start + 1;
+		if(c >= '1' && c <= '9') {
+			while(end < s.length() && s.charAt(end) >= '0' && s.charAt(end) <= '9') {
+				end++;
+			}
+		} else if(Character.isHighSurrogate(c) && end < s.length() && Character.isLowSurrogate(s.charAt(end))) {
+			end++;
+		}
+		return end;
+	}
 	
-		List<String> groupa = getGroups(a);
-		List<String> groupb = getGroups(b);
+	/**
+	 * Compares two numbers without leading zeros, first by their number of digits, then by each digit.
+	 */
+	private static int compareNumbers(String a, int startA, int endA, String b, int startB, int endB) {
+		int lengthA = endA - startA;
+		int lengthB = endB - startB;
+		if(lengthA != lengthB) {
+			return Integer.compare(lengthA, lengthB);
+		}
 		
-		for(int i = 0; i < Math.min(groupa.size(), groupb.size()); i++) {
-			String sa = groupa.get(i);
-			String sb = groupb.get(i);
-			
-			if(Character.isDigit(sa.charAt(0)) && Character.isDigit(sb.charAt(0))) {
-				compare.compare(new BigInteger(sa), new BigInteger(sb));
-			} else {
-				compare.compare(sa, sb);
+		for(int i = 0; i < lengthA; i++) {
+			int digitA = Character.digit(a.charAt(startA + i), 10);
+			int digitB = Character.digit(b.charAt(startB + i), 10);
+			if(digitA != digitB) {
+				return Integer.compare(digitA, digitB);
 			}
 		}
-
-		compare.compare(groupa.size(), groupb.size());		
-		
-		String sa = extractGroup(a, "(0*)$");
-		String sb = extractGroup(b, "(0*)$");
-
-		compare.compare(sa.length(), sb.length());
-		
-		return compare.get();		
+		return 0;
 	}
 	
-	private static String extractGroup(String s, String pattern) {
-		Matcher m = Pattern.compile(pattern).matcher(s);
-		if(m.find()) {
-			return (m.groupCount() > 0) ? m.group(1) : m.group(0);
+	/**
+	 * Compares two groups lexicographically, in the same way as String.compareTo.
+	 */
+	private static int compareChars(String a, int startA, int endA, String b, int startB, int endB) {
+		int lengthA = endA - startA;
+		int lengthB = endB - startB;
+		
+		for(int i = 0; i < Math.min(lengthA, lengthB); i++) {
+			char charA = a.charAt(startA + i);
+			char charB = b.charAt(startB + i);
+			if(charA != charB) {
+				return charA - charB;
+			}
 		}
-		return null;
+		return lengthA - lengthB;
 	}
 	
-	private static List<String> getGroups(String a) {
-		List<String> groups = new ArrayList<>();
-		
-		Matcher matcher = groupPattern.matcher(a);
-		while(matcher.find()) {
-			groups.add(matcher.group(0));
+	private static int getTrailingZeros(String s) {
+		int count = 0;
+		while(count < s.length() && s.charAt(s.length() - 1 - count) == '0') {
+			count++;
 		}
-		
-		return groups;
+		return count;
 	}
 }
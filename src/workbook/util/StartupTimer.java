@@ -0,0 +1,81 @@
+package workbook.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Records how long each step of starting the workbook takes, and on which thread, so that changes to the startup time
+ * can be measured. Steps can be recorded from any thread.
+ */
+public class StartupTimer {
+	private static class Step {
+		private final String name;
+		private final String threadName;
+		private final long durationNanos;
+		private final long endNanos;
+		
+		public Step(String name, String threadName, long durationNanos, long endNanos) {
+			this.name = name;
+			this.threadName = threadName;
+			this.durationNanos = durationNanos;
+			this.endNanos = endNanos;
+		}
+	}
+	
+	private final long startNanos = System.nanoTime();
+	private final long jvmUptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+	private final List<Step> steps = new ArrayList<>();
+	
+	/**
+	 * Records that a step which started at stepStartNanos, from System.nanoTime(), has just finished on the current thread.
+	 */
+	public void record(String name, long stepStartNanos) {
+		long now = System.nanoTime();
+		Step step = new Step(name, Thread.currentThread().getName(), now - stepStartNanos, now - startNanos);
+		synchronized(steps) {
+			steps.add(step);
+		}
+	}
+	
+	/**
+	 * Runs a step, recording how long it took, and returns its result.
+	 */
+	public <T> T time(String name, Supplier<T> supplier) {
+		long stepStartNanos = System.nanoTime();
+		try {
+			return supplier.get();
+		} finally {
+			record(name, stepStartNanos);
+		}
+	}
+	
+	public void time(String name, Runnable runnable) {
+		time(name, () -> {
+			runnable.run();
+			return null;
+		});
+	}
+	
+	/**
+	 * Returns a report of the steps in the order they finished, with their duration, and when they finished
+	 * relative to the start of the timer.
+	 */
+	public String getReport() {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("Startup times (JVM started %d ms before timer):%n", jvmUptimeMillis));
+		synchronized(steps) {
+			for(Step step:steps) {
+				report.append(String.format("  %-32s %6d ms  at %6d ms  [%s]%n",
+					step.name,
+					TimeUnit.NANOSECONDS.toMillis(step.durationNanos),
+					TimeUnit.NANOSECONDS.toMillis(step.endNanos),
+					step.threadName
+				));
+			}
+		}
+		return report.toString();
+	}
+}
@@ -3,6 +3,7 @@ package workbook.util;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 import org.eclipse.swt.widgets.Composite;
@@ -19,6 +20,20 @@ public class SwtUtil {
 		}
 	}
 	
+	/**
+	 * Returns an executor that runs on the display thread, running immediately if already on the display thread.
+	 */
+	public static Executor displayExecutor() {
+		return runnable -> {
+			Display display = Display.getDefault();
+			if(Thread.currentThread() == display.getThread()) {
+				runnable.run();
+			} else if(!display.isDisposed()) {
+				display.asyncExec(runnable);
+			}
+		};
+	}
+	
 	/**
 	 * Runs a callable on the display thread, and returns the result.
 	 */
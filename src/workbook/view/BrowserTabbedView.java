@@ -1,5 +1,6 @@
 package workbook.view;
 
+import java.util.concurrent.Callable;
 import java.util.function.Consumer;
 
 import org.eclipse.swt.SWT;
@@ -27,6 +28,7 @@ import workbook.event.ScriptTypeChangeEvent;
 import workbook.layout.GridDataBuilder;
 import workbook.layout.GridLayoutBuilder;
 import workbook.model.Model;
+import workbook.script.GlobalObserver;
 import workbook.script.ScriptController;
 import workbook.util.ThrottledConsumer;
 
@@ -45,12 +47,17 @@ public class BrowserTabbedView implements TabbedView {
 	private String urlExpression;
 	private String htmlExpression;
 	
-	private Consumer<Void> throttledReadValue = new ThrottledConsumer<>(1000, true, value -> readValue());
+	// The reference to the last URL or HTML expression that was read.
+	private OgnlReference reference;
+	private final GlobalObserver observer;
+	
+	private Consumer<Void> throttledReadValue = new ThrottledConsumer<>(1000, true, value -> readValue(false));
 	
 	public BrowserTabbedView(Composite parent, EventBus eventBus, ScriptController scriptController, Model model) {
 		this.eventBus = eventBus;
 		this.scriptController = scriptController;
 		this.model = model;
+		this.observer = new GlobalObserver(scriptController);
 		
 		composite = new Composite(parent, SWT.NONE);
 		composite.setLayout(new GridLayoutBuilder().numColumns(1).marginWidth(0).marginHeight(0).verticalSpacing(0).build());
@@ -223,15 +230,23 @@ public class BrowserTabbedView implements TabbedView {
 	}
 	
 	private void readValue() {
+		readValue(true);
+	}
+	
+	/**
+	 * Reads the URL or HTML expression and displays its value. Unless force is set, the expression is only read again if
+	 * the globals that it read have changed.
+	 */
+	private void readValue(boolean force) {
 		if(urlExpression != null) {
-			new OgnlReference(scriptController, urlExpression).get().thenAccept(value -> {
+			readExpression(force, getReference(urlExpression), value -> {
 				String stringValue = (value == null) ? null : String.valueOf(value);
 				Display.getDefault().asyncExec(() -> {
 					setUrl(stringValue);
 				});
 			});
 		} else if(htmlExpression != null) {
-			new OgnlReference(scriptController, htmlExpression).get().thenAccept(value -> {
+			readExpression(force, getReference(htmlExpression), value -> {
 				String stringValue = (value == null) ? null : String.valueOf(value);
 				Display.getDefault().asyncExec(() -> {
 					setHtml(stringValue);
@@ -245,4 +260,23 @@ public class BrowserTabbedView implements TabbedView {
 			});
 		}
 	}
+	
+	private void readExpression(boolean force, OgnlReference reference, Consumer<Object> callback) {
+		Callable<Object> read = () -> reference.getSync(scriptController.getScriptSync());
+		if(force) {
+			observer.read(read, callback);
+		} else {
+			observer.readIfChanged(read, callback);
+		}
+	}
+	
+	/**
+	 * Returns a reference to expression, reusing the last reference while the expression is unchanged.
+	 */
+	private OgnlReference getReference(String expression) {
+		if(reference == null || !reference.getExpression().equals(expression)) {
+			reference = new OgnlReference(scriptController, expression);
+		}
+		return reference;
+	}
 }
\ No newline at end of file
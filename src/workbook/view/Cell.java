@@ -27,10 +27,13 @@ import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Menu;
+import org.eclipse.swt.widgets.MenuItem;
 
 import workbook.layout.GridDataBuilder;
 import workbook.script.ScriptFuture;
 import workbook.util.ScrollUtil;
+import workbook.util.SwtUtil;
 import workbook.view.result.Result;
 import workbook.view.result.ResultRenderer;
 import workbook.view.text.EditFunctions;
@@ -42,6 +45,8 @@ public class Cell {
 	private final Composite parent;
 	private final Label prompt;
 	private final StyledText command;
+	private final MenuItem bypassCacheItem;
+	private final MenuItem pinCacheItem;
 	
 	private final ResultRenderer resultRenderer;
 	
@@ -56,10 +61,14 @@ public class Cell {
 	private final Result result;
 	private Function<String, ScriptFuture<Object>> executeFunction = null;
 	private Function<String, String> completionFunction = null;
+	private ScriptFuture<Object> runningFuture = null;
 	
 	private String previousCommandText = "";
 	private Point previousSelection = new Point(0, 0);
 	
+	private int cacheHits = 0;
+	private int cacheMisses = 0;
+	
 	public Cell(Composite parent, ScrolledComposite scrolledComposite, ResultRenderer resultRenderer, Cell cellBelow) {
 		this.parent = parent;
 		this.resultRenderer = resultRenderer;
@@ -72,6 +81,15 @@ public class Cell {
 		
 		new EditFunctions(command);
 		
+		Menu promptMenu = new Menu(prompt);
+		bypassCacheItem = new MenuItem(promptMenu, SWT.CHECK);
+		bypassCacheItem.setText("Bypass Result Cache");
+		pinCacheItem = new MenuItem(promptMenu, SWT.CHECK);
+		pinCacheItem.setText("Pin Result in Cache");
+		bypassCacheItem.addListener(SWT.Selection, event -> pinCacheItem.setSelection(false));
+		pinCacheItem.addListener(SWT.Selection, event -> bypassCacheItem.setSelection(false));
+		prompt.setMenu(promptMenu);
+		
 		if(cellBelow != null) {
 			prompt.moveAbove(cellBelow.prompt);
 			command.moveBelow(prompt);
@@ -149,6 +167,9 @@ public class Cell {
 					evaluate(() -> notifyCallbacks.forEach(Runnable::run));
 				} else if(event.keyCode == 'a' && event.stateMask == SWT.CONTROL) {
 					selectAll();
+				} else if(event.keyCode == SWT.ESC && event.stateMask == SWT.NONE) {
+					// Cancel the running evaluation on escape.
+					cancel();
 				}
 			}
 		});
@@ -235,21 +256,39 @@ public class Cell {
 			callback.run();
 			parent.pack();
 		} else {
-			result.setLoading();
-			
-			parent.pack();
-			
-			executeFunction.apply(command.getText()).thenAcceptAlways(resultObject -> {
+			evaluate(executeFunction.apply(command.getText()), callback);
+		}
+	}
+	
+	/**
+	 * Shows the result of an evaluation of this cell's command that has been started elsewhere.
+	 */
+	public void evaluate(ScriptFuture<Object> future, Runnable callback) {
+		result.setLoading();
+		runningFuture = future;
+		
+		parent.pack();
+		
+		future.thenAcceptAlways(SwtUtil.displayExecutor(), resultObject -> {
+			if(runningFuture == future) {
+				runningFuture = null;
+			}
+			result.setValue(resultObject, () -> {
 				Display.getDefault().asyncExec(() -> {
-					result.setValue(resultObject, () -> {
-						Display.getDefault().asyncExec(() -> {
-							callback.run();
-							parent.pack();
-							parent.layout();
-						});
-					});
+					callback.run();
+					parent.pack();
+					parent.layout();
 				});
 			});
+		});
+	}
+	
+	/**
+	 * Cancels the evaluation of this cell if it hasn't finished.
+	 */
+	public void cancel() {
+		if(runningFuture != null) {
+			runningFuture.cancel();
 		}
 	}
 	
@@ -334,6 +373,50 @@ public class Cell {
 		return max;
 	}
 	
+	/**
+	 * Returns whether this cell should always be evaluated rather than reusing a cached result.
+	 */
+	public boolean isBypassCache() {
+		return bypassCacheItem.getSelection();
+	}
+	
+	public void setBypassCache(boolean bypassCache) {
+		bypassCacheItem.setSelection(bypassCache);
+		if(bypassCache) {
+			pinCacheItem.setSelection(false);
+		}
+	}
+	
+	/**
+	 * Returns whether the latest result of this cell should be kept in the result cache regardless of its memory budget.
+	 */
+	public boolean isPinCache() {
+		return pinCacheItem.getSelection();
+	}
+	
+	public void setPinCache(boolean pinCache) {
+		pinCacheItem.setSelection(pinCache);
+		if(pinCache) {
+			bypassCacheItem.setSelection(false);
+		}
+	}
+	
+	/**
+	 * Counts an evaluation that did or didn't reuse a cached result, and shows the counts as hits/misses under the prompt.
+	 */
+	public void addCacheResult(boolean hit) {
+		if(hit) {
+			cacheHits++;
+		} else {
+			cacheMisses++;
+		}
+		if(!prompt.isDisposed()) {
+			prompt.setText(String.format(">>>\n%d/%d", cacheHits, cacheMisses));
+			prompt.setToolTipText(String.format("Result cache hits: %d, misses: %d", cacheHits, cacheMisses));
+			parent.layout();
+		}
+	}
+	
 	public void selectAll() {
 		command.selectAll();
 		previousSelection = command.getSelection();
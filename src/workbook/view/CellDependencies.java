@@ -0,0 +1,133 @@
+package workbook.view;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import workbook.script.ScriptController;
+
+/**
+ * Keeps the globals read and written by each cell of a worksheet the last time it was evaluated, so that
+ * re-running the worksheet only needs to evaluate the cells that have changed or that read a changed global.
+ * A cell isn't re-run for changes to the globals it writes before reading them, so that re-running a worksheet after
+ * evaluating a single cell doesn't evaluate that cell again.
+ * A cell is also assumed to read every identifier in its command, as engines don't report reads of variables
+ * they store themselves.
+ */
+public class CellDependencies<K> {
+	private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+	
+	private static class Evaluation {
+		private final String command;
+		private final Set<String> reads;
+		private final Set<String> writes;
+		private final Set<String> blindWrites;
+		
+		public Evaluation(String command, Set<String> reads, Set<String> writes, Set<String> blindWrites) {
+			this.command = command;
+			this.reads = reads;
+			this.writes = writes;
+			this.blindWrites = blindWrites;
+		}
+	}
+	
+	private final Map<K, Evaluation> evaluations = new HashMap<>();
+	
+	/**
+	 * Returns whether a cell needs to be evaluated, because it hasn't been evaluated with this command before, or it read one
+	 * of the globals changed by the cells evaluated before it, or it read one of the globals changed outside the worksheet
+	 * that it didn't write itself before reading.
+	 */
+	public boolean needsEvaluation(K cell, String command, Set<String> externalChanges, Set<String> changes) {
+		Evaluation evaluation = evaluations.get(cell);
+		if(evaluation == null || !evaluation.command.equals(command)) {
+			return true;
+		}
+		
+		for(String key:changes) {
+			if(evaluation.reads.contains(key)) {
+				return true;
+			}
+		}
+		
+		for(String key:externalChanges) {
+			if(evaluation.reads.contains(key) && !evaluation.blindWrites.contains(key)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Stores the globals read and written by a cell when it was evaluated with command, where none were written
+	 * before being read.
+	 */
+	public void update(K cell, String command, Set<String> reads, Set<String> writes) {
+		update(cell, command, reads, writes, Collections.emptySet());
+	}
+	
+	/**
+	 * Stores the globals read and written by a cell when it was evaluated with command, and the globals that it
+	 * wrote before reading them.
+	 */
+	public void update(K cell, String command, Set<String> reads, Set<String> writes, Set<String> blindWrites) {
+		Set<String> allReads = new HashSet<>(reads);
+		allReads.addAll(getIdentifiers(command));
+		evaluations.put(cell, new Evaluation(command, allReads, new HashSet<>(writes), new HashSet<>(blindWrites)));
+	}
+	
+	/**
+	 * Returns the globals read by a cell the last time it was evaluated with command, or null if it wasn't.
+	 */
+	public Set<String> getReads(K cell, String command) {
+		Evaluation evaluation = evaluations.get(cell);
+		return (evaluation == null || !evaluation.command.equals(command)) ? null : Collections.unmodifiableSet(evaluation.reads);
+	}
+	
+	/**
+	 * Returns whether a cell can be evaluated in parallel with earlier cells that read and wrote the given globals, as the
+	 * last time it was evaluated with command it didn't read any of their writes, or write any of their reads or writes.
+	 * Writes to the result variable are ignored, as every evaluation stores its result there, but a cell that reads it
+	 * still depends on the cells before it.
+	 */
+	public boolean isIndependent(K cell, String command, Set<String> reads, Set<String> writes) {
+		Set<String> cellReads = getReads(cell, command);
+		if(cellReads == null) {
+			return false;
+		}
+		
+		Set<String> cellWrites = new HashSet<>(getWrites(cell));
+		cellWrites.remove(ScriptController.RESULT_VARIABLE);
+		return Collections.disjoint(cellReads, writes) && Collections.disjoint(cellWrites, reads) && Collections.disjoint(cellWrites, writes);
+	}
+	
+	/**
+	 * Returns the globals written by a cell the last time it was evaluated.
+	 */
+	public Set<String> getWrites(K cell) {
+		Evaluation evaluation = evaluations.get(cell);
+		return (evaluation == null) ? Collections.emptySet() : Collections.unmodifiableSet(evaluation.writes);
+	}
+	
+	public void remove(K cell) {
+		evaluations.remove(cell);
+	}
+	
+	public void clear() {
+		evaluations.clear();
+	}
+	
+	private static Set<String> getIdentifiers(String command) {
+		Set<String> identifiers = new HashSet<>();
+		Matcher matcher = IDENTIFIER.matcher(command);
+		while(matcher.find()) {
+			identifiers.add(matcher.group());
+		}
+		return identifiers;
+	}
+}
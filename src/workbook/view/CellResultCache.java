@@ -0,0 +1,158 @@
+package workbook.view;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.ToLongFunction;
+
+import workbook.script.GlobalBindings;
+import workbook.util.LruCache;
+
+/**
+ * A cache of the results of worksheet cells, keyed by the command and the versions of the globals read by the command,
+ * as counted by the ScriptController after the command was evaluated. The globals written by the command and its output
+ * are stored with the result so that they can be restored when the result is reused. Results are evicted when the
+ * estimated size of the cache is over its memory budget, except for the latest result of each pinned command.
+ */
+public class CellResultCache {
+	private static final int MAX_SIZE = 1000;
+	private static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+	private static final long OBJECT_BYTES = 64;
+	
+	/**
+	 * The result of a cell, the globals it wrote, and its output.
+	 */
+	public static class CachedResult {
+		private final Object value;
+		private final Map<String, Object> writes;
+		private final byte[] output;
+		private final byte[] error;
+		
+		public CachedResult(Object value, Map<String, Object> writes, byte[] output, byte[] error) {
+			this.value = value;
+			this.writes = writes;
+			this.output = output;
+			this.error = error;
+		}
+		
+		public Object getValue() {
+			return value;
+		}
+		
+		public Map<String, Object> getWrites() {
+			return writes;
+		}
+		
+		public byte[] getOutput() {
+			return output;
+		}
+		
+		public byte[] getError() {
+			return error;
+		}
+	}
+	
+	private final LruCache<String, CachedResult> cache;
+	
+	// The key and result of the latest evaluation of each pinned command, which are never evicted.
+	private final Map<String, String> pinnedKeys = new HashMap<>();
+	private final Map<String, CachedResult> pinnedResults = new HashMap<>();
+	
+	public CellResultCache() {
+		this(DEFAULT_MAX_BYTES);
+	}
+	
+	public CellResultCache(long maxBytes) {
+		this.cache = new LruCache<>(MAX_SIZE, maxBytes, CellResultCache::estimateSize);
+	}
+	
+	/**
+	 * Returns the cached result for command when the globals it reads are at the same versions as when it was stored, or null if there isn't one.
+	 */
+	public CachedResult get(String command, Set<String> reads, ToLongFunction<String> versions) {
+		String key = getKey(command, reads, versions);
+		CachedResult pinnedResult = pinnedResults.get(key);
+		return (pinnedResult != null) ? pinnedResult : cache.getIfPresent(key);
+	}
+	
+	/**
+	 * Stores the result of command, using the versions of the globals it reads after it was evaluated.
+	 */
+	public void put(String command, Set<String> reads, ToLongFunction<String> versions, CachedResult result) {
+		put(command, reads, versions, result, false);
+	}
+	
+	/**
+	 * Stores the result of command, keeping it outside the memory budget if pinned is set, in place of any previous pinned
+	 * result of the command. Storing an unpinned result for the command releases its pinned result.
+	 */
+	public void put(String command, Set<String> reads, ToLongFunction<String> versions, CachedResult result, boolean pinned) {
+		String key = getKey(command, reads, versions);
+		String previousKey = pinnedKeys.remove(command);
+		if(previousKey != null) {
+			pinnedResults.remove(previousKey);
+		}
+		
+		if(pinned) {
+			pinnedKeys.put(command, key);
+			pinnedResults.put(key, result);
+		} else {
+			cache.put(key, result);
+		}
+	}
+	
+	/**
+	 * Returns the values of the written globals to store in a result, without recording them as read.
+	 */
+	public static Map<String, Object> getWrittenValues(Set<String> writes, GlobalBindings globals) {
+		Map<String, Object> values = new LinkedHashMap<>();
+		for(String key:writes) {
+			values.put(key, globals.getUnrecorded(key));
+		}
+		return values;
+	}
+	
+	public LruCache<String, CachedResult> getCache() {
+		return cache;
+	}
+	
+	/**
+	 * Returns a key made up of the command and the version of each global that is read.
+	 */
+	private static String getKey(String command, Set<String> reads, ToLongFunction<String> versions) {
+		StringBuilder key = new StringBuilder(command);
+		for(String name:new TreeSet<>(reads)) {
+			key.append('\0').append(name).append('=').append(versions.applyAsLong(name));
+		}
+		return key.toString();
+	}
+	
+	/**
+	 * Returns a rough estimate of the memory used by a cached result.
+	 */
+	private static long estimateSize(CachedResult result) {
+		long size = estimateSize(result.value) + result.output.length + result.error.length;
+		for(Object value:result.writes.values()) {
+			size += estimateSize(value);
+		}
+		return size;
+	}
+	
+	private static long estimateSize(Object value) {
+		if(value instanceof CharSequence) {
+			return OBJECT_BYTES + ((CharSequence) value).length() * 2;
+		} else if(value instanceof Collection) {
+			return OBJECT_BYTES + ((Collection<?>) value).size() * OBJECT_BYTES;
+		} else if(value instanceof Map) {
+			return OBJECT_BYTES + ((Map<?, ?>) value).size() * OBJECT_BYTES * 2;
+		} else if(value != null && value.getClass().isArray()) {
+			return OBJECT_BYTES + Array.getLength(value) * 8;
+		} else {
+			return OBJECT_BYTES;
+		}
+	}
+}
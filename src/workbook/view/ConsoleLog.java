@@ -0,0 +1,234 @@
+package workbook.view;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import workbook.view.ansi.AnsiParser;
+
+/**
+ * An append-only log of console output, stored in a memory-mapped file. The file is mapped in fixed size segments as it
+ * grows, and the offset of the start of each line is kept in an index so that any line can be read without scanning the file.
+ * Appends should be made from a single thread, but lines can be read and searched from any thread. Reading from a log
+ * after it has been closed throws an IllegalStateException.
+ */
+public class ConsoleLog implements Closeable {
+	private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	private static final int INITIAL_LINES = 1024;
+	private static final int SEARCH_BATCH_LINES = 1024;
+	
+	private final File file;
+	private final FileChannel channel;
+	private final int segmentSize;
+	
+	private final List<MappedByteBuffer> segments = new ArrayList<>();
+	private long size = 0;
+	
+	private long[] lineOffsets = new long[INITIAL_LINES];
+	private int lineCount = 1;
+	private boolean closed = false;
+	
+	public ConsoleLog(File file) throws IOException {
+		this(file, DEFAULT_SEGMENT_SIZE);
+	}
+	
+	/**
+	 * Creates a log that writes to file, replacing any existing contents, and maps it in segments of segmentSize bytes.
+	 */
+	public ConsoleLog(File file, int segmentSize) throws IOException {
+		this.file = file;
+		this.segmentSize = segmentSize;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+	
+	/**
+	 * Creates a log in a temporary file that is deleted when the application exits.
+	 */
+	public static ConsoleLog createSessionLog() throws IOException {
+		File file = File.createTempFile("workbook-session-", ".log");
+		file.deleteOnExit();
+		return new ConsoleLog(file);
+	}
+	
+	/**
+	 * Appends text to the end of the log, adding any new lines to the index.
+	 */
+	public synchronized void append(String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		long start = size;
+		
+		int offset = 0;
+		while(offset < bytes.length) {
+			if(size / segmentSize == segments.size()) {
+				segments.add(channel.map(MapMode.READ_WRITE, (long) segments.size() * segmentSize, segmentSize));
+			}
+			ByteBuffer buffer = getSegment(size);
+			int count = Math.min(bytes.length - offset, buffer.remaining());
+			buffer.put(bytes, offset, count);
+			offset += count;
+			size += count;
+		}
+		
+		for(int i = 0; i < bytes.length; i++) {
+			if(bytes[i] == '\n') {
+				addLine(start + i + 1);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of lines in the log, including the last line which may be empty.
+	 */
+	public synchronized int getLineCount() {
+		return lineCount;
+	}
+	
+	public synchronized long getSize() {
+		return size;
+	}
+	
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	 * Returns a line from the log without its line separator.
+	 */
+	public String getLine(int line) {
+		return getLines(line, line + 1).get(0);
+	}
+	
+	/**
+	 * Returns the lines from start, inclusive, to end, exclusive, without their line separators.
+	 */
+	public List<String> getLines(int start, int end) {
+		long[] offsets;
+		synchronized(this) {
+			checkOpen();
+			if(start < 0 || end > lineCount || start > end) {
+				throw new IndexOutOfBoundsException("Lines " + start + " to " + end + " of " + lineCount);
+			}
+			offsets = Arrays.copyOfRange(lineOffsets, start, end + 1);
+			offsets[end - start] = (end == lineCount) ? size + 1 : lineOffsets[end];
+		}
+		
+		List<String> lines = new ArrayList<>(end - start);
+		byte[] bytes = new byte[0];
+		for(int i = 0; i < end - start; i++) {
+			int length = (int) (offsets[i + 1] - offsets[i] - 1);
+			if(bytes.length < length) {
+				bytes = new byte[Math.max(length, bytes.length * 2)];
+			}
+			read(offsets[i], bytes, length);
+			lines.add(new String(bytes, 0, length, StandardCharsets.UTF_8));
+		}
+		return lines;
+	}
+	
+	/**
+	 * Returns the index of each line that contains a match for pattern, ignoring any ansi escape sequences, up to maxMatches
+	 * lines. Only the lines in the log when the search starts are searched, and the search stops early if cancelled returns true
+	 * or the log is closed.
+	 */
+	public List<Integer> search(Pattern pattern, int maxMatches, BooleanSupplier cancelled) {
+		AnsiParser parser = new AnsiParser();
+		StringBuilder plainText = new StringBuilder();
+		Matcher matcher = pattern.matcher("");
+		List<Integer> matches = new ArrayList<>();
+		
+		int count = getLineCount();
+		for(int start = 0; start < count && matches.size() < maxMatches; start += SEARCH_BATCH_LINES) {
+			if(cancelled.getAsBoolean()) {
+				break;
+			}
+			
+			List<String> lines;
+			try {
+				lines = getLines(start, Math.min(start + SEARCH_BATCH_LINES, count));
+			} catch(IllegalStateException e) {
+				break;
+			}
+			
+			for(int i = 0; i < lines.size() && matches.size() < maxMatches; i++) {
+				plainText.setLength(0);
+				parser.reset();
+				parser.parse(lines.get(i), plainText, (runStart, length, style) -> {});
+				if(matcher.reset(plainText).find()) {
+					matches.add(start + i);
+				}
+			}
+		}
+		
+		return matches;
+	}
+	
+	/**
+	 * Closes the log, trimming the file to the size of its contents.
+	 */
+	public synchronized void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		
+		closed = true;
+		segments.clear();
+		try {
+			channel.truncate(size);
+		} finally {
+			channel.close();
+		}
+	}
+	
+	private void addLine(long offset) {
+		if(lineCount == lineOffsets.length) {
+			lineOffsets = Arrays.copyOf(lineOffsets, lineCount * 2);
+		}
+		lineOffsets[lineCount++] = offset;
+	}
+	
+	/**
+	 * Copies length bytes from the log starting at offset into bytes.
+	 */
+	private void read(long offset, byte[] bytes, int length) {
+		int position = 0;
+		while(position < length) {
+			ByteBuffer buffer;
+			synchronized(this) {
+				buffer = getSegment(offset + position);
+			}
+			int count = Math.min(length - position, buffer.remaining());
+			buffer.get(bytes, position, count);
+			position += count;
+		}
+	}
+	
+	private void checkOpen() {
+		if(closed) {
+			throw new IllegalStateException("Log is closed: " + file);
+		}
+	}
+	
+	/**
+	 * Returns a view of the segment that contains offset, positioned at offset.
+	 */
+	private ByteBuffer getSegment(long offset) {
+		checkOpen();
+		ByteBuffer buffer = segments.get((int) (offset / segmentSize)).duplicate();
+		// Cast to Buffer so that the methods are the same when compiled with newer JDKs.
+		((Buffer) buffer).position((int) (offset % segmentSize));
+		return buffer;
+	}
+}
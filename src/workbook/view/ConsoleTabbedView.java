@@ -1,7 +1,12 @@
 package workbook.view;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import org.apache.commons.lang3.text.WordUtils;
 import org.eclipse.swt.SWT;
@@ -16,6 +21,7 @@ import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Menu;
 import org.eclipse.swt.widgets.MenuItem;
+import org.eclipse.swt.widgets.MessageBox;
 import org.jdom2.Element;
 
 import com.google.common.eventbus.EventBus;
@@ -25,19 +31,46 @@ import workbook.event.MajorRefreshEvent;
 import workbook.event.OutputEvent;
 import workbook.view.ansi.AnsiParser;
 import workbook.view.ansi.AnsiStyle;
-import workbook.view.ansi.ParseResult;
 import workbook.view.canvas.ColorCache;
 
 /**
- * A view that displays the console output.
+ * A view that displays the console output. The console keeps a limited number of lines and characters of scrollback,
+ * removing the oldest lines when either limit is reached. All output can also be written to a session log file, which
+ * keeps the removed lines and can be searched and browsed without loading it all into the console.
  */
 public class ConsoleTabbedView implements TabbedView {
+	private static final int DEFAULT_MAX_LINES = 10000;
+	private static final int DEFAULT_MAX_CHARS = 4 * 1024 * 1024;
+	
+	// Lines are removed until the scrollback is within this fraction of the limits, so that they aren't removed on every append.
+	private static final double EVICTION_FRACTION = 0.9;
+	
+	// The number of lines loaded from the session log when showing older output.
+	private static final int WINDOW_LINES = 2000;
+	private static final int MAX_SEARCH_MATCHES = 10000;
+	
 	private final Composite parent;
 	private final StyledText text;
 	private final ColorCache colorCache;
 	
-	private List<StyleRange> styles = new ArrayList<StyleRange>();
-	private AnsiStyle lastStyle;
+	private final AnsiParser ansiParser = new AnsiParser();
+	
+	private int maxLines = DEFAULT_MAX_LINES;
+	private int maxChars = DEFAULT_MAX_CHARS;
+	
+	private boolean logToFile = false;
+	private ConsoleLog log = null;
+	
+	// Whether the console shows the latest output, or a window of older lines from the log.
+	private boolean following = true;
+	
+	// The index in the log of the first line in the console, which is negative while the console still shows lines
+	// written before the log was created.
+	private int firstLogLine = 0;
+	
+	private final AtomicInteger searchGeneration = new AtomicInteger();
+	private List<Integer> searchMatches = Collections.emptyList();
+	private int searchIndex = 0;
 	
 	public ConsoleTabbedView(Composite parent, EventBus eventBus) {
 		this.parent = parent;
@@ -61,6 +94,7 @@ public class ConsoleTabbedView implements TabbedView {
 		
 		colorCache = new ColorCache(Display.getCurrent());
 		getControl().addDisposeListener(colorCache);
+		getControl().addDisposeListener(event -> closeLog());
 		
 		clear();
 	}
@@ -85,17 +119,33 @@ public class ConsoleTabbedView implements TabbedView {
 	}
 	
 	private void addOutput(String output) {
-		addWithStyles(wrap(output));
-		text.setTopIndex(text.getLineCount() - 1);
+		if(!output.isEmpty()) {
+			String wrappedOutput = wrap(output);
+			appendToLog(wrappedOutput);
+			
+			if(following) {
+				addWithStyles(wrappedOutput);
+				trimScrollback();
+				text.setTopIndex(text.getLineCount() - 1);
+			}
+		}
 	}
 	
 	private void addError(String error) {
-		int start = text.getCharCount();
+		if(error.isEmpty()) {
+			return;
+		}
 		
 		String wrappedOutput = wrap(error);
 		
+		appendToLog("\u001B[31m" + wrappedOutput + "\u001B[39m");
+		if(!following) {
+			return;
+		}
+		
+		int start = text.getCharCount();
+		
 		text.append(wrappedOutput);
-		text.setTopIndex(text.getLineCount() - 1);
 		
 		StyleRange styleRange = new StyleRange();
 		styleRange.start = start;
@@ -103,44 +153,207 @@ public class ConsoleTabbedView implements TabbedView {
 		styleRange.foreground = Display.getCurrent().getSystemColor(SWT.COLOR_RED);
 		
 		text.replaceStyleRanges(start, wrappedOutput.length(), new StyleRange[] { styleRange });
+		
+		trimScrollback();
+		text.setTopIndex(text.getLineCount() - 1);
 	}
 	
 	/**
 	 * Adds text to the console by extracting any new styles from it, appending
-	 * the text, and applying the styles.
+	 * the text, and applying the styles to only the appended range.
 	 */
 	private void addWithStyles(String newText) {
-		ParseResult parseResult = new AnsiParser().parseText(lastStyle, newText);
-		
 		int offset = text.getCharCount();
-		text.append(parseResult.getNewText());
+		StringBuilder plainText = new StringBuilder(newText.length());
+		List<StyleRange> styles = new ArrayList<>();
 		
-		for(AnsiStyle ansiStyle:parseResult.getStyleRanges()) {
-			StyleRange style = new StyleRange(styles.get(styles.size() - 1));
-			style.start = offset + ansiStyle.start;
-			style.length = ansiStyle.length;
-			
-			if(ansiStyle.foreground == null) {
-				style.foreground = null;
-			} else {
-				style.foreground = colorCache.getColor(ansiStyle.foreground);
+		ansiParser.parse(newText, plainText, (start, length, ansiStyle) -> {
+			if(ansiStyle.foreground != null || ansiStyle.background != null || ansiStyle.bold || ansiStyle.italic || ansiStyle.underline) {
+				styles.add(createStyleRange(offset + start, length, ansiStyle));
 			}
-			if(ansiStyle.background == null) {
-				style.background = null;
-			} else {
-				style.background = colorCache.getColor(ansiStyle.background);
+		});
+		
+		text.append(plainText.toString());
+		text.replaceStyleRanges(offset, plainText.length(), styles.toArray(new StyleRange[styles.size()]));
+	}
+	
+	private StyleRange createStyleRange(int start, int length, AnsiStyle ansiStyle) {
+		StyleRange style = new StyleRange();
+		style.start = start;
+		style.length = length;
+		
+		if(ansiStyle.foreground != null) {
+			style.foreground = colorCache.getColor(ansiStyle.foreground);
+		}
+		if(ansiStyle.background != null) {
+			style.background = colorCache.getColor(ansiStyle.background);
+		}
+		
+		if(ansiStyle.bold) style.fontStyle |= SWT.BOLD;
+		if(ansiStyle.italic) style.fontStyle |= SWT.ITALIC;
+		if(ansiStyle.underline) style.underline = true;
+		if(ansiStyle.doubleUnderline) style.underlineStyle = SWT.UNDERLINE_DOUBLE;
+		
+		return style;
+	}
+	
+	/**
+	 * Removes the oldest lines if the scrollback is over its limits. They are still in the session log if it is enabled.
+	 */
+	private void trimScrollback() {
+		int lineCount = text.getLineCount();
+		int charCount = text.getCharCount();
+		if(lineCount <= maxLines && charCount <= maxChars) {
+			return;
+		}
+		
+		// Keep at least one line, as getOffsetAtLine fails past the last line.
+		int targetLines = Math.max(1, (int) (maxLines * EVICTION_FRACTION));
+		int targetChars = (int) (maxChars * EVICTION_FRACTION);
+		
+		int end = text.getOffsetAtLine(Math.max(0, lineCount - targetLines));
+		if(charCount - end > targetChars) {
+			// Remove up to the start of the next line, or within the line if it is too long by itself.
+			int line = text.getLineAtOffset(charCount - targetChars);
+			end = (line + 1 < lineCount) ? text.getOffsetAtLine(line + 1) : charCount - targetChars;
+		}
+		
+		if(end > 0) {
+			firstLogLine += text.getLineAtOffset(end);
+			text.replaceTextRange(0, end, "");
+		}
+	}
+	
+	/**
+	 * Appends output to the session log if enabled, creating the log when it is first needed.
+	 */
+	private void appendToLog(String output) {
+		if(!logToFile) {
+			return;
+		}
+		
+		try {
+			if(log == null) {
+				log = ConsoleLog.createSessionLog();
+				// The log starts with the rest of the last line in the console.
+				firstLogLine = 1 - text.getLineCount();
 			}
-			
-			if(ansiStyle.bold) style.fontStyle |= SWT.BOLD;
-			if(ansiStyle.italic) style.fontStyle |= SWT.ITALIC;
-			if(ansiStyle.underline) style.underline = true;
-			if(ansiStyle.doubleUnderline) style.underlineStyle = SWT.UNDERLINE_DOUBLE;
-			
-			styles.add(style);
-			lastStyle = ansiStyle;
+			log.append(output);
+		} catch(Exception e) {
+			logToFile = false;
+			closeLog();
+			e.printStackTrace();
+		}
+	}
+	
+	private void closeLog() {
+		searchGeneration.incrementAndGet();
+		searchMatches = Collections.emptyList();
+		
+		if(log != null) {
+			try {
+				log.close();
+			} catch(IOException e) {
+				e.printStackTrace();
+			}
+			log = null;
+		}
+	}
+	
+	/**
+	 * Returns the index in the log of the first line in the console.
+	 */
+	private int getFirstLogLine() {
+		return firstLogLine;
+	}
+	
+	/**
+	 * Selects a line from the log, loading the lines around it from the log if it isn't in the console.
+	 */
+	private void goToLine(int line) {
+		line = Math.max(0, Math.min(line, log.getLineCount() - 1));
+		
+		int consoleLine = line - getFirstLogLine();
+		if(consoleLine < 0 || consoleLine >= text.getLineCount()) {
+			showLogWindow(Math.max(0, line - WINDOW_LINES / 2), false);
+			consoleLine = line - getFirstLogLine();
+		}
+		
+		int start = text.getOffsetAtLine(consoleLine);
+		int end = (consoleLine + 1 < text.getLineCount()) ? text.getOffsetAtLine(consoleLine + 1) - 1 : text.getCharCount();
+		text.setSelection(start, end);
+	}
+	
+	/**
+	 * Shows the latest lines from the log, and continues showing new output.
+	 */
+	private void showLatestOutput() {
+		showLogWindow(Math.max(0, log.getLineCount() - Math.min(maxLines, WINDOW_LINES)), true);
+		text.setTopIndex(text.getLineCount() - 1);
+	}
+	
+	/**
+	 * Replaces the console contents with lines from the log starting at start, up to the end of the log if follow is set.
+	 */
+	private void showLogWindow(int start, boolean follow) {
+		int end = follow ? log.getLineCount() : Math.min(log.getLineCount(), start + WINDOW_LINES);
+		
+		text.setText("");
+		ansiParser.reset();
+		addWithStyles(String.join("\n", log.getLines(start, end)));
+		
+		firstLogLine = start;
+		following = follow;
+	}
+	
+	/**
+	 * Searches the log in a background thread, cancelling any previous search, then selects the first match.
+	 */
+	private void searchLog(String regex) {
+		Pattern pattern;
+		try {
+			pattern = Pattern.compile(regex);
+		} catch(PatternSyntaxException e) {
+			showMessage("Invalid pattern: " + e.getDescription());
+			return;
 		}
 		
-		text.setStyleRanges(styles.toArray(new StyleRange[styles.size()]));
+		int generation = searchGeneration.incrementAndGet();
+		ConsoleLog log = this.log;
+		Display display = text.getDisplay();
+		text.setToolTipText("Searching for: " + regex);
+		
+		Thread thread = new Thread(() -> {
+			List<Integer> matches = log.search(pattern, MAX_SEARCH_MATCHES, () -> searchGeneration.get() != generation);
+			display.asyncExec(() -> {
+				if(!text.isDisposed() && searchGeneration.get() == generation) {
+					searchMatches = matches;
+					if(matches.isEmpty()) {
+						text.setToolTipText(null);
+						showMessage("No matches found for: " + regex);
+					} else {
+						showMatch(0);
+					}
+				}
+			});
+		}, "Console Search");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	private void showMatch(int index) {
+		searchIndex = (index + searchMatches.size()) % searchMatches.size();
+		goToLine(searchMatches.get(searchIndex));
+		
+		String more = (searchMatches.size() == MAX_SEARCH_MATCHES) ? "+" : "";
+		text.setToolTipText("Match " + (searchIndex + 1) + " of " + searchMatches.size() + more);
+	}
+	
+	private void showMessage(String message) {
+		MessageBox messageBox = new MessageBox(text.getShell());
+		messageBox.setText("Console");
+		messageBox.setMessage(message);
+		messageBox.open();
 	}
 	
 	private static String wrap(String output) {
@@ -154,26 +367,49 @@ public class ConsoleTabbedView implements TabbedView {
 		}
 		return s.toString();
 	}
-
+	
 	public void clear() {
 		text.setText("");
+		firstLogLine = (log != null) ? log.getLineCount() - 1 : 0;
 		
-		styles.clear();
-		styles.add(new StyleRange());
-		
-		lastStyle = new AnsiStyle();
+		ansiParser.reset();
+		following = true;
 	}
-
+	
 	public Control getControl() {
 		return text;
 	}
-
+	
 	public void serialize(Element element) {
+		Element maxLinesElement = new Element("MaxLines");
+		maxLinesElement.setText(String.valueOf(maxLines));
+		element.addContent(maxLinesElement);
+		
+		Element maxCharsElement = new Element("MaxChars");
+		maxCharsElement.setText(String.valueOf(maxChars));
+		element.addContent(maxCharsElement);
+		
+		if(logToFile) {
+			Element logToFileElement = new Element("LogToFile");
+			logToFileElement.setText("true");
+			element.addContent(logToFileElement);
+		}
 	}
-
+	
 	public void deserialize(Element element) {
+		maxLines = parseLimit(element.getChildText("MaxLines"), DEFAULT_MAX_LINES);
+		maxChars = parseLimit(element.getChildText("MaxChars"), DEFAULT_MAX_CHARS);
+		logToFile = Boolean.parseBoolean(element.getChildText("LogToFile"));
 	}
-
+	
+	private static int parseLimit(String value, int defaultValue) {
+		try {
+			return (value == null) ? defaultValue : Math.max(1, Integer.parseInt(value.trim()));
+		} catch(NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+	
 	public void createMenu(Menu menu) {
 		MenuItem clearItem = new MenuItem(menu, SWT.NONE);
 		clearItem.setText("Clear");
@@ -182,5 +418,93 @@ public class ConsoleTabbedView implements TabbedView {
 				clear();
 			}
 		});
+		
+		MenuItem scrollbackItem = new MenuItem(menu, SWT.NONE);
+		scrollbackItem.setText("Scrollback Limit...");
+		scrollbackItem.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent event) {
+				String value = InputDialog.open(Display.getDefault().getActiveShell(), "Scrollback Limit", "Maximum Lines", String.valueOf(maxLines));
+				if(value != null) {
+					maxLines = parseLimit(value, maxLines);
+					trimScrollback();
+				}
+			}
+		});
+		
+		MenuItem logItem = new MenuItem(menu, SWT.CHECK);
+		logItem.setText("Log Output to File");
+		logItem.setSelection(logToFile);
+		logItem.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent event) {
+				logToFile = logItem.getSelection();
+				if(!logToFile && log != null) {
+					if(!following) {
+						showLatestOutput();
+					}
+					closeLog();
+				}
+			}
+		});
+		
+		if(log != null) {
+			createLogMenu(menu);
+		}
+	}
+	
+	private void createLogMenu(Menu menu) {
+		new MenuItem(menu, SWT.SEPARATOR);
+		
+		MenuItem goToLineItem = new MenuItem(menu, SWT.NONE);
+		goToLineItem.setText("Go to Line...");
+		goToLineItem.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent event) {
+				String value = InputDialog.open(Display.getDefault().getActiveShell(), "Go to Line", "Line (1 - " + log.getLineCount() + ")");
+				if(value != null) {
+					try {
+						goToLine(Integer.parseInt(value.trim()) - 1);
+					} catch(NumberFormatException e) {
+						showMessage("Invalid line number: " + value);
+					}
+				}
+			}
+		});
+		
+		MenuItem searchItem = new MenuItem(menu, SWT.NONE);
+		searchItem.setText("Search Log...");
+		searchItem.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent event) {
+				String value = InputDialog.open(Display.getDefault().getActiveShell(), "Search Log", "Regular Expression");
+				if(value != null && !value.isEmpty()) {
+					searchLog(value);
+				}
+			}
+		});
+		
+		MenuItem nextMatchItem = new MenuItem(menu, SWT.NONE);
+		nextMatchItem.setText("Next Match");
+		nextMatchItem.setEnabled(!searchMatches.isEmpty());
+		nextMatchItem.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent event) {
+				showMatch(searchIndex + 1);
+			}
+		});
+		
+		MenuItem previousMatchItem = new MenuItem(menu, SWT.NONE);
+		previousMatchItem.setText("Previous Match");
+		previousMatchItem.setEnabled(!searchMatches.isEmpty());
+		previousMatchItem.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent event) {
+				showMatch(searchIndex - 1);
+			}
+		});
+		
+		MenuItem latestItem = new MenuItem(menu, SWT.NONE);
+		latestItem.setText("Show Latest Output");
+		latestItem.setEnabled(!following);
+		latestItem.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent event) {
+				showLatestOutput();
+			}
+		});
 	}
 }
\ No newline at end of file
@@ -2,8 +2,11 @@ package workbook.view;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.SashForm;
@@ -30,16 +33,18 @@ import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 
 import workbook.editor.reference.OgnlReference;
+import workbook.editor.reference.Reference;
 import workbook.event.MajorRefreshEvent;
 import workbook.event.MinorRefreshEvent;
 import workbook.event.ScriptTypeChangeEvent;
 import workbook.layout.GridDataBuilder;
 import workbook.layout.GridLayoutBuilder;
 import workbook.model.Model;
+import workbook.script.GlobalObserver;
 import workbook.script.NameAndProperties;
 import workbook.script.ScriptController;
-import workbook.script.ScriptFuture;
 import workbook.util.ScrollUtil;
+import workbook.util.SwtUtil;
 import workbook.view.text.EditorText;
 
 /**
@@ -51,15 +56,17 @@ class FormView {
 	private final ScriptController scriptController;
 	private final ScrolledComposite scrolledComposite;
 	private final Composite composite;
+	private final GlobalObserver observer;
 	
 	private boolean disableModifyListener = false;
 	
 	private List<NameAndProperties> formItems = new ArrayList<>();
-	private List<Runnable> refreshCallbacks = new ArrayList<>();
+	private Map<Reference, Consumer<Object>> refreshCallbacks = new LinkedHashMap<>();
 	
 	public FormView(Composite parent, EventBus eventBus, ScriptController scriptController) {
 		this.eventBus = eventBus;
 		this.scriptController = scriptController;
+		this.observer = new GlobalObserver(scriptController);
 		
 		scrolledComposite = ScrollUtil.createScrolledComposite(parent);
 		scrolledComposite.setLayout(new FillLayout());
@@ -101,18 +108,14 @@ class FormView {
 		OgnlReference reference = new OgnlReference(scriptController, expression);
 
 		// Read expression value.
-		refreshCallbacks.add(() -> {
-			reference.get().thenAccept(x -> {
-				if(x instanceof Integer) {
-					int intValue = (Integer) x;
-					Display.getDefault().asyncExec(() -> {
-						if(!value.isDisposed() && !slider.isDisposed()) {
-							value.setText(String.valueOf(intValue));		
-							slider.setSelection(intValue - min);
-						}
-					});
+		refreshCallbacks.put(reference, x -> {
+			if(x instanceof Integer) {
+				int intValue = (Integer) x;
+				if(!value.isDisposed() && !slider.isDisposed()) {
+					value.setText(String.valueOf(intValue));		
+					slider.setSelection(intValue - min);
 				}
-			});
+			}
 		});
 		
 		// Write expression value.
@@ -140,17 +143,13 @@ class FormView {
 		OgnlReference reference = new OgnlReference(scriptController, expression);
 
 		// Read expression value.
-		refreshCallbacks.add(() -> {
-			reference.get().thenAccept(x -> {
-				if(x instanceof Boolean) {
-					boolean booleanValue = (Boolean) x;
-					Display.getDefault().asyncExec(() -> {
-						if(!button.isDisposed()) {
-							button.setSelection(booleanValue);
-						}
-					});
+		refreshCallbacks.put(reference, x -> {
+			if(x instanceof Boolean) {
+				boolean booleanValue = (Boolean) x;
+				if(!button.isDisposed()) {
+					button.setSelection(booleanValue);
 				}
-			});
+			}
 		});
 		
 		// Write expression value.
@@ -176,21 +175,17 @@ class FormView {
 		OgnlReference reference = new OgnlReference(scriptController, expression);
 
 		// Read expression value.
-		refreshCallbacks.add(() -> {
-			reference.get().thenAccept(x -> {
-				if(x instanceof String) {
-					String textValue = (String) x;
-					Display.getDefault().asyncExec(() -> {
-						if(!text.isDisposed()) {
-							if(!text.equals(textValue)) {
-								disableModifyListener = true;
-								text.setText(textValue);
-								disableModifyListener = false;
-							}
-						}
-					});
+		refreshCallbacks.put(reference, x -> {
+			if(x instanceof String) {
+				String textValue = (String) x;
+				if(!text.isDisposed()) {
+					if(!text.equals(textValue)) {
+						disableModifyListener = true;
+						text.setText(textValue);
+						disableModifyListener = false;
+					}
 				}
-			});
+			}
 		});
 		
 		// Write expression value.
@@ -228,11 +223,13 @@ class FormView {
 	}
 
 	/**
-	 * Creates the form items from the given items.
+	 * Creates the form items from the given items, and reads their values if they are new, force is set, or the globals
+	 * that they read have changed.
 	 */
-	public void setFormItems(List<NameAndProperties> formItems) {
+	public void setFormItems(List<NameAndProperties> formItems, boolean force) {
 		composite.getDisplay().asyncExec(() -> {
-			if(!formItems.equals(this.formItems)) {
+			boolean changed = !formItems.equals(this.formItems);
+			if(changed) {
 				clearItems();
 				this.formItems = formItems;
 				
@@ -263,10 +260,31 @@ class FormView {
 				composite.pack();
 			}
 			
-			refreshCallbacks.forEach(Runnable::run);
+			refreshItems(changed || force);
 		});
 	}
 	
+	/**
+	 * Reads the values of all the form items in a single script thread task, and updates the items in a single UI update.
+	 * Unless force is set, this is skipped if none of the globals that the items read have changed.
+	 */
+	public void refreshItems(boolean force) {
+		List<Reference> references = new ArrayList<>(refreshCallbacks.keySet());
+		List<Consumer<Object>> callbacks = new ArrayList<>(refreshCallbacks.values());
+		Callable<List<Object>> readValues = () -> scriptController.getValuesSync(references);
+		Consumer<List<Object>> callback = values -> SwtUtil.displayExecutor().execute(() -> {
+			for(int i = 0; i < callbacks.size(); i++) {
+				callbacks.get(i).accept(values.get(i));
+			}
+		});
+		
+		if(force) {
+			observer.read(readValues, callback);
+		} else {
+			observer.readIfChanged(readValues, callback);
+		}
+	}
+	
 	private static double ensureInRange(double value, double min, double max) {
 		if(value < min) return min;
 		if(value > max) return max;
@@ -307,11 +325,16 @@ public class FormTabbedView implements TabbedView {
 	private final Model model;
 	
 	private final List<FormView> formViews = new ArrayList<>();
+	private final GlobalObserver observer;
+	
+	// The script text that was last evaluated, or null to evaluate it again on the next refresh.
+	private String refreshedText = null;
 	
 	public FormTabbedView(Composite parent, EventBus eventBus, ScriptController scriptController, Model model) {
 		folder = new TabFolder(parent, SWT.BOTTOM);
 		this.scriptController = scriptController;
 		this.model = model;
+		this.observer = new GlobalObserver(scriptController);
 		
 		TabItem designTab = new TabItem(folder, SWT.NONE);
 		designTab.setText("Design");
@@ -350,6 +373,7 @@ public class FormTabbedView implements TabbedView {
 	@Subscribe
 	public void onScriptTypeChange(ScriptTypeChangeEvent event) {
 		refreshBrush();
+		Display.getDefault().asyncExec(() -> refreshedText = null);
 	}
 	
 	@Subscribe
@@ -360,7 +384,7 @@ public class FormTabbedView implements TabbedView {
 			}
 		}
 		
-		refresh();
+		refresh(false);
 	}
 	
 	@Subscribe
@@ -373,10 +397,31 @@ public class FormTabbedView implements TabbedView {
 	}
 	
 	public void refresh() {
+		refresh(true);
+	}
+	
+	/**
+	 * Evaluates the script to create the form items, then reads their values. Unless force is set, the script is only
+	 * evaluated again if it or the globals that it read have changed, and the values are only read again if the globals
+	 * that they read have changed.
+	 */
+	private void refresh(boolean force) {
 		Display.getDefault().asyncExec(() -> {
+			String text = editorText.getText();
 			List<String> callbackNames = Arrays.asList("sliderItem", "booleanItem", "textItem", "buttonItem");
-			ScriptFuture<List<NameAndProperties>> result = scriptController.evalWithCallbackFunctions(editorText.getText(), callbackNames);
-			result.thenAccept(values -> formViews.forEach(formView -> formView.setFormItems(values)));
+			Callable<List<NameAndProperties>> evaluate = () -> scriptController.getScriptSync().evalWithCallbackFunctions(text, callbackNames);
+			Consumer<List<NameAndProperties>> callback = values -> formViews.forEach(formView -> formView.setFormItems(values, force));
+			
+			if(force || !text.equals(refreshedText)) {
+				observer.read(evaluate, callback);
+			} else {
+				observer.readIfChanged(evaluate, callback).thenAccept(SwtUtil.displayExecutor(), evaluated -> {
+					if(!evaluated) {
+						formViews.forEach(formView -> formView.refreshItems(false));
+					}
+				});
+			}
+			refreshedText = text;
 		});
 	}
 	
@@ -2,10 +2,20 @@ package workbook.view;
 
 import static java.util.stream.Collectors.toList;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.ScrolledComposite;
@@ -28,13 +38,20 @@ import com.google.common.eventbus.Subscribe;
 import workbook.event.MajorRefreshEvent;
 import workbook.event.MinorRefreshEvent;
 import workbook.layout.GridLayoutBuilder;
+import workbook.script.Engine;
+import workbook.script.GlobalBindings;
+import workbook.script.ParallelResult;
 import workbook.script.ScriptController;
 import workbook.script.ScriptFuture;
 import workbook.util.ScrollUtil;
+import workbook.util.SwtUtil;
 import workbook.view.result.ResultRenderer;
 
 /**
  * A view that displays a worksheet allowing the entering of commands and the inline display of their results.
+ * Running the worksheet only evaluates the cells that have changed, or that depend on globals that have changed.
+ * Results can optionally be cached, so that evaluating a cell again with the same inputs reuses the previous result.
+ * Cells that don't depend on each other can optionally be evaluated in parallel on separate engines.
  */
 public class WorksheetTabbedView implements TabbedView {
 	private final EventBus eventBus;
@@ -43,12 +60,20 @@ public class WorksheetTabbedView implements TabbedView {
 	private final Composite cellsComposite;
 	private final ResultRenderer resultRenderer;
 	
-	private Function<String, ScriptFuture<Object>> executeFunction;
+	private Function<String, Object> executeFunction;
+	private BiFunction<Engine, String, Object> engineFunction;
 	private String executeFunctionName;
 	
 	private final Completion completion = new Completion();
 	private final List<Cell> cells = new ArrayList<>();
 	
+	private final CellDependencies<Cell> dependencies = new CellDependencies<>();
+	// Called with the globals changed by a cell once its evaluation has been recorded.
+	private final Map<Cell, Consumer<Set<String>>> recordedCallbacks = new HashMap<>();
+	private Set<String> changedGlobals = new HashSet<>();
+	private CellResultCache resultCache = null;
+	private boolean parallel = false;
+	
 	private Cell focusedCell = null;
 	
 	/**
@@ -65,7 +90,8 @@ public class WorksheetTabbedView implements TabbedView {
 	public WorksheetTabbedView(Composite parent, EventBus eventBus, ScriptController scriptController, ResultRenderer resultRenderer, Function<String, Object> executeFunction) {
 		this(parent, eventBus, scriptController, resultRenderer);
 		
-		this.executeFunction = command -> scriptController.exec(() -> executeFunction.apply(command));
+		this.executeFunction = executeFunction;
+		this.engineFunction = null;
 	}
 	
 	/**
@@ -75,7 +101,7 @@ public class WorksheetTabbedView implements TabbedView {
 		this.eventBus = eventBus;
 		this.scriptController = scriptController;
 		this.resultRenderer = resultRenderer;
-		this.executeFunction = scriptController::eval;
+		setExecuteFunctionName(null);
 		
 		Display display = parent.getDisplay();
 		
@@ -101,8 +127,21 @@ public class WorksheetTabbedView implements TabbedView {
 
 		addPrompt(null);
 		
+		// Track the globals changed outside the worksheet on the script thread.
+		GlobalBindings globals = scriptController.getGlobalsSync();
+		scriptController.exec(() -> {
+			changedGlobals = globals.trackChanges();
+			return null;
+		});
+		
 		eventBus.register(this);
-		getControl().addDisposeListener(event -> eventBus.unregister(this));
+		getControl().addDisposeListener(event -> {
+			eventBus.unregister(this);
+			scriptController.exec(() -> {
+				globals.stopTracking(changedGlobals);
+				return null;
+			});
+		});
 	}
 	
 	/**
@@ -111,15 +150,26 @@ public class WorksheetTabbedView implements TabbedView {
 	private void setExecuteFunctionName(String executeFunctionName) {
 		this.executeFunctionName = executeFunctionName;
 		
+		BiFunction<Engine, String, Object> engineFunction;
 		if(executeFunctionName == null || executeFunctionName.isEmpty()) {
-			this.executeFunction = scriptController::eval;
+			engineFunction = ScriptController::evalSync;
 		} else {
 			if(executeFunctionName.contains("_")) {
-				this.executeFunction = command -> scriptController.eval(executeFunctionName.replace("_", command));	
+				engineFunction = (engine, command) -> ScriptController.evalSync(engine, executeFunctionName.replace("_", command));	
 			} else {
-				this.executeFunction = command -> scriptController.evalMethodCall(executeFunctionName, Arrays.asList(command));
+				engineFunction = (engine, command) -> engine.evalMethodCall(executeFunctionName, Arrays.asList(command));
 			}
 		}
+		
+		this.engineFunction = engineFunction;
+		this.executeFunction = command -> engineFunction.apply(scriptController.getScriptSync(), command);
+	}
+	
+	/**
+	 * Returns whether evaluating a command stores its result in the _ variable.
+	 */
+	private boolean isResultVariableSet() {
+		return engineFunction != null && (executeFunctionName == null || executeFunctionName.isEmpty() || executeFunctionName.contains("_"));
 	}
 	
 	@Subscribe
@@ -128,12 +178,12 @@ public class WorksheetTabbedView implements TabbedView {
 	
 	@Subscribe
 	public void onMajorRefresh(MajorRefreshEvent event) {
-		refresh();
+		refresh(true);
 	}
 	
 	private Cell addPrompt(Cell cellBelow) {
 		final Cell cell = new Cell(cellsComposite, scrolledCellsComposite, resultRenderer, cellBelow);
-		cell.setExecuteFunction(command -> executeFunction.apply(command));
+		cell.setExecuteFunction(command -> evaluateRecorded(cell, command));
 		
 		cell.addNotifyCallbacks(() -> {
 			eventBus.post(new MinorRefreshEvent(this));
@@ -181,6 +231,7 @@ public class WorksheetTabbedView implements TabbedView {
 				if(cells.size() > 1) {
 					int index = cells.indexOf(cell);
 					cells.remove(index);
+					dependencies.remove(cell);
 					index = Math.max(0, index - 1);
 					cell.dispose();
 					pack();
@@ -202,7 +253,7 @@ public class WorksheetTabbedView implements TabbedView {
 		
 		cell.addRunAllCallback(new Runnable() {
 			public void run() {
-				refresh();
+				refresh(true);
 				eventBus.post(new MinorRefreshEvent(this));
 			}
 		});
@@ -239,21 +290,296 @@ public class WorksheetTabbedView implements TabbedView {
 		}
 	}
 	
-	private void refresh() {
-		// Run evaluate on all cells, and post minor refresh event when all have been evaluated.
-		Display.getDefault().asyncExec(new Runnable() {
-			int count = cells.size();
+	/**
+	 * Evaluates command for cell on the script thread, recording the globals it reads and writes. Reuses the cached
+	 * result if result caching is enabled and the globals the cell read last time haven't changed.
+	 */
+	private ScriptFuture<Object> evaluateRecorded(Cell cell, String command) {
+		GlobalBindings globals = scriptController.getGlobalsSync();
+		GlobalBindings.Access access = new GlobalBindings.Access();
+		CellResultCache resultCache = cell.isBypassCache() ? null : this.resultCache;
+		boolean pinned = cell.isPinCache();
+		Set<String> previousReads = (resultCache == null) ? null : dependencies.getReads(cell, command);
+		AtomicBoolean cacheHit = new AtomicBoolean(false);
+		Set<String> changedKeys = new HashSet<>();
+		boolean resultVariableSet = isResultVariableSet();
+		
+		ScriptFuture<Object> result = scriptController.exec(() -> {
+			ToLongFunction<String> versions = scriptController::getGlobalVersionSync;
+			if(previousReads != null) {
+				CellResultCache.CachedResult cachedResult = resultCache.get(command, previousReads, versions);
+				if(cachedResult != null) {
+					cacheHit.set(true);
+					access.getReads().addAll(previousReads);
+					globals.startRecording(access);
+					globals.putAll(cachedResult.getWrites());
+					globals.stopRecording(access);
+					changedKeys.addAll(access.getWrites());
+					if(resultVariableSet) {
+						scriptController.getScriptSync().setVariable(ScriptController.RESULT_VARIABLE, cachedResult.getValue());
+					}
+					scriptController.writeOutputSync(cachedResult.getOutput(), cachedResult.getError());
+					return cachedResult.getValue();
+				}
+			}
 			
-			public void run() {
-				for(Cell cell:cells) {
-					cell.evaluate(() -> {
-						if(--count == 0) {
-							eventBus.post(new MinorRefreshEvent(this));
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			ByteArrayOutputStream error = new ByteArrayOutputStream();
+			Object value;
+			globals.startRecording(access);
+			try {
+				value = scriptController.captureOutputSync(() -> executeFunction.apply(command), output, error);
+			} finally {
+				globals.stopRecording(access);
+				
+				// The objects read by the cell may have been modified in place, as well as the globals it wrote.
+				changedKeys.addAll(access.getWrites());
+				changedKeys.addAll(scriptController.getModifiableKeysSync(access.getReads()));
+				changedKeys.addAll(scriptController.getModifiableKeysSync(access.getPossibleReads()));
+			}
+			
+			// Only cache the result if it didn't read any globals that aren't part of the key. The versions are taken
+			// after counting the globals used by the cell, which may have modified the objects it read.
+			if(previousReads != null && previousReads.containsAll(access.getReads())) {
+				scriptController.countChangesSync();
+				Map<String, Object> writtenValues = CellResultCache.getWrittenValues(access.getWrites(), globals);
+				resultCache.put(command, previousReads, versions, new CellResultCache.CachedResult(value, writtenValues, output.toByteArray(), error.toByteArray()), pinned);
+			}
+			return value;
+		});
+		
+		result.thenAcceptAlways(SwtUtil.displayExecutor(), value -> {
+			dependencies.update(cell, command, access.getReads(), access.getWrites(), access.getBlindWrites());
+			if(resultCache != null) {
+				cell.addCacheResult(cacheHit.get());
+			}
+			Consumer<Set<String>> recordedCallback = recordedCallbacks.remove(cell);
+			if(recordedCallback != null) {
+				recordedCallback.accept(changedKeys);
+			}
+		});
+		
+		return result;
+	}
+	
+	/**
+	 * Evaluates the cells that need it, or every cell if all is set, and posts a minor refresh event when all have been
+	 * evaluated. Every cell is evaluated for a full refresh, as engines may keep functions and classes outside the globals.
+	 */
+	private void refresh(boolean all) {
+		scriptController.exec(() -> {
+			Set<String> externalChanges = new HashSet<>(changedGlobals);
+			changedGlobals.clear();
+			return externalChanges;
+		}).thenAccept(SwtUtil.displayExecutor(), externalChanges -> {
+			new Recomputation(externalChanges, all).evaluateFrom(0);
+		});
+	}
+	
+	/**
+	 * Evaluates the cells in order that need to be evaluated, adding the globals each writes, or reads while they hold
+	 * an object that may be modified in place, to the changes that later cells are checked against. When running in parallel, consecutive cells that didn't read or write the
+	 * globals written by each other last time are evaluated together, with their changes merged back in order. A cell
+	 * that fails on a worker engine is evaluated again on the script thread, as it may use a class or function that
+	 * was only defined in the script engine.
+	 */
+	private class Recomputation {
+		private final Set<String> externalChanges;
+		private final boolean all;
+		private final Set<String> changes = new HashSet<>();
+		private final Set<Cell> forced = new HashSet<>();
+		private int pending = 1;
+		
+		public Recomputation(Set<String> externalChanges, boolean all) {
+			this.externalChanges = externalChanges;
+			this.all = all;
+		}
+		
+		public void evaluateFrom(int index) {
+			for(; index < cells.size(); index++) {
+				Cell cell = cells.get(index);
+				String command = cell.getCommand();
+				boolean forcedCell = forced.remove(cell);
+				if(forcedCell || needsEvaluation(cell, command)) {
+					if(command.trim().isEmpty()) {
+						cell.evaluate(() -> {});
+						dependencies.update(cell, command, new HashSet<>(), new HashSet<>());
+					} else {
+						List<Integer> independentCells = getIndependentCells(index);
+						if(independentCells.size() > 1) {
+							evaluateParallel(independentCells);
+							return;
 						}
-					});
+						
+						// Continue once the globals written by the cell are known.
+						int next = index + 1;
+						recordedCallbacks.put(cell, changedKeys -> {
+							changes.addAll(changedKeys);
+							evaluateFrom(next);
+						});
+						pending++;
+						cell.evaluate(this::done);
+						return;
+					}
 				}
 			}
-		});
+			
+			finish();
+		}
+		
+		private boolean needsEvaluation(Cell cell, String command) {
+			return all || dependencies.needsEvaluation(cell, command, externalChanges, changes);
+		}
+		
+		/**
+		 * Returns the indexes of the cells from index that need to be evaluated and that can be evaluated in parallel, based
+		 * on the globals they read and wrote last time. Returns an empty list if the cell at index can't be run in parallel.
+		 */
+		private List<Integer> getIndependentCells(int index) {
+			if(!parallel || engineFunction == null || !scriptController.isParallelSupported()) {
+				return Collections.emptyList();
+			}
+			
+			List<Integer> independentCells = new ArrayList<>();
+			Set<String> reads = new HashSet<>();
+			Set<String> writes = new HashSet<>();
+			
+			for(; index < cells.size(); index++) {
+				Cell cell = cells.get(index);
+				String command = cell.getCommand();
+				Set<String> cellReads = dependencies.getReads(cell, command);
+				
+				if(forced.contains(cell) || command.trim().isEmpty() || cellReads == null) {
+					break;
+				}
+				
+				if(independentCells.isEmpty() || needsEvaluation(cell, command)) {
+					if(!dependencies.isIndependent(cell, command, reads, writes)) {
+						break;
+					}
+					independentCells.add(index);
+					reads.addAll(cellReads);
+					writes.addAll(dependencies.getWrites(cell));
+				} else if(!Collections.disjoint(cellReads, writes)) {
+					// A skipped cell might need to be evaluated after the cells before it.
+					break;
+				}
+			}
+			
+			return independentCells;
+		}
+		
+		/**
+		 * Evaluates the cells at indexes in parallel, up to the first cell that uses an object in a global that an earlier
+		 * cell also uses, as the objects are shared between the copies of the globals. Then continues from the first cell
+		 * that wasn't evaluated or whose result was discarded, or otherwise from the cell after the last one.
+		 */
+		private void evaluateParallel(List<Integer> indexes) {
+			List<Cell> parallelCells = new ArrayList<>();
+			List<String> commands = new ArrayList<>();
+			List<Set<String>> cellReads = new ArrayList<>();
+			List<ScriptFuture<Object>> futures = new ArrayList<>();
+			List<Function<Engine, Object>> tasks = new ArrayList<>();
+			List<Set<String>> mergedChanges = new ArrayList<>();
+			BiFunction<Engine, String, Object> engineFunction = WorksheetTabbedView.this.engineFunction;
+			
+			for(int index:indexes) {
+				Cell cell = cells.get(index);
+				String command = cell.getCommand();
+				ScriptFuture<Object> future = new ScriptFuture<>(scriptController);
+				
+				parallelCells.add(cell);
+				commands.add(command);
+				cellReads.add(new HashSet<>(dependencies.getReads(cell, command)));
+				futures.add(future);
+				tasks.add(engine -> engineFunction.apply(engine, command));
+				
+				pending++;
+				cell.evaluate(future, this::done);
+			}
+			
+			scriptController.exec(() -> {
+				List<ParallelResult> results = scriptController.evalParallelSync(tasks.subList(0, getUnsharedCount(cellReads)));
+				
+				// Merge in worksheet order, stopping at a cell that read a global that an earlier cell wrote, or that failed,
+				// as it may have used a class or function that is only defined in the script engine.
+				List<ParallelResult> mergedResults = new ArrayList<>();
+				Set<String> writes = new HashSet<>();
+				for(ParallelResult result:results) {
+					if(result.getException() != null || !Collections.disjoint(result.getReads(), writes)) {
+						break;
+					}
+					Set<String> changedKeys = new HashSet<>(result.getWrites());
+					changedKeys.addAll(scriptController.getModifiableKeysSync(result.getReads()));
+					changedKeys.addAll(scriptController.getModifiableKeysSync(result.getPossibleReads()));
+					mergedChanges.add(changedKeys);
+					scriptController.mergeSync(result);
+					writes.addAll(result.getWrites());
+					mergedResults.add(result);
+				}
+				return mergedResults;
+			}).thenAcceptAlways(SwtUtil.displayExecutor(), value -> {
+				if(value instanceof Throwable) {
+					futures.forEach(future -> future.completeExceptionally((Throwable) value));
+					finish();
+					return;
+				}
+				
+				@SuppressWarnings("unchecked")
+				List<ParallelResult> mergedResults = (List<ParallelResult>) value;
+				for(int i = 0; i < parallelCells.size(); i++) {
+					Cell cell = parallelCells.get(i);
+					if(i < mergedResults.size()) {
+						ParallelResult result = mergedResults.get(i);
+						dependencies.update(cell, commands.get(i), result.getReads(), result.getWrites(), result.getBlindWrites());
+						changes.addAll(mergedChanges.get(i));
+						futures.get(i).complete(result.getValue());
+					} else {
+						// Evaluate again after the earlier cells.
+						forced.add(cell);
+						done();
+					}
+				}
+				
+				if(mergedResults.size() < parallelCells.size()) {
+					evaluateFrom(indexes.get(mergedResults.size()));
+				} else {
+					evaluateFrom(indexes.get(indexes.size() - 1) + 1);
+				}
+			});
+		}
+		
+		/**
+		 * Returns the number of cells from the start that don't read a global holding a mutable object that an earlier
+		 * one reads, given the globals each cell read last time. At least one cell is always included.
+		 */
+		private int getUnsharedCount(List<Set<String>> cellReads) {
+			Set<String> reads = new HashSet<>();
+			for(int i = 0; i < cellReads.size(); i++) {
+				Set<String> modifiableReads = scriptController.getModifiableKeysSync(cellReads.get(i));
+				if(i > 0 && !Collections.disjoint(modifiableReads, reads)) {
+					return i;
+				}
+				reads.addAll(modifiableReads);
+			}
+			return cellReads.size();
+		}
+		
+		private void finish() {
+			// Ignore the changes made while running the worksheet.
+			scriptController.exec(() -> {
+				changedGlobals.clear();
+				return null;
+			});
+			
+			done();
+		}
+		
+		private void done() {
+			if(--pending == 0) {
+				eventBus.post(new MinorRefreshEvent(WorksheetTabbedView.this));
+			}
+		}
 	}
 	
 	private void selectLast() {
@@ -278,6 +604,7 @@ public class WorksheetTabbedView implements TabbedView {
 			cell.dispose();
 		}
 		cells.clear();
+		dependencies.clear();
 	}
 
 	public void serialize(Element element) {
@@ -287,9 +614,27 @@ public class WorksheetTabbedView implements TabbedView {
 			element.addContent(executeFunctionNameElement);
 		}
 		
+		if(resultCache != null) {
+			Element cacheResultsElement = new Element("CacheResults");
+			cacheResultsElement.setText("true");
+			element.addContent(cacheResultsElement);
+		}
+		
+		if(parallel) {
+			Element parallelElement = new Element("Parallel");
+			parallelElement.setText("true");
+			element.addContent(parallelElement);
+		}
+		
 		for(Cell cell:cells) {
 			Element command = new Element("Command");
 			command.setText(cell.getCommand());
+			if(cell.isBypassCache()) {
+				command.setAttribute("bypassCache", "true");
+			}
+			if(cell.isPinCache()) {
+				command.setAttribute("pinCache", "true");
+			}
 			element.addContent(command);
 		}
 	}
@@ -298,10 +643,14 @@ public class WorksheetTabbedView implements TabbedView {
 		clear();
 		
 		setExecuteFunctionName(element.getChildText("ExecuteFunctionName"));
+		resultCache = Boolean.parseBoolean(element.getChildText("CacheResults")) ? new CellResultCache() : null;
+		parallel = Boolean.parseBoolean(element.getChildText("Parallel"));
 		
 		for(Element command:element.getChildren("Command")) {
 			Cell cell = addPrompt(null);
 			cell.setCommand(command.getText());
+			cell.setBypassCache(Boolean.parseBoolean(command.getAttributeValue("bypassCache")));
+			cell.setPinCache(Boolean.parseBoolean(command.getAttributeValue("pinCache")));
 		}
 	}
 	
@@ -315,6 +664,25 @@ public class WorksheetTabbedView implements TabbedView {
 			}
 		});
 		
+		MenuItem cacheResultsItem = new MenuItem(menu, SWT.CHECK);
+		cacheResultsItem.setText("Cache Results");
+		cacheResultsItem.setSelection(resultCache != null);
+		cacheResultsItem.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent event) {
+				resultCache = cacheResultsItem.getSelection() ? new CellResultCache() : null;
+			}
+		});
+		
+		MenuItem parallelItem = new MenuItem(menu, SWT.CHECK);
+		parallelItem.setText("Run Independent Cells in Parallel");
+		parallelItem.setSelection(parallel);
+		parallelItem.setEnabled(engineFunction != null);
+		parallelItem.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent event) {
+				parallel = parallelItem.getSelection();
+			}
+		});
+		
 		MenuItem setExecuteFunctionItem = new MenuItem(menu, SWT.NONE);
 		setExecuteFunctionItem.setText("Set Execute Function...");
 		setExecuteFunctionItem.addSelectionListener(new SelectionAdapter() {
@@ -1,179 +1,253 @@
 package workbook.view.ansi;
 
-import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import org.eclipse.swt.graphics.RGB;
 
 /**
- * A parser to extract the ansi styles from text.
- * Adapted from: https://gist.github.com/sporkmonger/113079.
+ * A streaming parser to extract the ansi styles from text. The parser is a state machine that reads each character once,
+ * keeping its state between calls so that escape sequences can be split across chunks of text. The text without the escape
+ * sequences is appended to an output buffer, and each run of text with the same style is passed to a consumer.
+ * Supports the SGR codes for text attributes, and the 16 color, 256 color and 24-bit color codes.
  */
 public class AnsiParser {
-	private Pattern controlSequencePattern = Pattern.compile("((\u009B|\u001B\\[)(\\d+;)*(\\d+)?[m])");
-	private RGB[] colorTable = new RGB[20];
-	
-	public AnsiParser() {
-		// normal colors
-		this.colorTable[0] = new RGB(0, 0, 0); // black
-		this.colorTable[1] = new RGB(150, 0, 0); // red
-		this.colorTable[2] = new RGB(0, 150, 0); // green
-		this.colorTable[3] = new RGB(150, 150, 0); // yellow
-		this.colorTable[4] = new RGB(0, 0, 150); // blue
-		this.colorTable[5] = new RGB(150, 0, 150); // magenta
-		this.colorTable[6] = new RGB(0, 150, 150); // cyan
-		this.colorTable[7] = new RGB(200, 200, 200); // white
-		this.colorTable[8] = null; // not used
-		this.colorTable[9] = null; // not used
-		// bright colors
-		this.colorTable[10] = new RGB(100, 100, 100); // black
-		this.colorTable[11] = new RGB(200, 0, 0); // red
-		this.colorTable[12] = new RGB(0, 200, 0); // green
-		this.colorTable[13] = new RGB(200, 200, 0); // yellow
-		this.colorTable[14] = new RGB(0, 0, 200); // blue
-		this.colorTable[15] = new RGB(200, 0, 200); // magenta
-		this.colorTable[16] = new RGB(0, 200, 200); // cyan
-		this.colorTable[17] = new RGB(200, 200, 200); // white
-		this.colorTable[18] = null; // not used
-		this.colorTable[19] = null; // not used
+	/**
+	 * Receives each run of text with the same style, as offsets into the output buffer.
+	 */
+	public interface StyleRunConsumer {
+		public void accept(int start, int length, AnsiStyle style);
 	}
 	
+	private static final char ESC = '\u001B';
+	private static final char CSI = '\u009B';
+	
+	private static final int STATE_TEXT = 0;
+	private static final int STATE_ESCAPE = 1;
+	private static final int STATE_CONTROL_SEQUENCE = 2;
+	
+	private static final int MAX_PARAMETERS = 32;
+	private static final int MAX_PARAMETER_VALUE = 100000;
+	
+	private static final RGB[] PALETTE = createPalette();
+	
+	private final int[] parameters = new int[MAX_PARAMETERS];
+	private int parameterCount = 0;
+	private int parameter = 0;
+	
+	private int state = STATE_TEXT;
+	private AnsiStyle style = new AnsiStyle();
+	
 	/**
-	 * Parses text and extracts ANSI escape sequences from it.
-	 * Returns the modified text and a list of styles to apply.
+	 * Parses a chunk of text, appending the text without escape sequences to output, and passing each run of styled text
+	 * to consumer. An escape sequence that isn't complete at the end of the text is continued in the next call.
 	 */
-	public ParseResult parseText(AnsiStyle lastStyle, String text) {
-		List<AnsiStyle> styles = new ArrayList<AnsiStyle>();
-		StringBuffer modified = new StringBuffer();
-
-		int removedCharacters = 0;
-		
-		AnsiStyle style = new AnsiStyle(lastStyle);
+	public void parse(CharSequence text, StringBuilder output, StyleRunConsumer consumer) {
+		int runStart = output.length();
 		
-		Matcher matcher = controlSequencePattern.matcher(text);
-		while(matcher.find()) {
-			matcher.appendReplacement(modified, "");
-			
-			String controlSequence = matcher.group();
-			
-			int[] codes = parseSequenceCodes(controlSequence);
-			
-			style = buildStyleRange(style, codes);
-			style.start = matcher.start() - removedCharacters;
-			styles.add(new AnsiStyle(style));
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
 			
-			removedCharacters += controlSequence.length();
-		}
-		matcher.appendTail(modified);
-		
-		for(int i = 0; i < styles.size() - 1; i++) {
-			AnsiStyle thisRange = styles.get(i);
-			AnsiStyle nextRange = styles.get(i + 1);
-			thisRange.length = nextRange.start - thisRange.start;
-		}
-		
-		if(!styles.isEmpty()) {
-			AnsiStyle lastRange = styles.get(styles.size() - 1);
-			lastRange.length = text.length() - lastRange.start - removedCharacters;
+			if(state == STATE_TEXT) {
+				if(c == ESC) {
+					state = STATE_ESCAPE;
+				} else if(c == CSI) {
+					startControlSequence();
+				} else {
+					output.append(c);
+				}
+			} else if(state == STATE_ESCAPE) {
+				if(c == '[') {
+					startControlSequence();
+				} else if(c != ESC) {
+					// Ignore other escape sequences, keeping the character after the escape.
+					state = STATE_TEXT;
+					output.append(c);
+				}
+			} else if(c >= '0' && c <= '9') {
+				parameter = Math.min(parameter * 10 + (c - '0'), MAX_PARAMETER_VALUE);
+			} else if(c == ';' || c == ':') {
+				addParameter();
+			} else if(c >= 0x40 && c <= 0x7E) {
+				// A final byte ends the sequence, but only 'm' changes the style.
+				addParameter();
+				state = STATE_TEXT;
+				if(c == 'm') {
+					emitRun(output, runStart, consumer);
+					runStart = output.length();
+					style = applyCodes(style);
+				}
+			} else if(c < 0x20 || c > 0x3F) {
+				// An invalid character cancels the sequence.
+				state = STATE_TEXT;
+				output.append(c);
+			}
 		}
 		
-		return new ParseResult(modified.toString(), styles);
+		emitRun(output, runStart, consumer);
+	}
+	
+	/**
+	 * Clears the current style and any partial escape sequence.
+	 */
+	public void reset() {
+		state = STATE_TEXT;
+		style = new AnsiStyle();
+	}
+	
+	public AnsiStyle getStyle() {
+		return style;
 	}
 	
-	private int[] parseSequenceCodes(String controlSequence) {
-		String codeSequence = null;
-		if (controlSequence.charAt(0) == '\u009B') {
-			codeSequence = controlSequence.substring(1, controlSequence.length() - 1);
-		} else if (controlSequence.charAt(0) == '\u001B') {
-			codeSequence = controlSequence.substring(2, controlSequence.length() - 1);
-		} else {
-			throw new RuntimeException("Invalid ANSI control sequence: '" + controlSequence + "'");
+	private void emitRun(StringBuilder output, int runStart, StyleRunConsumer consumer) {
+		if(output.length() > runStart) {
+			consumer.accept(runStart, output.length() - runStart, style);
 		}
-		String[] codeStrings = codeSequence.toString().split(";");
-		if (codeStrings.length == 0) {
-			return new int[] { 0 };
-		} else {
-			int[] codes = new int[codeStrings.length];
-			for (int i = 0; i < codeStrings.length; i++) {
-				if (codeStrings[i].equals("")) {
-					codes[i] = 0;
-				} else {
-					codes[i] = Integer.parseInt(codeStrings[i]);
-				}
-			}
-			return codes;
+	}
+	
+	private void startControlSequence() {
+		state = STATE_CONTROL_SEQUENCE;
+		parameterCount = 0;
+		parameter = 0;
+	}
+	
+	private void addParameter() {
+		if(parameterCount < MAX_PARAMETERS) {
+			parameters[parameterCount++] = parameter;
 		}
+		parameter = 0;
 	}
 	
-	private AnsiStyle buildStyleRange(AnsiStyle lastStyle, int[] codes) {
-		AnsiStyle newStyleRange = new AnsiStyle(lastStyle);
+	/**
+	 * Returns a new style with the SGR codes in the parameters applied to lastStyle.
+	 */
+	private AnsiStyle applyCodes(AnsiStyle lastStyle) {
+		AnsiStyle style = new AnsiStyle(lastStyle);
+		RGB color;
 		
-		for (int i = 0; i < codes.length; i++) {
-			RGB tempColor = null;
-			switch (codes[i]) {
+		for(int i = 0; i < parameterCount; i++) {
+			int code = parameters[i];
+			switch(code) {
 			case 0:
-				newStyleRange.foreground = null;
-				newStyleRange.background = null;
-				newStyleRange.bold = false;
-				newStyleRange.underline = false;
-				newStyleRange.doubleUnderline = false;
+				style.foreground = null;
+				style.background = null;
+				style.bold = false;
+				style.italic = false;
+				style.underline = false;
+				style.doubleUnderline = false;
 				break;
 			case 1:
-				newStyleRange.bold = true;
+				style.bold = true;
 				break;
 			case 2:
-				// It's actually supposed to be faint, but there's no way to
-				// display that
-				newStyleRange.bold = false;
-				newStyleRange.italic = false;
+				// Faint can't be displayed, so use normal intensity.
+				style.bold = false;
 				break;
 			case 3:
-				newStyleRange.italic = true;
+				style.italic = true;
 				break;
 			case 4:
-				newStyleRange.underline = true;
-				newStyleRange.doubleUnderline = false;
+				style.underline = true;
+				style.doubleUnderline = false;
 				break;
 			case 7:
-				// Swap foreground and background
-				tempColor = newStyleRange.foreground;
-				newStyleRange.foreground = newStyleRange.background;
-				newStyleRange.background = tempColor;
+			case 27:
+				// Swap foreground and background.
+				color = style.foreground;
+				style.foreground = style.background;
+				style.background = color;
 				break;
 			case 21:
-				newStyleRange.underline = true;
-				newStyleRange.doubleUnderline = true;
+				style.underline = true;
+				style.doubleUnderline = true;
 				break;
 			case 22:
-				newStyleRange.bold = false;
-				newStyleRange.italic = false;
+				style.bold = false;
+				break;
+			case 23:
+				style.italic = false;
 				break;
 			case 24:
-				newStyleRange.underline = false;
-				newStyleRange.doubleUnderline = false;
+				style.underline = false;
+				style.doubleUnderline = false;
 				break;
-			case 27:
-				// Technically, this should just unset reversed foreground, but
-				// we're
-				// just going to reverse again
-				tempColor = newStyleRange.foreground;
-				newStyleRange.foreground = newStyleRange.background;
-				newStyleRange.background = tempColor;
+			case 38:
+			case 48:
+				color = null;
+				if(i + 2 < parameterCount && parameters[i + 1] == 5) {
+					color = PALETTE[Math.min(parameters[i + 2], 255)];
+					i += 2;
+				} else if(i + 4 < parameterCount && parameters[i + 1] == 2) {
+					color = new RGB(Math.min(parameters[i + 2], 255), Math.min(parameters[i + 3], 255), Math.min(parameters[i + 4], 255));
+					i += 4;
+				} else {
+					i = parameterCount;
+				}
+				if(code == 38) {
+					style.foreground = color;
+				} else {
+					style.background = color;
+				}
+				break;
+			case 39:
+				style.foreground = null;
+				break;
+			case 49:
+				style.background = null;
 				break;
 			default:
-				if (codes[i] >= 30 && codes[i] < 40) {
-					newStyleRange.foreground = colorTable[codes[i] - 30];
-				} else if (codes[i] >= 40 && codes[i] < 50) {
-					newStyleRange.background = colorTable[codes[i] - 40];
-				} else if (codes[i] >= 90 && codes[i] < 100) {
-					newStyleRange.foreground = colorTable[codes[i] - 90 + 10];
-				} else if (codes[i] >= 100 && codes[i] < 110) {
-					newStyleRange.background = colorTable[codes[i] - 100 + 10];
+				if(code >= 30 && code <= 37) {
+					style.foreground = PALETTE[code - 30];
+				} else if(code >= 40 && code <= 47) {
+					style.background = PALETTE[code - 40];
+				} else if(code >= 90 && code <= 97) {
+					style.foreground = PALETTE[code - 90 + 8];
+				} else if(code >= 100 && code <= 107) {
+					style.background = PALETTE[code - 100 + 8];
 				}
 				break;
 			}
 		}
-		return newStyleRange;
+		
+		return style;
+	}
+	
+	/**
+	 * Returns the 256 color palette: 16 normal and bright colors, a 6x6x6 color cube, and 24 shades of gray.
+	 */
+	private static RGB[] createPalette() {
+		RGB[] palette = new RGB[256];
+		
+		// Normal colors
+		palette[0] = new RGB(0, 0, 0);
+		palette[1] = new RGB(150, 0, 0);
+		palette[2] = new RGB(0, 150, 0);
+		palette[3] = new RGB(150, 150, 0);
+		palette[4] = new RGB(0, 0, 150);
+		palette[5] = new RGB(150, 0, 150);
+		palette[6] = new RGB(0, 150, 150);
+		palette[7] = new RGB(200, 200, 200);
+		
+		// Bright colors
+		palette[8] = new RGB(100, 100, 100);
+		palette[9] = new RGB(200, 0, 0);
+		palette[10] = new RGB(0, 200, 0);
+		palette[11] = new RGB(200, 200, 0);
+		palette[12] = new RGB(0, 0, 200);
+		palette[13] = new RGB(200, 0, 200);
+		palette[14] = new RGB(0, 200, 200);
+		palette[15] = new RGB(200, 200, 200);
+		
+		for(int i = 0; i < 216; i++) {
+			palette[16 + i] = new RGB(getCubeLevel(i / 36), getCubeLevel((i / 6) % 6), getCubeLevel(i % 6));
+		}
+		
+		for(int i = 0; i < 24; i++) {
+			int level = 8 + i * 10;
+			palette[232 + i] = new RGB(level, level, level);
+		}
+		
+		return palette;
+	}
+	
+	private static int getCubeLevel(int index) {
+		return (index == 0) ? 0 : 55 + index * 40;
 	}
 }
@@ -3,6 +3,8 @@ package workbook.view.canvas;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.SashForm;
@@ -27,9 +29,9 @@ import workbook.event.MajorRefreshEvent;
 import workbook.event.MinorRefreshEvent;
 import workbook.event.ScriptTypeChangeEvent;
 import workbook.model.Model;
+import workbook.script.GlobalObserver;
 import workbook.script.NameAndProperties;
 import workbook.script.ScriptController;
-import workbook.script.ScriptFuture;
 import workbook.view.TabbedView;
 import workbook.view.text.EditorText;
 
@@ -148,11 +150,16 @@ public class CanvasTabbedView implements TabbedView {
 	private final Model model;
 	
 	private final List<CanvasView> canvasViews = new ArrayList<>();
+	private final GlobalObserver observer;
+	
+	// The script text that was last evaluated, or null to evaluate it again on the next refresh.
+	private String refreshedText = null;
 	
 	public CanvasTabbedView(Composite parent, EventBus eventBus, ScriptController scriptController, Model model) {
 		folder = new TabFolder(parent, SWT.BOTTOM);
 		this.scriptController = scriptController;
 		this.model = model;
+		this.observer = new GlobalObserver(scriptController);
 		
 		TabItem designTab = new TabItem(folder, SWT.NONE);
 		designTab.setText("Design");
@@ -195,12 +202,13 @@ public class CanvasTabbedView implements TabbedView {
 	@Subscribe
 	public void onScriptTypeChange(ScriptTypeChangeEvent event) {
 		refreshBrush();
+		Display.getDefault().asyncExec(() -> refreshedText = null);
 	}
 	
 	@Subscribe
 	public void onMinorRefresh(MinorRefreshEvent event) {
 		if(event.getSource() != this) {
-			refresh();
+			refresh(false);
 		}
 	}
 	
@@ -214,10 +222,26 @@ public class CanvasTabbedView implements TabbedView {
 	}
 	
 	public void refresh() {
+		refresh(true);
+	}
+	
+	/**
+	 * Evaluates the script to draw the canvas items. Unless force is set, this is skipped if neither the script nor the
+	 * globals that it read have changed.
+	 */
+	private void refresh(boolean force) {
 		Display.getDefault().asyncExec(() -> {
+			String text = editorText.getText();
 			List<String> callbackNames = Arrays.asList("rect", "ellipse", "fill", "circle", "line", "text");
-			ScriptFuture<List<NameAndProperties>> result = scriptController.evalWithCallbackFunctions(editorText.getText(), callbackNames);
-			result.thenAccept(values -> canvasViews.forEach(canvasView -> canvasView.setCanvasItems(values)));
+			Callable<List<NameAndProperties>> evaluate = () -> scriptController.getScriptSync().evalWithCallbackFunctions(text, callbackNames);
+			Consumer<List<NameAndProperties>> callback = values -> canvasViews.forEach(canvasView -> canvasView.setCanvasItems(values));
+			
+			if(force || !text.equals(refreshedText)) {
+				observer.read(evaluate, callback);
+			} else {
+				observer.readIfChanged(evaluate, callback);
+			}
+			refreshedText = text;
 		});
 	}
 
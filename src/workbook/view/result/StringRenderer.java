@@ -17,6 +17,7 @@ import org.eclipse.swt.widgets.ScrollBar;
 import com.google.common.base.Throwables;
 
 import workbook.script.ScriptController;
+import workbook.script.ScriptPriority;
 import workbook.view.FontList;
 import workbook.view.canvas.ColorCache;
 
@@ -35,7 +36,7 @@ public class StringRenderer implements ResultRenderer {
 	}
 	
 	public void addView(Composite parent, Object value, boolean changed, Runnable callback) {
-		scriptController.exec(() -> {
+		scriptController.exec(ScriptPriority.BACKGROUND, () -> {
 			String valueString;
 			boolean red;
 			
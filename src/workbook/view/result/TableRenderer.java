@@ -1,31 +1,26 @@
 package workbook.view.result;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Collection;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.ControlAdapter;
 import org.eclipse.swt.events.ControlEvent;
-import org.eclipse.swt.events.SelectionAdapter;
-import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Display;
-import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
-import org.eclipse.swt.widgets.TableItem;
 
 import workbook.editor.ScriptTableUtil;
-import workbook.editor.reference.Reference;
+import workbook.editor.TableLoader;
 import workbook.editor.ui.TableSorter;
+import workbook.editor.ui.VirtualTable;
 import workbook.script.Engine;
 import workbook.script.ScriptController;
-import workbook.util.TypeUtil;
+import workbook.script.ScriptPriority;
 
 /**
- * Renders any result that is a List of Maps as a table.
+ * Renders any iterable result whose first rows are Maps as a table. Iterables that may only be read once, such as
+ * streams or database cursors, are always rendered as a table, as they can't be passed on once they have been read.
  */
 public class TableRenderer implements ResultRenderer {
 	private final ResultRenderer next;
@@ -37,22 +32,22 @@ public class TableRenderer implements ResultRenderer {
 	}
 	
 	public void addView(Composite parent, Object value, boolean changed, Runnable callback) {
-		scriptController.exec(() -> {
+		scriptController.exec(ScriptPriority.BACKGROUND, () -> {
 			ScriptTableUtil scriptTableUtil = new ScriptTableUtil(scriptController);
 			
 			Engine script = scriptController.getScriptSync();
 			
-			if(value != null) {
-				if(TypeUtil.isListOf(value, item -> item instanceof Map)) {
-					Map<String, List<Reference>> columns = scriptTableUtil.getTable(value);
-					
-					if(scriptTableUtil.isIterable(value)) {
-						if(!columns.isEmpty()) {
-							addTable(parent, value, callback);
-							return null;
-						}
-					}
+			if(value != null && scriptTableUtil.isIterable(value)) {
+				// Only the first chunk is checked, so that a large or lazy result isn't read in full to choose how to show it.
+				TableLoader loader = scriptTableUtil.getTableLoader(value);
+				loader.loadChunk();
+				
+				boolean tableRows = loader.isMapRows() && (loader.getModel().getColumnCount() > 0 || !loader.isDone());
+				if(tableRows || !isRereadable(value)) {
+					addTable(parent, loader, callback);
+					return null;
 				}
+				loader.close();
 			}
 			
 			next.addView(parent, value, changed, callback);
@@ -60,83 +55,34 @@ public class TableRenderer implements ResultRenderer {
 		});
 	}
 
-	private void addTable(Composite parent, Object value, Runnable callback) {
-		Map<String, List<Reference>> columns = new ScriptTableUtil(scriptController).getTable(value);
-		
+	/**
+	 * Returns whether an iterable result can be iterated again, unlike a one-shot Iterable.
+	 */
+	private static boolean isRereadable(Object value) {
+		return (value instanceof Collection || !(value instanceof Iterable));
+	}
+	
+	private void addTable(Composite parent, TableLoader loader, Runnable callback) {
 		Display.getDefault().asyncExec(() -> {
 			// Remove any existing results.
 			for(Control control:parent.getChildren()) {
 				control.dispose();
 			}
 			
-			Table table = new Table(parent, SWT.BORDER);
-			table.setHeaderVisible(true);
-			
-			List<TableItem> rows = new ArrayList<>();
+			VirtualTable virtualTable = new VirtualTable(parent, SWT.BORDER, scriptController);
+			virtualTable.setLoader(loader);
 			
-			Map<String, Integer> columnIndexes = new HashMap<>();
-			
-			// Add columns.
-			columns.forEach((name, values) -> {
-				TableColumn column = new TableColumn(table, SWT.NONE);
-				column.setText(name);
-				column.setWidth(100);
-				column.setMoveable(true);
-				
-				columnIndexes.put(name, columnIndexes.size());
-				
-				column.addSelectionListener(new SelectionAdapter() {
-					public void widgetDefaultSelected(SelectionEvent event) {
-						column.pack();
-					}
-				});
-				
+			for(TableColumn column:virtualTable.getTable().getColumns()) {
 				column.addControlListener(new ControlAdapter() {
 					public void controlResized(ControlEvent event) {
-						table.getParent().pack();
+						parent.pack();
 					}
 				});
-			});
-			
-			// Add table items with values.
-			columns.forEach((name, values) -> {
-				for(int i = 0; i < values.size(); i++) {
-					if(rows.size() <= i) {
-						rows.add(new TableItem(table, SWT.NONE));
-					}
-					
-					TableItem item = rows.get(i);
-					
-					Reference reference = values.get(i);
-					readItemValue(item, columnIndexes.get(name), reference);
-				}
-			});
-			
-			// Set references data for each row.
-			for(int i = 0; i < rows.size(); i++) {
-				List<Reference> references = new ArrayList<>();
-				for(List<Reference> values:columns.values()) {
-					references.add(values.get(i));
-				}
-				rows.get(i).setData(references);
 			}
 			
-			new TableSorter(table).addListeners();
+			new TableSorter(virtualTable).addListeners();
 				
 			callback.run();
 		});
 	}
-	
-	public void readItemValue(TableItem tableItem, int index, Reference reference) {
-		if(reference != null) {
-			reference.get().thenAccept(value -> {
-				String stringValue = String.valueOf(value);
-				tableItem.getDisplay().asyncExec(() -> {
-					if(!tableItem.isDisposed()) {
-						tableItem.setText(index, stringValue);
-					}
-				});
-			});
-		}
-	}
-}
+}
\ No newline at end of file
@@ -21,7 +21,7 @@ public class MainControllerTest {
 	public void before() {
 		mainController = new MainController(mock(EventBus.class), mock(Model.class));
 		scriptController = mainController.getScriptController();
-		mainController.registerEngine("Javascript", new JavascriptEngine());
+		mainController.registerEngine("Javascript", JavascriptEngine::new, true);
 		mainController.setEngine("Javascript");
 	}
 	
@@ -1,8 +1,8 @@
 package workbook.editor;
 
-import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -57,7 +57,7 @@ public class RubyScriptTableUtilTest {
 	}
 
 	private Map<String, List<String>> getTable(Object object) throws ScriptException, InterruptedException, ExecutionException {
-		ScriptFuture<Map<String, List<Reference>>> table = scriptController.exec(() -> {
+		ScriptFuture<TableModel> table = scriptController.exec(() -> {
 			return scriptTableUtil.getTable(object);
 		});
 		
@@ -210,12 +210,15 @@ public class RubyScriptTableUtilTest {
 		return scriptController.eval(expression).get();
 	}
 	
-	private static Map<String, List<String>> resolveReferences(Map<String, List<Reference>> map) {
+	private static Map<String, List<String>> resolveReferences(TableModel model) {
 		Map<String, List<String>> resolvedMap = new HashMap<>();
-		map.forEach((k, v) -> {
-			List<String> resolvedList = v.stream().map(RubyScriptTableUtilTest::resolveReference).collect(toList());
-			resolvedMap.put(k, resolvedList);
-		});
+		for(int column = 0; column < model.getColumnCount(); column++) {
+			List<String> resolvedList = new ArrayList<>();
+			for(int row = 0; row < model.getRowCount(); row++) {
+				resolvedList.add(resolveReference(model.getReference(row, column)));
+			}
+			resolvedMap.put(model.getColumnName(column), resolvedList);
+		}
 		return resolvedMap;
 	}
 	
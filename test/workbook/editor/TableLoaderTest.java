@@ -0,0 +1,130 @@
+package workbook.editor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import workbook.script.JavascriptEngine;
+import workbook.script.ScriptController;
+
+public class TableLoaderTest {
+	/**
+	 * An iterator over an unlimited number of rows that counts the rows read, and records whether it has been closed.
+	 */
+	private static class RowIterator implements Iterator<Object>, AutoCloseable {
+		private final int size;
+		private int count = 0;
+		private boolean closed = false;
+		
+		public RowIterator(int size) {
+			this.size = size;
+		}
+		
+		public boolean hasNext() {
+			return count < size;
+		}
+		
+		public Object next() {
+			return Collections.singletonMap("a", count++);
+		}
+		
+		public void close() {
+			closed = true;
+		}
+	}
+	
+	private ScriptController scriptController = new ScriptController();
+	
+	@Before
+	public void before() {
+		scriptController.startQueueThread();
+		scriptController.addEngine("Javascript", new JavascriptEngine());
+		scriptController.setScriptType("Javascript");
+	}
+	
+	@Test
+	public void loadChunk_readsOnlyChunk() throws Exception {
+		RowIterator iterator = new RowIterator(Integer.MAX_VALUE);
+		TableLoader loader = createLoader(iterator);
+		
+		assertTrue(exec(loader::loadChunk));
+		
+		int firstChunk = loader.getModel().getRowCount();
+		assertTrue(firstChunk > 0);
+		assertEquals(firstChunk, iterator.count);
+		assertEquals(firstChunk - 1, loader.getModel().getValue(firstChunk - 1, 0));
+		
+		// Later chunks are larger.
+		assertTrue(exec(loader::loadChunk));
+		assertTrue(loader.getModel().getRowCount() - firstChunk > firstChunk);
+		assertFalse(loader.isDone());
+	}
+	
+	@Test
+	public void loadRows_untilDone() throws Exception {
+		RowIterator iterator = new RowIterator(250);
+		TableLoader loader = createLoader(iterator);
+		
+		assertTrue(exec(() -> loader.loadRows(100)));
+		assertEquals(100, loader.getModel().getRowCount());
+		
+		assertFalse(exec(() -> loader.loadRows(1000)));
+		assertEquals(250, loader.getModel().getRowCount());
+		assertTrue(loader.isDone());
+		assertTrue(iterator.closed);
+	}
+	
+	@Test
+	public void close() throws Exception {
+		RowIterator iterator = new RowIterator(Integer.MAX_VALUE);
+		TableLoader loader = createLoader(iterator);
+		
+		exec(loader::loadChunk);
+		exec(() -> {
+			loader.close();
+			return null;
+		});
+		
+		assertTrue(loader.isDone());
+		assertTrue(iterator.closed);
+		assertFalse(exec(loader::loadChunk));
+	}
+	
+	@Test
+	public void getTableLoader_javaIterable() throws Exception {
+		ScriptTableUtil scriptTableUtil = new ScriptTableUtil(scriptController);
+		TableLoader loader = exec(() -> scriptTableUtil.getTableLoader(Collections.nCopies(1000000, Collections.singletonMap("a", 1))));
+		exec(loader::loadChunk);
+		
+		assertTrue(loader.getModel().getRowCount() < 1000000);
+		assertFalse(loader.isDone());
+	}
+	
+	@Test
+	public void isMapRows() throws Exception {
+		TableLoader mapLoader = createLoader(new RowIterator(10));
+		exec(mapLoader::loadChunk);
+		
+		TableLoader mixedLoader = createLoader(Arrays.asList(Collections.singletonMap("a", 1), "b").iterator());
+		exec(mixedLoader::loadChunk);
+		
+		assertTrue(mapLoader.isMapRows());
+		assertFalse(mixedLoader.isMapRows());
+	}
+	
+	private TableLoader createLoader(Iterator<?> iterator) throws Exception {
+		return exec(() -> new TableLoader(new TableModel(scriptController), scriptController.getScriptSync(), iterator));
+	}
+	
+	private <T> T exec(Callable<T> callable) throws Exception {
+		return scriptController.exec(callable).get();
+	}
+}
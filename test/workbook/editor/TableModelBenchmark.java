@@ -0,0 +1,66 @@
+package workbook.editor;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import workbook.script.JavascriptEngine;
+import workbook.script.ScriptController;
+
+/**
+ * Measures the time to build a table from lists of maps of increasing size, where some rows have extra keys, to show that
+ * the time per row stays the same as the number of rows grows.
+ */
+public class TableModelBenchmark {
+	private static final int[] ROWS = { 125000, 250000, 500000, 1000000 };
+	private static final int ITERATIONS = 3;
+	
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
+		// The script controller redirects System.out, so keep the original stream for the results.
+		PrintStream out = System.out;
+		
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		scriptController.addEngine("Javascript", new JavascriptEngine());
+		scriptController.setScriptType("Javascript");
+		
+		ScriptTableUtil scriptTableUtil = new ScriptTableUtil(scriptController);
+		
+		for(int i = 0; i < ITERATIONS; i++) {
+			for(int rows:ROWS) {
+				List<Map<String, Object>> values = createValues(rows);
+				
+				long millis = scriptController.exec(() -> {
+					long start = System.nanoTime();
+					scriptTableUtil.getTable(values);
+					return (System.nanoTime() - start) / 1000000;
+				}).get();
+				
+				out.println(String.format("%8d rows %6d ms %6d ns/row", rows, millis, millis * 1000000 / rows));
+			}
+		}
+		
+		System.exit(0);
+	}
+	
+	/**
+	 * Returns rows with a number, a double and a string, and an extra key in every hundredth row.
+	 */
+	private static List<Map<String, Object>> createValues(int count) {
+		List<Map<String, Object>> values = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			Map<String, Object> row = new LinkedHashMap<>();
+			row.put("id", i);
+			row.put("value", i * 0.5);
+			row.put("name", "row" + i);
+			if(i % 100 == 0) {
+				row.put("note", "extra " + i);
+			}
+			values.add(row);
+		}
+		return values;
+	}
+}
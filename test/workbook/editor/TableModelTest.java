@@ -0,0 +1,198 @@
+package workbook.editor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import workbook.editor.reference.Reference;
+import workbook.script.Engine;
+import workbook.script.JavascriptEngine;
+import workbook.script.ScriptController;
+
+public class TableModelTest {
+	public static class Bean {
+		private int count;
+		
+		public Bean(int count) {
+			this.count = count;
+		}
+		
+		public int getCount() {
+			return count;
+		}
+		
+		public void setCount(int count) {
+			this.count = count;
+		}
+	}
+	
+	private ScriptController scriptController = new ScriptController();
+	
+	@Before
+	public void before() {
+		scriptController.startQueueThread();
+		scriptController.addEngine("Javascript", new JavascriptEngine());
+		scriptController.setScriptType("Javascript");
+	}
+	
+	@Test
+	public void addRow_columnsInOrderOfFirstAppearance() {
+		TableModel model = createModel(Map("a", 1), Map("b", 2), Map("c", 3, "a", 4));
+		
+		assertEquals(3, model.getRowCount());
+		assertEquals(3, model.getColumnCount());
+		assertEquals("a", model.getColumnName(0));
+		assertEquals("b", model.getColumnName(1));
+		assertEquals("c", model.getColumnName(2));
+		assertEquals(4, model.getValue(2, 0));
+		assertNull(model.getValue(1, 0));
+	}
+	
+	@Test
+	public void getValue_keepsTypes() {
+		TableModel model = createModel(Map("i", 1, "l", 2L, "d", 1.5, "s", "x"), Map("i", 3, "l", 4L, "d", 2.5, "s", "y"));
+		
+		assertEquals(Integer.valueOf(3), model.getValue(1, 0));
+		assertEquals(Long.valueOf(4), model.getValue(1, 1));
+		assertEquals(Double.valueOf(2.5), model.getValue(1, 2));
+		assertEquals("y", model.getValue(1, 3));
+	}
+	
+	@Test
+	public void getValue_mixedTypes() {
+		TableModel model = createModel(Map("a", 1), Map("a", null), Map("a", "x"), Map("a", 2L), Map("a", 3));
+		
+		assertEquals(Integer.valueOf(1), model.getValue(0, 0));
+		assertNull(model.getValue(1, 0));
+		assertEquals("x", model.getValue(2, 0));
+		assertEquals(Long.valueOf(2), model.getValue(3, 0));
+		assertEquals(Integer.valueOf(3), model.getValue(4, 0));
+	}
+	
+	@Test
+	public void hasCell() {
+		TableModel model = createModel(Arrays.asList("a", "b"), Arrays.asList("c"), Map("x", 1));
+		
+		assertTrue(model.hasCell(0, 1));
+		assertFalse(model.hasCell(1, 1));
+		assertNull(model.getReference(1, 1));
+		
+		// Maps have a cell for every column, so that new keys can be added.
+		assertTrue(model.hasCell(2, 0));
+	}
+	
+	@Test
+	public void getReference_map() throws Exception {
+		Map<Object, Object> map = Map("a", 1);
+		TableModel model = createModel(map, Map("b", 2));
+		
+		Reference reference = model.getReference(0, 1);
+		reference.set("3").get();
+		
+		assertEquals(3, map.get("b"));
+	}
+	
+	@Test
+	public void getReference_list() throws Exception {
+		List<Object> list = Arrays.asList("a", "b");
+		TableModel model = createModel(list);
+		
+		model.getReference(0, 1).set("c").get();
+		
+		assertEquals("c", list.get(1));
+	}
+	
+	@Test
+	public void getReference_iterable() throws Exception {
+		TableModel model = createModel(new HashSet<>(Arrays.asList("a")));
+		
+		assertEquals("a", model.getReference(0, 0).get().get());
+	}
+	
+	@Test
+	public void getReference_javaObject() throws Exception {
+		Bean bean = new Bean(1);
+		TableModel model = createModel(bean);
+		
+		assertEquals("count", model.getColumnName(0));
+		assertEquals(1, model.getValue(0, 0));
+		
+		model.getReference(0, 0).set("5").get();
+		
+		assertEquals(5, bean.getCount());
+	}
+	
+	@Test
+	public void updateRow() throws Exception {
+		Map<Object, Object> map = Map("a", 1, "b", 2);
+		TableModel model = createModel(map, Map("a", 3));
+		
+		map.put("a", "x");
+		map.remove("b");
+		map.put("c", 4);
+		scriptController.exec(() -> {
+			model.updateRow(0);
+			return null;
+		}).get();
+		
+		assertEquals("x", model.getValue(0, 0));
+		assertNull(model.getValue(0, 1));
+		assertEquals(2, model.getColumnCount());
+		assertEquals(3, model.getValue(1, 0));
+	}
+	
+	@Test
+	public void emptyRows() {
+		TableModel model = createModel(null, null);
+		
+		assertEquals(2, model.getRowCount());
+		assertEquals(0, model.getColumnCount());
+	}
+	
+	@Test
+	public void manyRows() {
+		Object[] rows = new Object[1000];
+		for(int i = 0; i < rows.length; i++) {
+			rows[i] = Map("a", i, "b", i * 0.5);
+		}
+		
+		TableModel model = createModel(rows);
+		
+		assertEquals(1000, model.getRowCount());
+		assertEquals(999, model.getValue(999, 0));
+		assertEquals(499.5, model.getValue(999, 1));
+	}
+	
+	private TableModel createModel(Object... rows) {
+		try {
+			return scriptController.exec(() -> {
+				Engine script = scriptController.getScriptSync();
+				TableModel model = new TableModel(scriptController);
+				for(Object row:rows) {
+					model.addRow(script, row);
+				}
+				return model;
+			}).get();
+		} catch(Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static Map<Object, Object> Map(Object... values) {
+		Map<Object, Object> map = new LinkedHashMap<>();
+		for(int i = 0; i < values.length; i += 2) {
+			map.put(values[i], values[i + 1]);
+		}
+		return map;
+	}
+}
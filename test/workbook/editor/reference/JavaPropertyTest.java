@@ -0,0 +1,80 @@
+package workbook.editor.reference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class JavaPropertyTest {
+	public static class Bean {
+		private int count;
+		private boolean enabled;
+		
+		public int getCount() {
+			return count;
+		}
+		
+		public void setCount(int count) {
+			this.count = count;
+		}
+		
+		public boolean isEnabled() {
+			return enabled;
+		}
+		
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+		
+		public String getName() {
+			return "bean";
+		}
+		
+		public String getValue(int index) {
+			return null;
+		}
+	}
+	
+	@Test
+	public void getProperties() {
+		List<String> names = new ArrayList<>();
+		for(JavaProperty property:JavaProperty.getProperties(Bean.class)) {
+			names.add(property.getName());
+		}
+		
+		assertEquals(Arrays.asList("count", "name", "enabled"), names);
+	}
+	
+	@Test
+	public void getProperties_cachedForClass() {
+		assertSame(JavaProperty.getProperties(Bean.class), JavaProperty.getProperties(Bean.class));
+	}
+	
+	@Test
+	public void getAndSet() throws Exception {
+		Bean bean = new Bean();
+		List<JavaProperty> properties = JavaProperty.getProperties(Bean.class);
+		
+		properties.get(0).set(bean, 5);
+		properties.get(2).set(bean, true);
+		
+		assertEquals(5, properties.get(0).get(bean));
+		assertEquals(true, properties.get(2).get(bean));
+		assertEquals(int.class, properties.get(0).getSetType());
+	}
+	
+	@Test
+	public void readOnly() throws Exception {
+		JavaProperty property = JavaProperty.getProperties(Bean.class).get(1);
+		
+		property.set(new Bean(), "other");
+		
+		assertEquals("bean", property.get(new Bean()));
+		assertNull(property.getSetType());
+	}
+}
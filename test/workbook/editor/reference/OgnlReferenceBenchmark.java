@@ -0,0 +1,80 @@
+package workbook.editor.reference;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ognl.DefaultClassResolver;
+import ognl.DefaultMemberAccess;
+import ognl.DefaultTypeConverter;
+import ognl.Node;
+import ognl.Ognl;
+import ognl.OgnlContext;
+
+/**
+ * Compares the time to get and set a property path with OGNL when the expression is parsed each time, when the parsed
+ * expression and context are reused, and when the expression is compiled.
+ */
+public class OgnlReferenceBenchmark {
+	private static final String EXPRESSION = "bean.child.value";
+	private static final int OPERATIONS = 200000;
+	private static final int ITERATIONS = 5;
+	
+	public static class Bean {
+		private Bean child;
+		private int value;
+		
+		public Bean getChild() {
+			return child;
+		}
+		
+		public void setChild(Bean child) {
+			this.child = child;
+		}
+		
+		public int getValue() {
+			return value;
+		}
+		
+		public void setValue(int value) {
+			this.value = value;
+		}
+	}
+	
+	private interface Operation {
+		public void run(int i) throws Exception;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		Bean bean = new Bean();
+		bean.setChild(new Bean());
+		Map<String, Object> root = new HashMap<>();
+		root.put("bean", bean);
+		
+		OgnlContext context = createContext();
+		Node parsed = (Node) Ognl.parseExpression(EXPRESSION);
+		Node compiled = Ognl.compileExpression(createContext(), root, EXPRESSION);
+		
+		for(int i = 0; i < ITERATIONS; i++) {
+			run("Parsed each time get", i2 -> Ognl.getValue(Ognl.parseExpression(EXPRESSION), createContext(), root));
+			run("Parsed each time set", i2 -> Ognl.setValue(Ognl.parseExpression(EXPRESSION), createContext(), root, i2));
+			run("Interpreted get", i2 -> Ognl.getValue(parsed, context, root));
+			run("Interpreted set", i2 -> Ognl.setValue(parsed, context, root, i2));
+			run("Compiled get", i2 -> Ognl.getValue(compiled, context, root));
+			run("Compiled set", i2 -> Ognl.setValue(compiled, context, root, i2));
+			System.out.println();
+		}
+	}
+	
+	private static void run(String name, Operation operation) throws Exception {
+		long start = System.nanoTime();
+		for(int i = 0; i < OPERATIONS; i++) {
+			operation.run(i);
+		}
+		long nanos = System.nanoTime() - start;
+		System.out.println(String.format("%-22s %8.1f ns/op", name, (double) nanos / OPERATIONS));
+	}
+	
+	private static OgnlContext createContext() {
+		return new OgnlContext(new DefaultClassResolver(), new DefaultTypeConverter(), new DefaultMemberAccess(true));
+	}
+}
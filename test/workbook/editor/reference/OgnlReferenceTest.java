@@ -1,6 +1,9 @@
 package workbook.editor.reference;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -56,4 +59,71 @@ public class OgnlReferenceTest {
 		reference.set(3);
 		assertEquals(3, reference.get().get());
 	}
+	
+	public static class Bean {
+		private Object value;
+		
+		public Bean(Object value) {
+			this.value = value;
+		}
+		
+		public Object getValue() {
+			return value;
+		}
+		
+		public void setValue(Object value) {
+			this.value = value;
+		}
+	}
+	
+	public static class OtherBean {
+		public String getValue() {
+			return "other";
+		}
+	}
+	
+	@Test
+	public void getSetCompiled() throws Exception {
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		scriptController.addEngine("Javascript", new JavascriptEngine());
+		scriptController.setScriptType("Javascript");
+		scriptController.setVariable("compiledBean", new Bean(new Bean(1))).get();
+		
+		OgnlReference reference = new OgnlReference(scriptController, "compiledBean.value.value");
+		for(int i = 0; i < 20; i++) {
+			assertEquals(1, reference.get().get());
+		}
+		
+		assertTrue(OgnlReference.getCachedExpression("compiledBean.value.value").isCompiled());
+		
+		reference.set(2).get();
+		assertEquals(2, reference.get().get());
+		
+		// Falls back to interpreting the expression when the types change.
+		scriptController.setVariable("compiledBean", new Bean(new OtherBean())).get();
+		assertEquals("other", reference.get().get());
+		assertFalse(OgnlReference.getCachedExpression("compiledBean.value.value").isCompiled());
+	}
+	
+	@Test
+	public void methodCallNotCompiled() throws Exception {
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		scriptController.addEngine("Javascript", new JavascriptEngine());
+		scriptController.setScriptType("Javascript");
+		scriptController.setVariable("methodBean", new Bean("a")).get();
+		
+		OgnlReference reference = new OgnlReference(scriptController, "methodBean.getValue()");
+		for(int i = 0; i < 20; i++) {
+			assertEquals("a", reference.get().get());
+		}
+		
+		assertFalse(OgnlReference.getCachedExpression("methodBean.getValue()").isCompiled());
+	}
+	
+	@Test
+	public void sharedExpression() {
+		assertSame(OgnlReference.getCachedExpression("shared.a"), OgnlReference.getCachedExpression("shared.a"));
+	}
 }
@@ -0,0 +1,81 @@
+package workbook.editor.ui;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TableSorterTest {
+	@Test
+	public void getSortedOrder_numbers() {
+		List<Object> values = Arrays.asList(10, 2.5, null, -1L, 9);
+		
+		assertArrayEquals(new int[] { 3, 1, 4, 0, 2 }, TableSorter.getSortedOrder(values, true));
+		assertArrayEquals(new int[] { 2, 0, 4, 1, 3 }, TableSorter.getSortedOrder(values, false));
+	}
+	
+	@Test
+	public void getSortedOrder_longs() {
+		List<Object> values = Arrays.asList(Long.MAX_VALUE, null, Long.MAX_VALUE - 1, 1);
+		
+		assertArrayEquals(new int[] { 3, 2, 0, 1 }, TableSorter.getSortedOrder(values, true));
+		assertArrayEquals(new int[] { 1, 0, 2, 3 }, TableSorter.getSortedOrder(values, false));
+	}
+	
+	@Test
+	public void getSortedOrder_bigNumbers() {
+		BigDecimal large = new BigDecimal("1e400");
+		List<Object> values = Arrays.asList(large.add(BigDecimal.ONE), BigInteger.TEN, null, large, -3);
+		
+		assertArrayEquals(new int[] { 4, 1, 3, 0, 2 }, TableSorter.getSortedOrder(values, true));
+	}
+	
+	@Test
+	public void getSortedOrder_dates() {
+		List<Object> values = Arrays.asList(new Date(3000), new Date(1000), new Date(2000));
+		
+		assertArrayEquals(new int[] { 1, 2, 0 }, TableSorter.getSortedOrder(values, true));
+	}
+	
+	@Test
+	public void getSortedOrder_comparables() {
+		List<Object> values = Arrays.asList(LocalDate.of(2020, 1, 2), LocalDate.of(2019, 12, 31), LocalDate.of(2020, 1, 1));
+		
+		assertArrayEquals(new int[] { 1, 2, 0 }, TableSorter.getSortedOrder(values, true));
+	}
+	
+	@Test
+	public void getSortedOrder_strings() {
+		List<Object> values = Arrays.asList("a10", "a2", "b1", "a1");
+		
+		assertArrayEquals(new int[] { 3, 1, 0, 2 }, TableSorter.getSortedOrder(values, true));
+	}
+	
+	@Test
+	public void getSortedOrder_mixedTypes() {
+		List<Object> values = Arrays.asList("x10", 5, "x9");
+		
+		assertArrayEquals(new int[] { 1, 2, 0 }, TableSorter.getSortedOrder(values, true));
+	}
+	
+	@Test
+	public void getSortedOrder_parallelIsStable() {
+		List<Object> values = new ArrayList<>();
+		for(int i = 0; i < 50000; i++) {
+			values.add(i % 2);
+		}
+		
+		int[] order = TableSorter.getSortedOrder(values, true);
+		
+		for(int i = 0; i < 25000; i++) {
+			assertArrayEquals(new int[] { i * 2, i * 2 + 1 }, new int[] { order[i], order[i + 25000] });
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package workbook.script;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Globals that count the times all of their keys or values are read at once, to check that an engine doesn't
+ * iterate or copy the globals on each evaluation.
+ */
+public class CountingGlobalBindings extends GlobalBindings {
+	private int bulkReads = 0;
+	
+	public Set<String> keySet() {
+		bulkReads++;
+		return super.keySet();
+	}
+	
+	public Set<Map.Entry<String, Object>> entrySet() {
+		bulkReads++;
+		return super.entrySet();
+	}
+	
+	public Collection<Object> values() {
+		bulkReads++;
+		return super.values();
+	}
+	
+	public int getBulkReads() {
+		return bulkReads;
+	}
+	
+	public void resetBulkReads() {
+		bulkReads = 0;
+	}
+}
@@ -0,0 +1,73 @@
+package workbook.script;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import javax.script.Bindings;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class GlobalBindingsTest {
+	private final GlobalBindings globals = new GlobalBindings();
+	private final GlobalBindings.Access access = new GlobalBindings.Access();
+	
+	@Before
+	public void before() {
+		globals.put("a", 1);
+		globals.put("b", 2);
+	}
+	
+	@Test
+	public void createRecordingCopy_recordsKeysRead() {
+		Bindings copy = globals.createRecordingCopy();
+		
+		globals.startRecording(access);
+		assertEquals(1, copy.get("a"));
+		globals.stopRecording(access);
+		
+		assertEquals(Collections.singleton("a"), access.getPossibleReads());
+		assertTrue(access.getReads().isEmpty());
+	}
+	
+	@Test
+	public void createRecordingCopy_localKeys() {
+		Bindings copy = globals.createRecordingCopy();
+		copy.put("arguments", 3);
+		
+		globals.startRecording(access);
+		copy.get("arguments");
+		copy.put("a", 4);
+		copy.get("a");
+		globals.stopRecording(access);
+		
+		assertTrue(access.getPossibleReads().isEmpty());
+		assertEquals(1, globals.get("a"));
+	}
+	
+	@Test
+	public void createRecordingCopy_readAll() {
+		Bindings copy = globals.createRecordingCopy();
+		copy.put("arguments", 3);
+		
+		globals.startRecording(access);
+		copy.entrySet();
+		globals.stopRecording(access);
+		
+		assertEquals(new HashSet<>(Arrays.asList("a", "b")), access.getPossibleReads());
+	}
+	
+	@Test
+	public void isRecording() {
+		assertFalse(globals.isRecording());
+		globals.startRecording(access);
+		assertTrue(globals.isRecording());
+		globals.stopRecording(access);
+		assertFalse(globals.isRecording());
+	}
+}
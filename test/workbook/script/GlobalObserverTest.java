@@ -0,0 +1,125 @@
+package workbook.script;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import workbook.editor.reference.OgnlReference;
+
+public class GlobalObserverTest {
+	private ScriptController scriptController = new ScriptController();
+	private GlobalObserver observer = new GlobalObserver(scriptController);
+	
+	@Before
+	public void before() throws Exception {
+		scriptController.startQueueThread();
+		scriptController.addEngine("Javascript", new JavascriptEngine());
+		scriptController.setScriptType("Javascript");
+		scriptController.setVariable("x", 1).get();
+		scriptController.setVariable("y", 2).get();
+	}
+	
+	@Test
+	public void readIfChanged_firstRead() throws Exception {
+		List<Object> values = new ArrayList<>();
+		
+		assertTrue(observer.readIfChanged(() -> getGlobal("x"), values::add).get());
+		assertEquals(1, values.get(0));
+	}
+	
+	@Test
+	public void readIfChanged_unchanged() throws Exception {
+		readIfChanged("x");
+		
+		assertFalse(readIfChanged("x"));
+	}
+	
+	@Test
+	public void readIfChanged_written() throws Exception {
+		readIfChanged("x");
+		scriptController.setVariable("x", 3).get();
+		
+		List<Object> values = new ArrayList<>();
+		assertTrue(observer.readIfChanged(() -> getGlobal("x"), values::add).get());
+		assertEquals(3, values.get(0));
+	}
+	
+	@Test
+	public void readIfChanged_otherGlobalWritten() throws Exception {
+		readIfChanged("x");
+		scriptController.setVariable("y", 3).get();
+		
+		assertFalse(readIfChanged("x"));
+	}
+	
+	@Test
+	public void readIfChanged_readByInteractiveWork() throws Exception {
+		scriptController.setVariable("x", new ArrayList<>()).get();
+		readIfChanged("x");
+		
+		// The object in a global may be modified in place by the work that reads it.
+		scriptController.exec(() -> getGlobal("x")).get();
+		
+		assertTrue(readIfChanged("x"));
+	}
+	
+	@Test
+	public void readIfChanged_immutableReadByInteractiveWork() throws Exception {
+		readIfChanged("x");
+		scriptController.exec(() -> getGlobal("x")).get();
+		
+		assertFalse(readIfChanged("x"));
+	}
+	
+	@Test
+	public void readIfChanged_readByOtherObserver() throws Exception {
+		readIfChanged("x");
+		new GlobalObserver(scriptController).read(() -> getGlobal("x"), value -> {}).get();
+		
+		assertFalse(readIfChanged("x"));
+	}
+	
+	@Test
+	public void readIfChanged_engineVariableModified() throws Exception {
+		scriptController.eval("var list = new java.util.ArrayList()").get();
+		OgnlReference reference = new OgnlReference(scriptController, "list");
+		observer.readIfChanged(() -> reference.getSync(scriptController.getScriptSync()), value -> {}).get();
+		
+		assertFalse(observer.readIfChanged(() -> reference.getSync(scriptController.getScriptSync()), value -> {}).get());
+		
+		scriptController.eval("list.add(1)").get();
+		
+		assertTrue(observer.readIfChanged(() -> reference.getSync(scriptController.getScriptSync()), value -> {}).get());
+	}
+	
+	@Test
+	public void readIfChanged_failedRead() throws Exception {
+		observer.readIfChanged(() -> {
+			getGlobal("x");
+			throw new IllegalStateException();
+		}, value -> {}).get();
+		
+		assertFalse(readIfChanged("x"));
+	}
+	
+	@Test
+	public void read_unchanged() throws Exception {
+		readIfChanged("x");
+		
+		assertTrue(observer.read(() -> getGlobal("x"), value -> {}).get());
+	}
+	
+	private boolean readIfChanged(String name) throws Exception {
+		return observer.readIfChanged(() -> getGlobal(name), value -> {}).get();
+	}
+	
+	private Object getGlobal(String name) {
+		return scriptController.getGlobalsSync().get(name);
+	}
+}
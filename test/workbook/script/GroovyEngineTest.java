@@ -92,6 +92,16 @@ public class GroovyEngineTest {
 		assertEquals(Arrays.asList(1, 2, 3), list);
 	}
 	
+	@Test
+	public void iterator() throws ScriptException {
+		List<Object> list = new ArrayList<>();
+		Object object = script.eval("[1, 2, 3]");
+		
+		script.iterator(object).forEachRemaining(list::add);
+		
+		assertEquals(Arrays.asList(1, 2, 3), list);
+	}
+	
 	@Test
 	public void setVariable() throws ScriptException {
 		script.setVariable("a", "b");
@@ -136,4 +146,49 @@ public class GroovyEngineTest {
 		script.defineFunction("chart", param -> param);
 		assertEquals("param", script.eval("chart('param')"));
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void eval_reusesCompiledScript() {
+		script.eval("1 + 1");
+		script.eval("1 + 1");
+		
+		assertEquals(1, script.getScriptCache().getHits());
+		assertEquals(1, script.getScriptCache().getMisses());
+	}
+	
+	@Test
+	public void eval_redefinedClass() {
+		script.eval("class A { def value() { 1 } }");
+		assertEquals(1, script.eval("new A().value()"));
+		
+		script.eval("class A { def value() { 2 } }");
+		assertEquals(2, script.eval("new A().value()"));
+	}
+	
+	@Test
+	public void eval_sharesGlobals() {
+		GlobalBindings globals = new GlobalBindings();
+		script.setGlobals(globals);
+		
+		globals.put("x", 2);
+		script.eval("y = x + 1");
+		
+		assertEquals(3, globals.get("y"));
+	}
+	
+	@Test
+	public void eval_doesNotCopyGlobals() {
+		CountingGlobalBindings globals = new CountingGlobalBindings();
+		for(int i = 0; i < 1000; i++) {
+			globals.put("x" + i, i);
+		}
+		script.setGlobals(globals);
+		script.eval("1 + 1");
+		globals.resetBulkReads();
+		
+		assertEquals(2, script.eval("x1 + 1"));
+		script.eval("y = x2");
+		
+		assertEquals(0, globals.getBulkReads());
+	}
+}
@@ -92,6 +92,16 @@ public class JShellEngineTest {
 		assertEquals(Arrays.asList(1, 2, 3), list);
 	}
 	
+	@Test
+	public void iterator() throws ScriptException {
+		List<Object> list = new ArrayList<>();
+		Object object = script.eval("java.util.Arrays.asList(1, 2, 3)");
+		
+		script.iterator(object).forEachRemaining(list::add);
+		
+		assertEquals(Arrays.asList(1, 2, 3), list);
+	}
+	
 	@Test
 	public void setVariable() throws ScriptException {
 		script.setVariable("a", "b");
@@ -8,8 +8,11 @@ import static org.junit.Assert.assertTrue;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.script.ScriptException;
 
@@ -92,6 +95,16 @@ public class JavascriptEngineTest {
 		assertEquals(Arrays.asList(1, 2, 3), list);
 	}
 	
+	@Test
+	public void iterator() throws ScriptException {
+		List<Object> list = new ArrayList<>();
+		Object object = script.eval("[1, 2, 3]");
+		
+		script.iterator(object).forEachRemaining(list::add);
+		
+		assertEquals(Arrays.asList(1, 2, 3), list);
+	}
+	
 	@Test
 	public void setVariable() throws ScriptException {
 		script.setVariable("a", "b");
@@ -136,4 +149,145 @@ public class JavascriptEngineTest {
 		script.defineFunction("chart", param -> param);
 		assertEquals("param", script.eval("chart('param')"));
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void eval_reusesCompiledScript() {
+		script.eval("1 + 1");
+		long misses = script.getScriptCache().getMisses();
+		
+		script.eval("1 + 1");
+		
+		assertEquals(misses, script.getScriptCache().getMisses());
+		assertEquals(1, script.getScriptCache().getHits());
+	}
+	
+	@Test
+	public void isIterable_javaList() throws ScriptException {
+		assertFalse(script.isIterable(Arrays.asList(1, 2, 3)));
+	}
+	
+	@Test
+	public void eval_readsGlobals() {
+		GlobalBindings globals = new GlobalBindings();
+		script.setGlobals(globals);
+		
+		globals.put("x", 2);
+		assertEquals(3.0, ((Number) script.eval("x + 1")).doubleValue(), 0);
+	}
+	
+	@Test
+	public void eval_writesGlobals() {
+		GlobalBindings globals = new GlobalBindings();
+		script.setGlobals(globals);
+		
+		script.eval("x = 2");
+		assertEquals(2, globals.get("x"));
+		
+		globals.put("x", 3);
+		assertEquals(3, script.eval("x"));
+	}
+	
+	@Test
+	public void eval_unchangedVariablesNotWritten() {
+		GlobalBindings globals = new GlobalBindings();
+		script.setGlobals(globals);
+		script.eval("var data = {}; var n = 1.5; var s = 'a' + 'b'");
+		
+		Set<String> changedKeys = globals.trackChanges();
+		changedKeys.clear();
+		GlobalBindings.Access access = new GlobalBindings.Access();
+		globals.startRecording(access);
+		script.eval("var z = 3");
+		globals.stopRecording(access);
+		
+		assertEquals(Collections.singleton("z"), changedKeys);
+		assertEquals(Collections.singleton("z"), access.getWrites());
+	}
+	
+	@Test
+	public void eval_blindWrites() {
+		GlobalBindings globals = new GlobalBindings();
+		globals.put("x", 1);
+		script.setGlobals(globals);
+		
+		GlobalBindings.Access access = new GlobalBindings.Access();
+		globals.startRecording(access);
+		script.eval("var y = x + 1; x = 5");
+		globals.stopRecording(access);
+		
+		assertTrue(access.getWrites().contains("x"));
+		assertEquals(Collections.singleton("y"), access.getBlindWrites());
+	}
+	
+	@Test
+	public void eval_engineReads() {
+		GlobalBindings globals = new GlobalBindings();
+		script.setGlobals(globals);
+		script.eval("var a = 1; var b = 2; var c = 3; function f() { return a; }; var o = { g: function() { return b; } }");
+		
+		GlobalBindings.Access access = new GlobalBindings.Access();
+		globals.startRecording(access);
+		script.eval("f() + o.g()");
+		globals.stopRecording(access);
+		
+		assertEquals(new HashSet<>(Arrays.asList("f", "a", "o", "b")), access.getPossibleReads());
+	}
+	
+	@Test
+	public void evalWithCallbackFunctions_engineReads() {
+		GlobalBindings globals = new GlobalBindings();
+		script.setGlobals(globals);
+		script.eval("var a = 1; var b = 2");
+		
+		GlobalBindings.Access access = new GlobalBindings.Access();
+		globals.startRecording(access);
+		script.evalWithCallbackFunctions("rect({x: a})", Arrays.asList("rect"));
+		globals.stopRecording(access);
+		
+		assertTrue(access.getPossibleReads().contains("a"));
+		assertFalse(access.getPossibleReads().contains("b"));
+	}
+	
+	@Test
+	public void eval_reassignedObjectWritten() {
+		GlobalBindings globals = new GlobalBindings();
+		script.setGlobals(globals);
+		script.eval("var data = {}");
+		
+		Set<String> changedKeys = globals.trackChanges();
+		changedKeys.clear();
+		script.eval("data = {}");
+		
+		assertEquals(Collections.singleton("data"), changedKeys);
+	}
+	
+	@Test
+	public void evalMethodCall_reusesCompiledImportScript() {
+		script.eval("function f(x) { return x }");
+		script.evalMethodCall("f", Arrays.asList(1));
+		long misses = script.getScriptCache().getMisses();
+		long hits = script.getScriptCache().getHits();
+		
+		script.evalMethodCall("f", Arrays.asList(2));
+		
+		// Both the import script and the call are read from the cache.
+		assertEquals(misses, script.getScriptCache().getMisses());
+		assertEquals(hits + 2, script.getScriptCache().getHits());
+	}
+	
+	@Test
+	public void eval_doesNotCopyGlobals() {
+		CountingGlobalBindings globals = new CountingGlobalBindings();
+		for(int i = 0; i < 1000; i++) {
+			globals.put("x" + i, i);
+		}
+		script.setGlobals(globals);
+		script.eval("1 + 1");
+		globals.resetBulkReads();
+		
+		assertEquals(2.0, script.eval("x1 + 1"));
+		script.eval("var y = x2");
+		
+		assertEquals(0, globals.getBulkReads());
+	}
+}
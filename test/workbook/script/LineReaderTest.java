@@ -3,6 +3,7 @@ package workbook.script;
 import static org.junit.Assert.assertEquals;
 
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -23,4 +24,51 @@ public class LineReaderTest {
 		
 		assertEquals(Arrays.asList("abc", "def"), lines);
 	}
+	
+	@Test
+	public void write_bulk() throws Exception {
+		List<String> lines = new ArrayList<>();
+		LineReader lineReader = new LineReader(line -> lines.add(line));
+		
+		lineReader.getOutputStream().write("abc\r\ndef\ngh".getBytes(StandardCharsets.UTF_8));
+		lineReader.getOutputStream().write("i\n".getBytes(StandardCharsets.UTF_8));
+		
+		assertEquals(Arrays.asList("abc", "def", "ghi"), lines);
+	}
+	
+	@Test
+	public void write_characterSplitAcrossWrites() throws Exception {
+		List<String> lines = new ArrayList<>();
+		LineReader lineReader = new LineReader(line -> lines.add(line), StandardCharsets.UTF_8, 1000);
+		
+		byte[] bytes = "a\u00e9\u20acb\n".getBytes(StandardCharsets.UTF_8);
+		for(byte b:bytes) {
+			lineReader.getOutputStream().write(new byte[] { b });
+		}
+		
+		assertEquals(Arrays.asList("a\u00e9\u20acb"), lines);
+	}
+	
+	@Test
+	public void write_splitsLongLines() throws Exception {
+		List<String> lines = new ArrayList<>();
+		LineReader lineReader = new LineReader(line -> lines.add(line), StandardCharsets.UTF_8, 16);
+		
+		lineReader.getOutputStream().write("0123456789abcdef0123\n".getBytes(StandardCharsets.UTF_8));
+		lineReader.getOutputStream().write("\u20ac\u20ac\u20ac\u20ac\u20ac\u20ac\n".getBytes(StandardCharsets.UTF_8));
+		
+		assertEquals(Arrays.asList("0123456789abcdef", "0123", "\u20ac\u20ac\u20ac\u20ac\u20ac", "\u20ac"), lines);
+	}
+	
+	@Test
+	public void close_passesLastLine() throws Exception {
+		List<String> lines = new ArrayList<>();
+		LineReader lineReader = new LineReader(line -> lines.add(line));
+		
+		lineReader.getOutputStream().write("abc".getBytes(StandardCharsets.UTF_8));
+		lineReader.getOutputStream().close();
+		lineReader.waitUntilDone();
+		
+		assertEquals(Arrays.asList("abc"), lines);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package workbook.script;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class PrintStreamSplitterTest {
+	private final ByteArrayOutputStream defaultOutput = new ByteArrayOutputStream();
+	private final ByteArrayOutputStream contextOutput = new ByteArrayOutputStream();
+	private final ByteArrayOutputStream contextError = new ByteArrayOutputStream();
+	
+	private final PrintStreamSplitter splitter = new PrintStreamSplitter(new PrintStream(defaultOutput, true), OutputContext::getOutput);
+	private final OutputContext context = new OutputContext(contextOutput, contextError);
+	
+	@After
+	public void after() {
+		OutputContext.restore(null);
+	}
+	
+	@Test
+	public void write_noContext() {
+		splitter.print("a");
+		splitter.write('b');
+		splitter.flush();
+		
+		assertEquals("ab", defaultOutput.toString());
+	}
+	
+	@Test
+	public void write_context() {
+		OutputContext previous = context.enter();
+		splitter.print("a");
+		splitter.write('b');
+		splitter.write(new byte[] { 'c', 'd' }, 0, 2);
+		OutputContext.restore(previous);
+		splitter.print("e");
+		splitter.flush();
+		context.close();
+		
+		assertEquals("abcd", contextOutput.toString());
+		assertEquals("", contextError.toString());
+		assertEquals("e", defaultOutput.toString());
+	}
+	
+	@Test
+	public void write_inheritedByNewThreads() throws InterruptedException {
+		context.enter();
+		Thread thread = new Thread(() -> splitter.print("a"));
+		OutputContext.restore(null);
+		thread.start();
+		thread.join();
+		context.close();
+		
+		assertEquals("a", contextOutput.toString());
+		assertEquals("", defaultOutput.toString());
+	}
+	
+	@Test
+	public void write_closedContext() {
+		context.enter();
+		context.close();
+		splitter.print("a");
+		splitter.flush();
+		
+		assertEquals("", contextOutput.toString());
+		assertEquals("a", defaultOutput.toString());
+	}
+}
@@ -0,0 +1,68 @@
+package workbook.script;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PriorityRunQueueTest {
+	private final List<String> order = new ArrayList<>();
+	
+	@Test
+	public void take_highestPriorityFirst() throws Exception {
+		PriorityRunQueue queue = new PriorityRunQueue();
+		queue.add(ScriptPriority.BACKGROUND, () -> order.add("background"));
+		queue.add(ScriptPriority.REFRESH, () -> order.add("refresh"));
+		queue.add(ScriptPriority.INTERACTIVE, () -> order.add("interactive"));
+		
+		runAll(queue);
+		
+		assertEquals(Arrays.asList("interactive", "refresh", "background"), order);
+	}
+	
+	@Test
+	public void take_samePriorityInOrder() throws Exception {
+		PriorityRunQueue queue = new PriorityRunQueue();
+		queue.add(ScriptPriority.REFRESH, () -> order.add("a"));
+		queue.add(ScriptPriority.REFRESH, () -> order.add("b"));
+		queue.add(ScriptPriority.REFRESH, () -> order.add("c"));
+		
+		runAll(queue);
+		
+		assertEquals(Arrays.asList("a", "b", "c"), order);
+	}
+	
+	@Test
+	public void take_lowerPriorityNotStarved() throws Exception {
+		PriorityRunQueue queue = new PriorityRunQueue(2);
+		queue.add(ScriptPriority.REFRESH, () -> order.add("refresh"));
+		for(int i = 0; i < 4; i++) {
+			queue.add(ScriptPriority.INTERACTIVE, () -> order.add("interactive"));
+		}
+		
+		runAll(queue);
+		
+		assertEquals(Arrays.asList("interactive", "interactive", "refresh", "interactive", "interactive"), order);
+	}
+	
+	@Test
+	public void getStatistics() throws Exception {
+		PriorityRunQueue queue = new PriorityRunQueue();
+		queue.add(ScriptPriority.REFRESH, () -> {});
+		queue.add(ScriptPriority.REFRESH, () -> {});
+		queue.take().run();
+		
+		assertEquals(1, queue.getStatistics(ScriptPriority.REFRESH).getDepth());
+		assertEquals(1, queue.getStatistics(ScriptPriority.REFRESH).getTaken());
+		assertEquals(0, queue.getStatistics(ScriptPriority.INTERACTIVE).getTaken());
+	}
+	
+	private static void runAll(PriorityRunQueue queue) throws InterruptedException {
+		while(!queue.isEmpty()) {
+			queue.take().run();
+		}
+	}
+}
@@ -91,6 +91,16 @@ public class RubyEngineTest {
 		assertEquals(Arrays.asList(1L, 2L, 3L), list);
 	}
 	
+	@Test
+	public void iterator() throws ScriptException {
+		List<Object> list = new ArrayList<>();
+		Object object = script.eval("[1, 2, 3]");
+		
+		script.iterator(object).forEachRemaining(list::add);
+		
+		assertEquals(Arrays.asList(1L, 2L, 3L), list);
+	}
+	
 	@Test
 	public void setVariable() throws ScriptException {
 		script.setVariable("a", "b");
@@ -0,0 +1,290 @@
+package workbook.script;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import workbook.editor.reference.ConstantReference;
+import workbook.editor.reference.GlobalVariableReference;
+
+public class ScriptControllerTest {
+	@Test
+	public void getValues() throws Exception {
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		scriptController.addEngine("Javascript", new JavascriptEngine());
+		scriptController.setScriptType("Javascript");
+		scriptController.setVariable("x", 5).get();
+		
+		assertEquals(Arrays.asList("a", null, 5), scriptController.getValues(Arrays.asList(
+			new ConstantReference(scriptController, "a"),
+			null,
+			new GlobalVariableReference(scriptController, "x")
+		)).get());
+	}
+	
+	@Test
+	public void thenAccept_runsOnScriptThread() throws Exception {
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		
+		CompletableFuture<Boolean> onScriptThread = new CompletableFuture<>();
+		scriptController.exec(() -> 1).thenAccept(value -> onScriptThread.complete(scriptController.isScriptThread()));
+		
+		assertTrue(onScriptThread.get());
+	}
+	
+	@Test
+	public void thenAccept_direct() throws Exception {
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		
+		CountDownLatch registered = new CountDownLatch(1);
+		CompletableFuture<Thread> callbackThread = new CompletableFuture<>();
+		ScriptFuture<Thread> future = scriptController.exec(() -> {
+			registered.await();
+			return Thread.currentThread();
+		});
+		future.thenAccept(ScriptFuture.DIRECT, value -> callbackThread.complete(Thread.currentThread()));
+		registered.countDown();
+		
+		assertEquals(future.get(), callbackThread.get());
+	}
+	
+	@Test
+	public void thenAccept_directAfterWatchdog() throws Exception {
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		
+		CountDownLatch registered = new CountDownLatch(1);
+		CompletableFuture<Thread> callbackThread = new CompletableFuture<>();
+		ScriptFuture<Thread> future = scriptController.exec(ScriptPriority.INTERACTIVE, 60000, () -> {
+			registered.await();
+			return Thread.currentThread();
+		});
+		future.thenAccept(ScriptFuture.DIRECT, value -> callbackThread.complete(Thread.currentThread()));
+		registered.countDown();
+		
+		// Callbacks run on the script thread rather than the watchdog thread.
+		assertEquals("Script Thread", callbackThread.get().getName());
+	}
+	
+	@Test
+	public void thenAccept_directNotAbortedAfterTimeout() throws Exception {
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		
+		CompletableFuture<Boolean> callbackFinished = new CompletableFuture<>();
+		ScriptFuture<Integer> future = new ScriptFuture<>(scriptController);
+		scriptController.exec(ScriptPriority.INTERACTIVE, 100, () -> {
+			future.thenAccept(ScriptFuture.DIRECT, value -> {
+				// Runs on the script thread for longer than the time limit and grace period of the evaluation.
+				long endTime = System.currentTimeMillis() + 1500;
+				while(System.currentTimeMillis() < endTime) {
+				}
+				callbackFinished.complete(true);
+			});
+			return 1;
+		}).thenAccept(ScriptFuture.DIRECT, future::complete);
+		
+		assertTrue(callbackFinished.get(10, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void cancel_beforeStart() throws Exception {
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		
+		CountDownLatch latch = new CountDownLatch(1);
+		AtomicBoolean called = new AtomicBoolean(false);
+		ScriptFuture<Object> first = scriptController.exec(() -> {
+			latch.await();
+			return null;
+		});
+		ScriptFuture<Object> second = scriptController.exec(() -> called.getAndSet(true));
+		
+		assertTrue(second.cancel());
+		latch.countDown();
+		first.get();
+		scriptController.exec(() -> null).get();
+		
+		assertTrue(second.isCancelled());
+		assertFalse(called.get());
+	}
+	
+	@Test
+	public void eval_timeout() throws Exception {
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		scriptController.addEngine("Javascript", new JavascriptEngine());
+		scriptController.setScriptType("Javascript");
+		scriptController.setVariable("x", 5).get();
+		
+		try {
+			scriptController.eval("while(true) {}", 200).get();
+			fail();
+		} catch(ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		
+		assertEquals(5, scriptController.getVariable("x").get());
+		assertEquals(3, ((Number) scriptController.eval("1 + 2").get()).intValue());
+	}
+	
+	@Test
+	public void evalParallel() throws Exception {
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		scriptController.addEngine("Javascript", new JavascriptEngine(), JavascriptEngine::new);
+		scriptController.setScriptType("Javascript");
+		scriptController.setVariable("x", 5).get();
+		
+		List<ParallelResult> results = scriptController.exec(() -> {
+			List<ParallelResult> parallelResults = scriptController.evalParallelSync(Arrays.asList(
+				engine -> engine.eval("a = x + 1"),
+				engine -> engine.eval("b = x + 2")
+			));
+			assertFalse(scriptController.getGlobalsSync().containsKey("a"));
+			parallelResults.forEach(scriptController::mergeSync);
+			return parallelResults;
+		}).get();
+		
+		assertTrue(results.get(0).getReads().contains("x"));
+		assertEquals(Collections.singleton("a"), results.get(0).getWrites());
+		assertEquals(Collections.singleton("b"), results.get(1).getWrites());
+		assertEquals(6, ((Number) scriptController.eval("a").get()).intValue());
+		assertEquals(7, ((Number) scriptController.eval("b").get()).intValue());
+	}
+	
+	@Test
+	public void addEngine_parallel() throws Exception {
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		scriptController.addEngine("Javascript", JavascriptEngine::new, true);
+		scriptController.addEngine("Other", JavascriptEngine::new);
+		
+		scriptController.setScriptType("Javascript").get();
+		assertTrue(scriptController.isParallelSupported());
+		
+		scriptController.setScriptType("Other").get();
+		assertFalse(scriptController.isParallelSupported());
+	}
+	
+	@Test
+	public void setScriptType_unknown() throws Exception {
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		scriptController.addEngine("Javascript", JavascriptEngine::new);
+		scriptController.setScriptType("Javascript").get();
+		
+		try {
+			scriptController.setScriptType("Unknown").get();
+			fail();
+		} catch(ExecutionException e) {
+		}
+		
+		assertEquals("Javascript", scriptController.getScriptType());
+	}
+	
+	@Test
+	public void captureOutputSync() throws Exception {
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ByteArrayOutputStream error = new ByteArrayOutputStream();
+		Object value = scriptController.exec(() -> scriptController.captureOutputSync(() -> {
+			System.out.print("out");
+			System.err.print("err");
+			return 1;
+		}, output, error)).get();
+		
+		assertEquals(1, value);
+		assertEquals("out", output.toString());
+		assertEquals("err", error.toString());
+	}
+	
+	@Test
+	public void evalSync_outputContext() throws Exception {
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		scriptController.addEngine("Javascript", new JavascriptEngine());
+		scriptController.setScriptType("Javascript").get();
+		
+		// Threads started by the evaluation inherit its context.
+		Object context = scriptController.eval("var context = null;"
+			+ "var thread = new java.lang.Thread(function() { context = Java.type('workbook.script.OutputContext').getCurrent(); });"
+			+ "thread.start(); thread.join(); context").get();
+		
+		assertNotNull(context);
+		assertNull(scriptController.exec(() -> OutputContext.getCurrent()).get());
+	}
+	
+	@Test
+	public void countChangesSync() throws Exception {
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		scriptController.exec(() -> {
+			scriptController.getGlobalsSync().put("list", new ArrayList<>());
+			return scriptController.getGlobalsSync().put("x", 1);
+		}).get();
+		
+		List<Long> versions = scriptController.exec(() -> {
+			long listVersion = scriptController.getGlobalVersionSync("list");
+			long xVersion = scriptController.getGlobalVersionSync("x");
+			scriptController.getGlobalsSync().get("list");
+			scriptController.getGlobalsSync().get("x");
+			scriptController.countChangesSync();
+			return Arrays.asList(listVersion, scriptController.getGlobalVersionSync("list"), xVersion, scriptController.getGlobalVersionSync("x"));
+		}).get();
+		
+		// Reading a mutable object counts as a change, but reading an immutable value doesn't.
+		assertTrue(versions.get(1) > versions.get(0));
+		assertEquals(versions.get(2), versions.get(3));
+		
+		// The changes aren't counted again once the work has finished.
+		assertEquals(versions.get(1), scriptController.exec(() -> scriptController.getGlobalVersionSync("list")).get());
+	}
+	
+	@Test
+	public void addEngine_createsWhenFirstUsed() throws Exception {
+		ScriptController scriptController = new ScriptController();
+		scriptController.startQueueThread();
+		
+		AtomicInteger created = new AtomicInteger();
+		scriptController.addEngine("Javascript", () -> {
+			created.incrementAndGet();
+			return new JavascriptEngine();
+		});
+		scriptController.addEngine("Other", () -> {
+			throw new AssertionError("Engine shouldn't be created");
+		});
+		scriptController.exec(() -> scriptController.getGlobalsSync().put("x", 5)).get();
+		
+		assertEquals(0, created.get());
+		
+		scriptController.setScriptType("Javascript").get();
+		scriptController.prewarmEngine("Javascript").get();
+		
+		assertEquals(1, created.get());
+		assertEquals(6, ((Number) scriptController.eval("x + 1").get()).intValue());
+	}
+}
@@ -0,0 +1,59 @@
+package workbook.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class LruCacheTest {
+	@Test
+	public void get_loadsMissingValue() {
+		LruCache<String, String> cache = new LruCache<>(2);
+		
+		assertEquals("A", cache.get("a", String::toUpperCase));
+		assertEquals("A", cache.get("a", key -> "B"));
+		
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(0.5, cache.getHitRate(), 0);
+	}
+	
+	@Test
+	public void put_evictsLeastRecentlyUsed() {
+		LruCache<String, String> cache = new LruCache<>(2);
+		
+		cache.put("a", "1");
+		cache.put("b", "2");
+		cache.getIfPresent("a");
+		cache.put("c", "3");
+		
+		assertEquals("1", cache.getIfPresent("a"));
+		assertNull(cache.getIfPresent("b"));
+		assertEquals("3", cache.getIfPresent("c"));
+		assertEquals(1, cache.getEvictions());
+	}
+	
+	@Test
+	public void put_evictsOverMaxWeight() {
+		LruCache<String, String> cache = new LruCache<>(10, 5, String::length);
+		
+		cache.put("a", "12");
+		cache.put("b", "34");
+		cache.put("c", "56");
+		
+		assertNull(cache.getIfPresent("a"));
+		assertEquals("34", cache.getIfPresent("b"));
+		assertEquals(4, cache.getWeight());
+	}
+	
+	@Test
+	public void invalidateAll() {
+		LruCache<String, String> cache = new LruCache<>(2);
+		
+		cache.put("a", "1");
+		cache.invalidateAll();
+		
+		assertEquals(0, cache.size());
+		assertNull(cache.getIfPresent("a"));
+	}
+}
@@ -0,0 +1,83 @@
+package workbook.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MpscRingBufferTest {
+	@Test
+	public void offer_full() {
+		MpscRingBuffer<String> queue = new MpscRingBuffer<>(4);
+		
+		for(int i = 0; i < 4; i++) {
+			assertTrue(queue.offer("a" + i));
+		}
+		assertFalse(queue.offer("b"));
+		
+		assertEquals("a0", queue.poll());
+		assertTrue(queue.offer("c"));
+		assertEquals(4, queue.size());
+	}
+	
+	@Test
+	public void poll_empty() {
+		MpscRingBuffer<String> queue = new MpscRingBuffer<>(4);
+		
+		assertNull(queue.poll());
+		queue.offer("a");
+		assertEquals("a", queue.poll());
+		assertNull(queue.poll());
+	}
+	
+	@Test
+	public void capacity_roundedToPowerOfTwo() {
+		assertEquals(8, new MpscRingBuffer<>(5).getCapacity());
+		assertEquals(8, new MpscRingBuffer<>(8).getCapacity());
+		assertEquals(1, new MpscRingBuffer<>(1).getCapacity());
+	}
+	
+	@Test
+	public void offer_concurrentWriters() throws Exception {
+		MpscRingBuffer<int[]> queue = new MpscRingBuffer<>(64);
+		int writers = 4;
+		int count = 20000;
+		
+		List<Thread> threads = new ArrayList<>();
+		for(int writer = 0; writer < writers; writer++) {
+			int id = writer;
+			Thread thread = new Thread(() -> {
+				for(int i = 0; i < count; i++) {
+					while(!queue.offer(new int[] { id, i })) {
+						Thread.yield();
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		
+		// Each writer's items should be read once each, in the order they were written.
+		int[] next = new int[writers];
+		int received = 0;
+		while(received < writers * count) {
+			int[] item = queue.poll();
+			if(item == null) {
+				Thread.yield();
+			} else {
+				assertEquals(next[item[0]]++, item[1]);
+				received++;
+			}
+		}
+		
+		for(Thread thread:threads) {
+			thread.join();
+		}
+		assertNull(queue.poll());
+	}
+}
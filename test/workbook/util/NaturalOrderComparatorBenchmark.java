@@ -0,0 +1,43 @@
+package workbook.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Compares the time to sort table-like values with NaturalOrderComparator against the previous regex based comparator.
+ */
+public class NaturalOrderComparatorBenchmark {
+	private static final int ROWS = 100000;
+	private static final int ITERATIONS = 5;
+	
+	public static void main(String[] args) {
+		String[] values = createValues(ROWS);
+		
+		for(int i = 0; i < ITERATIONS; i++) {
+			sort("Regex", values, new RegexNaturalOrderComparator());
+			sort("Walking", values, new NaturalOrderComparator());
+		}
+	}
+	
+	private static void sort(String name, String[] values, Comparator<String> comparator) {
+		String[] copy = values.clone();
+		long start = System.nanoTime();
+		Arrays.sort(copy, comparator);
+		long millis = (System.nanoTime() - start) / 1000000;
+		System.out.println(String.format("%-8s %6d ms to sort %d values", name, millis, copy.length));
+	}
+	
+	/**
+	 * Returns values like file names and identifiers, with a mix of text and numbers.
+	 */
+	private static String[] createValues(int count) {
+		Random random = new Random(0);
+		String[] prefixes = { "file", "item-", "Row ", "v", "" };
+		String[] values = new String[count];
+		for(int i = 0; i < count; i++) {
+			values[i] = prefixes[random.nextInt(prefixes.length)] + random.nextInt(100000) + "." + random.nextInt(100);
+		}
+		return values;
+	}
+}
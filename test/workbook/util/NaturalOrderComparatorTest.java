@@ -0,0 +1,62 @@
+package workbook.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class NaturalOrderComparatorTest {
+	// Characters that exercise numbers, ignored characters, unicode digits and surrogate pairs.
+	private static final String[] ALPHABET = { "0", "1", "2", "9", "0", " ", "a", "b", "A", "-", ".", "\u0663", "\u0660", "\u00E9", "\uD835\uDFCF", "\uD835" };
+	
+	private final NaturalOrderComparator comparator = new NaturalOrderComparator();
+	private final RegexNaturalOrderComparator regexComparator = new RegexNaturalOrderComparator();
+	
+	@Test
+	public void compare_order() {
+		List<String> expected = Arrays.asList("", "a", "a1", "a2", "a10", "a100", "b", "b 2", "b3");
+		for(int i = 0; i < expected.size(); i++) {
+			for(int j = 0; j < expected.size(); j++) {
+				assertEquals(expected.get(i) + " vs " + expected.get(j), Integer.signum(Integer.compare(i, j)), Integer.signum(comparator.compare(expected.get(i), expected.get(j))));
+			}
+		}
+	}
+	
+	@Test
+	public void compare_largeNumbers() {
+		assertTrue(comparator.compare("x99999999999999999999", "x100000000000000000000") < 0);
+	}
+	
+	@Test
+	public void compare_sameAsRegexComparator() {
+		Random random = new Random(0);
+		for(int i = 0; i < 200000; i++) {
+			String a = randomString(random);
+			String b = (random.nextInt(4) == 0) ? mutate(random, a) : randomString(random);
+			
+			int expected = Integer.signum(regexComparator.compare(a, b));
+			assertEquals("'" + a + "' vs '" + b + "'", expected, Integer.signum(comparator.compare(a, b)));
+		}
+	}
+	
+	private static String randomString(Random random) {
+		StringBuilder s = new StringBuilder();
+		int length = random.nextInt(8);
+		for(int i = 0; i < length; i++) {
+			s.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+		}
+		return s.toString();
+	}
+	
+	/**
+	 * Returns a string similar to s, with a character inserted or appended, so that more comparisons reach the later groups.
+	 */
+	private static String mutate(Random random, String s) {
+		int index = random.nextInt(s.length() + 1);
+		return s.substring(0, index) + ALPHABET[random.nextInt(ALPHABET.length)] + s.substring(index);
+	}
+}
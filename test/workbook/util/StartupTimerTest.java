@@ -0,0 +1,67 @@
+package workbook.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import workbook.script.JavascriptEngine;
+import workbook.script.ScriptController;
+
+public class StartupTimerTest {
+	@Test
+	public void time_returnsResult() {
+		StartupTimer timer = new StartupTimer();
+		
+		assertEquals("a", timer.time("Step", () -> "a"));
+		assertTrue(timer.getReport().contains("Step"));
+	}
+	
+	@Test
+	public void time_recordsFailedStep() {
+		StartupTimer timer = new StartupTimer();
+		
+		try {
+			timer.time("Failed step", () -> {
+				throw new IllegalStateException();
+			});
+			fail();
+		} catch(IllegalStateException e) {
+		}
+		
+		assertTrue(timer.getReport().contains("Failed step"));
+	}
+	
+	@Test
+	public void getReport_ordersByFinishWithThread() throws Exception {
+		StartupTimer timer = new StartupTimer();
+		long startNanos = System.nanoTime();
+		timer.time("First", () -> {});
+		
+		Thread thread = new Thread(() -> timer.record("Second", startNanos), "Other Thread");
+		thread.start();
+		thread.join();
+		
+		String report = timer.getReport();
+		assertTrue(report.indexOf("First") < report.indexOf("Second"));
+		assertTrue(report.contains("[" + Thread.currentThread().getName() + "]"));
+		assertTrue(report.contains("[Other Thread]"));
+	}
+	
+	@Test
+	public void record_engineCreation() throws Exception {
+		StartupTimer timer = new StartupTimer();
+		ScriptController scriptController = new ScriptController();
+		scriptController.setStartupTimer(timer);
+		scriptController.startQueueThread();
+		scriptController.addEngine("Javascript", JavascriptEngine::new);
+		scriptController.addEngine("Other", JavascriptEngine::new);
+		
+		scriptController.prewarmEngine("Javascript").get();
+		
+		assertTrue(timer.getReport().contains("Create Javascript engine"));
+		assertFalse(timer.getReport().contains("Create Other engine"));
+	}
+}
@@ -0,0 +1,122 @@
+package workbook.view;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import workbook.script.GlobalBindings;
+import workbook.script.JavascriptEngine;
+import workbook.script.ScriptController;
+
+public class CellDependenciesTest {
+	private final CellDependencies<String> dependencies = new CellDependencies<>();
+	private final GlobalBindings globals = new GlobalBindings();
+	
+	@Test
+	public void needsEvaluation_newCell() {
+		assertTrue(dependencies.needsEvaluation("a", "x = 1", none(), none()));
+	}
+	
+	@Test
+	public void needsEvaluation_changedCommand() {
+		dependencies.update("a", "x = 1", none(), set("x"));
+		
+		assertFalse(dependencies.needsEvaluation("a", "x = 1", none(), none()));
+		assertTrue(dependencies.needsEvaluation("a", "x = 2", none(), none()));
+	}
+	
+	@Test
+	public void needsEvaluation_readsChangedGlobal() {
+		dependencies.update("b", "f()", set("y"), none());
+		
+		assertTrue(dependencies.needsEvaluation("b", "f()", none(), set("y")));
+		assertTrue(dependencies.needsEvaluation("b", "f()", set("y"), none()));
+		assertFalse(dependencies.needsEvaluation("b", "f()", none(), set("z")));
+	}
+	
+	@Test
+	public void needsEvaluation_readsIdentifierInCommand() {
+		dependencies.update("b", "y + 1", none(), none());
+		
+		assertTrue(dependencies.needsEvaluation("b", "y + 1", none(), set("y")));
+	}
+	
+	@Test
+	public void needsEvaluation_externalChangeToOwnWrite() {
+		dependencies.update("a", "x = 1", none(), set("x"), set("x"));
+		
+		assertFalse(dependencies.needsEvaluation("a", "x = 1", set("x"), none()));
+		assertTrue(dependencies.needsEvaluation("a", "x = 1", none(), set("x")));
+	}
+	
+	@Test
+	public void needsEvaluation_externalChangeToOwnWriteAfterRead() {
+		dependencies.update("a", "x = x + 1", set("x"), set("x"), none());
+		
+		assertTrue(dependencies.needsEvaluation("a", "x = x + 1", set("x"), none()));
+	}
+	
+	@Test
+	public void needsEvaluation_externalChangeToObjectReadAndWritten() {
+		dependencies.update("a", "var data = {v: 1}", none(), set("data"), set("data"));
+		dependencies.update("b", "var s = data.v", none(), set("data", "s"), set("s"));
+		
+		assertFalse(dependencies.needsEvaluation("a", "var data = {v: 1}", set("data"), none()));
+		assertTrue(dependencies.needsEvaluation("b", "var s = data.v", set("data"), none()));
+	}
+	
+	@Test
+	public void isIndependent_resultVariableWritten() {
+		JavascriptEngine engine = new JavascriptEngine();
+		engine.setGlobals(globals);
+		evaluate(engine, "a", "var x = 1");
+		evaluate(engine, "b", "var y = 2");
+		
+		assertTrue(dependencies.getWrites("a").contains(ScriptController.RESULT_VARIABLE));
+		assertTrue(dependencies.isIndependent("b", "var y = 2", dependencies.getReads("a", "var x = 1"), dependencies.getWrites("a")));
+	}
+	
+	@Test
+	public void isIndependent_resultVariableRead() {
+		JavascriptEngine engine = new JavascriptEngine();
+		engine.setGlobals(globals);
+		evaluate(engine, "a", "var x = 1");
+		evaluate(engine, "b", "var y = _ + 1");
+		
+		assertFalse(dependencies.isIndependent("b", "var y = _ + 1", dependencies.getReads("a", "var x = 1"), dependencies.getWrites("a")));
+	}
+	
+	@Test
+	public void isIndependent_globalWritten() {
+		dependencies.update("a", "x = 1", none(), set("x"));
+		dependencies.update("b", "y = x", none(), set("y"));
+		
+		assertFalse(dependencies.isIndependent("b", "y = x", set("x"), set("x")));
+		assertFalse(dependencies.isIndependent("b", "y = x", set("y"), none()));
+	}
+	
+	/**
+	 * Evaluates command as the worksheet does, and stores the globals it used for cell.
+	 */
+	private void evaluate(JavascriptEngine engine, String cell, String command) {
+		GlobalBindings.Access access = new GlobalBindings.Access();
+		globals.startRecording(access);
+		ScriptController.evalSync(engine, command);
+		globals.stopRecording(access);
+		dependencies.update(cell, command, access.getReads(), access.getWrites(), access.getBlindWrites());
+	}
+	
+	private static Set<String> set(String... values) {
+		return new HashSet<>(Arrays.asList(values));
+	}
+	
+	private static Set<String> none() {
+		return Collections.emptySet();
+	}
+}
@@ -0,0 +1,120 @@
+package workbook.view;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+import org.junit.Test;
+
+import workbook.script.GlobalBindings;
+
+public class CellResultCacheTest {
+	private final CellResultCache cache = new CellResultCache();
+	private final Map<String, Long> versions = new HashMap<>();
+	private final ToLongFunction<String> versionFunction = key -> versions.getOrDefault(key, 0L);
+	
+	@Test
+	public void get_sameVersions() {
+		versions.put("x", 1L);
+		cache.put("y = x", set("x"), versionFunction, result(1, Collections.singletonMap("y", "b")));
+		
+		CellResultCache.CachedResult result = cache.get("y = x", set("x"), versionFunction);
+		
+		assertNotNull(result);
+		assertEquals(1, result.getValue());
+		assertEquals(Collections.singletonMap("y", "b"), result.getWrites());
+	}
+	
+	@Test
+	public void get_changedRead() {
+		versions.put("x", 1L);
+		cache.put("y = x", set("x"), versionFunction, result(1, Collections.emptyMap()));
+		
+		versions.put("x", 2L);
+		
+		assertNull(cache.get("y = x", set("x"), versionFunction));
+	}
+	
+	@Test
+	public void get_otherGlobalChanged() {
+		versions.put("x", 1L);
+		cache.put("y = x", set("x"), versionFunction, result(1, Collections.emptyMap()));
+		
+		versions.put("z", 2L);
+		
+		assertNotNull(cache.get("y = x", set("x"), versionFunction));
+	}
+	
+	@Test
+	public void get_differentCommand() {
+		cache.put("y = x", set("x"), versionFunction, result(1, Collections.emptyMap()));
+		
+		assertNull(cache.get("y = x + 1", set("x"), versionFunction));
+	}
+	
+	@Test
+	public void get_output() {
+		cache.put("print(1)", set(), versionFunction, new CellResultCache.CachedResult(null, Collections.emptyMap(), "1\n".getBytes(), new byte[0]));
+		
+		assertArrayEquals("1\n".getBytes(), cache.get("print(1)", set(), versionFunction).getOutput());
+	}
+	
+	@Test
+	public void getWrittenValues() {
+		GlobalBindings globals = new GlobalBindings();
+		globals.put("y", "b");
+		GlobalBindings.Access access = new GlobalBindings.Access();
+		globals.startRecording(access);
+		
+		assertEquals(Collections.singletonMap("y", "b"), CellResultCache.getWrittenValues(set("y"), globals));
+		assertEquals(Collections.emptySet(), access.getReads());
+	}
+	
+	@Test
+	public void put_evictsOverBudget() {
+		CellResultCache cache = new CellResultCache(1000);
+		cache.put("a", set(), versionFunction, result(new char[100], Collections.emptyMap()));
+		cache.put("b", set(), versionFunction, result(new char[100], Collections.emptyMap()));
+		
+		assertNull(cache.get("a", set(), versionFunction));
+		assertNotNull(cache.get("b", set(), versionFunction));
+	}
+	
+	@Test
+	public void put_pinnedNotEvicted() {
+		CellResultCache cache = new CellResultCache(1000);
+		cache.put("a", set(), versionFunction, result(new char[100], Collections.emptyMap()), true);
+		cache.put("b", set(), versionFunction, result(new char[100], Collections.emptyMap()));
+		cache.put("c", set(), versionFunction, result(new char[100], Collections.emptyMap()));
+		
+		assertNotNull(cache.get("a", set(), versionFunction));
+		assertNull(cache.get("b", set(), versionFunction));
+	}
+	
+	@Test
+	public void put_unpinnedReleasesPinned() {
+		cache.put("a", set("x"), versionFunction, result(1, Collections.emptyMap()), true);
+		versions.put("x", 1L);
+		cache.put("a", set("x"), versionFunction, result(2, Collections.emptyMap()));
+		versions.put("x", 0L);
+		
+		assertNull(cache.get("a", set("x"), versionFunction));
+	}
+	
+	private static CellResultCache.CachedResult result(Object value, Map<String, Object> writes) {
+		return new CellResultCache.CachedResult(value, writes, new byte[0], new byte[0]);
+	}
+	
+	private static Set<String> set(String... values) {
+		return new HashSet<>(Arrays.asList(values));
+	}
+}
@@ -0,0 +1,92 @@
+package workbook.view;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConsoleLogTest {
+	private File file;
+	private ConsoleLog log;
+	
+	@Before
+	public void before() throws IOException {
+		file = File.createTempFile("workbook-test-", ".log");
+		log = new ConsoleLog(file, 16);
+	}
+	
+	@After
+	public void after() throws IOException {
+		log.close();
+		file.delete();
+	}
+	
+	@Test
+	public void getLines() throws IOException {
+		log.append("first\nsec");
+		log.append("ond\n\nlast");
+		
+		assertEquals(4, log.getLineCount());
+		assertEquals(Arrays.asList("first", "second", "", "last"), log.getLines(0, 4));
+		assertEquals("second", log.getLine(1));
+	}
+	
+	@Test
+	public void getLine_acrossSegments() throws IOException {
+		log.append("0123456789\n");
+		log.append("abcdefghijklmnopqrstuvwxyz\u00E9\n");
+		
+		assertEquals("abcdefghijklmnopqrstuvwxyz\u00E9", log.getLine(1));
+		assertEquals("", log.getLine(2));
+		assertEquals(40, log.getSize());
+	}
+	
+	@Test
+	public void search() throws IOException {
+		log.append("one\n\u001B[31mtw\u001B[0mo\nthree\ntwo\n");
+		
+		assertEquals(Arrays.asList(1, 3), log.search(Pattern.compile("^two$"), 10, () -> false));
+		assertEquals(Arrays.asList(1), log.search(Pattern.compile("two"), 1, () -> false));
+		assertEquals(Collections.emptyList(), log.search(Pattern.compile("two"), 10, () -> true));
+	}
+	
+	@Test
+	public void search_closedDuringSearch() throws IOException {
+		log.append("one\ntwo\n");
+		
+		List<Integer> matches = log.search(Pattern.compile("two"), 10, () -> {
+			try {
+				log.close();
+			} catch(IOException e) {
+				throw new RuntimeException(e);
+			}
+			return false;
+		});
+		
+		assertEquals(Collections.emptyList(), matches);
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void getLine_closed() throws IOException {
+		log.append("one\n");
+		log.close();
+		
+		log.getLine(0);
+	}
+	
+	@Test
+	public void close_truncatesFile() throws IOException {
+		log.append("0123456789\n0123456789\n");
+		log.close();
+		
+		assertEquals(22, file.length());
+	}
+}
@@ -0,0 +1,83 @@
+package workbook.view.ansi;
+
+import java.util.Random;
+
+/**
+ * Compares the throughput of the streaming AnsiParser against the previous regex based parser on a generated colored log.
+ */
+public class AnsiParserBenchmark {
+	private static final int LOG_SIZE = 8 * 1024 * 1024;
+	private static final int CHUNK_SIZE = 64 * 1024;
+	private static final int ITERATIONS = 5;
+	
+	public static void main(String[] args) {
+		String log = createLog(LOG_SIZE);
+		
+		for(int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			int length = parseRegex(log);
+			report("Regex", length, start);
+			
+			start = System.nanoTime();
+			length = parseStreaming(log);
+			report("Streaming", length, start);
+		}
+	}
+	
+	private static int parseRegex(String log) {
+		RegexAnsiParser parser = new RegexAnsiParser();
+		AnsiStyle style = new AnsiStyle();
+		int length = 0;
+		for(int i = 0; i < log.length(); i += CHUNK_SIZE) {
+			ParseResult result = parser.parseText(style, log.substring(i, Math.min(i + CHUNK_SIZE, log.length())));
+			length += result.getNewText().length();
+			if(!result.getStyleRanges().isEmpty()) {
+				style = result.getStyleRanges().get(result.getStyleRanges().size() - 1);
+			}
+		}
+		return length;
+	}
+	
+	private static int parseStreaming(String log) {
+		AnsiParser parser = new AnsiParser();
+		StringBuilder output = new StringBuilder(CHUNK_SIZE);
+		int length = 0;
+		for(int i = 0; i < log.length(); i += CHUNK_SIZE) {
+			output.setLength(0);
+			parser.parse(log.subSequence(i, Math.min(i + CHUNK_SIZE, log.length())), output, (start, count, style) -> {});
+			length += output.length();
+		}
+		return length;
+	}
+	
+	private static void report(String name, int length, long start) {
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%-10s %8.1f MB/s (%d chars)", name, LOG_SIZE / seconds / (1024 * 1024), length));
+	}
+	
+	/**
+	 * Returns a log of the given size with lines of text in a mix of 16 color, 256 color and 24-bit color styles.
+	 */
+	private static String createLog(int size) {
+		Random random = new Random(0);
+		StringBuilder log = new StringBuilder(size + 200);
+		while(log.length() < size) {
+			switch(random.nextInt(4)) {
+			case 0:
+				log.append("\u001B[").append(30 + random.nextInt(8)).append('m');
+				break;
+			case 1:
+				log.append("\u001B[1;38;5;").append(random.nextInt(256)).append('m');
+				break;
+			case 2:
+				log.append("\u001B[38;2;").append(random.nextInt(256)).append(';').append(random.nextInt(256)).append(';').append(random.nextInt(256)).append('m');
+				break;
+			default:
+				log.append("\u001B[0m");
+				break;
+			}
+			log.append("INFO [main] workbook.Example - line ").append(log.length()).append(" of the generated log\n");
+		}
+		return log.toString();
+	}
+}
@@ -0,0 +1,120 @@
+package workbook.view.ansi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.swt.graphics.RGB;
+import org.junit.Test;
+
+public class AnsiParserTest {
+	private final AnsiParser parser = new AnsiParser();
+	private final StringBuilder output = new StringBuilder();
+	private final List<AnsiStyle> runs = new ArrayList<>();
+	
+	@Test
+	public void parse_plainText() {
+		parse("abc");
+		
+		assertEquals("abc", output.toString());
+		assertEquals(1, runs.size());
+		assertRun(runs.get(0), 0, 3);
+		assertNull(runs.get(0).foreground);
+	}
+	
+	@Test
+	public void parse_color() {
+		parse("a\u001B[31mb\u001B[0mc");
+		
+		assertEquals("abc", output.toString());
+		assertEquals(3, runs.size());
+		assertNull(runs.get(0).foreground);
+		assertRun(runs.get(1), 1, 1);
+		assertEquals(new RGB(150, 0, 0), runs.get(1).foreground);
+		assertNull(runs.get(2).foreground);
+	}
+	
+	@Test
+	public void parse_attributes() {
+		parse("\u001B[1;3;4ma\u001B[22;23;24mb");
+		
+		assertTrue(runs.get(0).bold);
+		assertTrue(runs.get(0).italic);
+		assertTrue(runs.get(0).underline);
+		assertFalse(runs.get(1).bold);
+		assertFalse(runs.get(1).italic);
+		assertFalse(runs.get(1).underline);
+	}
+	
+	@Test
+	public void parse_splitAcrossChunks() {
+		parse("a\u001B[3");
+		parse("2mb");
+		
+		assertEquals("ab", output.toString());
+		assertEquals(2, runs.size());
+		assertNull(runs.get(0).foreground);
+		assertRun(runs.get(1), 1, 1);
+		assertEquals(new RGB(0, 150, 0), runs.get(1).foreground);
+	}
+	
+	@Test
+	public void parse_keepsStyleBetweenChunks() {
+		parse("\u001B[44ma");
+		parse("b");
+		
+		assertEquals(new RGB(0, 0, 150), runs.get(1).background);
+	}
+	
+	@Test
+	public void parse_256Color() {
+		parse("\u001B[38;5;196ma\u001B[48;5;232mb");
+		
+		assertEquals(new RGB(255, 0, 0), runs.get(0).foreground);
+		assertEquals(new RGB(8, 8, 8), runs.get(1).background);
+	}
+	
+	@Test
+	public void parse_24BitColor() {
+		parse("\u001B[38;2;10;20;30ma\u001B[48:2:40:50:60mb");
+		
+		assertEquals(new RGB(10, 20, 30), runs.get(0).foreground);
+		assertEquals(new RGB(40, 50, 60), runs.get(1).background);
+	}
+	
+	@Test
+	public void parse_stripsOtherSequences() {
+		parse("a\u001B[2Kb\u001B[?25lc");
+		
+		assertEquals("abc", output.toString());
+		assertEquals(1, runs.size());
+	}
+	
+	@Test
+	public void reset() {
+		parse("\u001B[31");
+		parser.reset();
+		parse("ma");
+		
+		assertEquals("ma", output.toString());
+		assertNull(parser.getStyle().foreground);
+	}
+	
+	private void parse(String text) {
+		parser.parse(text, output, (start, length, style) -> {
+			AnsiStyle run = new AnsiStyle(style);
+			run.start = start;
+			run.length = length;
+			runs.add(run);
+		});
+	}
+	
+	private static void assertRun(AnsiStyle run, int start, int length) {
+		assertEquals(start, run.start);
+		assertEquals(length, run.length);
+	}
+}